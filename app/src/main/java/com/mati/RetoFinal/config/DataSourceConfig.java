@@ -0,0 +1,85 @@
+package com.mati.RetoFinal.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Aurora writer/reader datasources.
+ * Read-only transactions go to the reader pool, everything else to the writer.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${datasource.routing.enabled:true}")
+    private boolean routingEnabled;
+
+    @Value("${spring.datasource.driver-class-name:org.postgresql.Driver}")
+    private String driverClassName;
+
+    @Value("${spring.datasource.reader.url}")
+    private String readerUrl;
+
+    @Value("${spring.datasource.reader.username}")
+    private String readerUsername;
+
+    @Value("${spring.datasource.reader.password}")
+    private String readerPassword;
+
+    /**
+     * Declared here too because DataSourceAutoConfiguration backs off once R2DBC
+     * provides a ConnectionFactory (reactive profile)
+     */
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writerDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.reader.hikari")
+    public HikariDataSource readerDataSource() {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(driverClassName)
+                .url(readerUrl)
+                .username(readerUsername)
+                .password(readerPassword)
+                .build();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource writerDataSource,
+                                 HikariDataSource readerDataSource,
+                                 MeterRegistry meterRegistry) {
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(meterRegistry);
+        routingDataSource.setTargetDataSources(Map.<Object, Object>of(
+                ReadWriteRoutingDataSource.WRITER, writerDataSource,
+                ReadWriteRoutingDataSource.READER, routingEnabled ? readerDataSource : writerDataSource
+        ));
+        routingDataSource.setDefaultTargetDataSource(writerDataSource);
+        routingDataSource.afterPropertiesSet();
+
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,60 @@
+package com.mati.RetoFinal.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Routes connections to the Aurora reader for read-only transactions and to the
+ * writer for everything else. Must be wrapped in a LazyConnectionDataSourceProxy
+ * so the lookup happens once the transaction's read-only flag is known.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String WRITER = "writer";
+    public static final String READER = "reader";
+
+    private static final ThreadLocal<Boolean> FORCE_WRITER = new ThreadLocal<>();
+
+    private final Counter writerConnections;
+    private final Counter readerConnections;
+
+    public ReadWriteRoutingDataSource(MeterRegistry meterRegistry) {
+        this.writerConnections = Counter.builder("db.routing.connections").tag("target", WRITER).register(meterRegistry);
+        this.readerConnections = Counter.builder("db.routing.connections").tag("target", READER).register(meterRegistry);
+    }
+
+    /**
+     * Run a block with every connection routed to the writer,
+     * e.g. for read-your-writes while the replica may still lag
+     */
+    public static <T> T onWriter(Supplier<T> action) {
+        Boolean previous = FORCE_WRITER.get();
+        FORCE_WRITER.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                FORCE_WRITER.remove();
+            } else {
+                FORCE_WRITER.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean useReader = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !Boolean.TRUE.equals(FORCE_WRITER.get());
+
+        if (useReader) {
+            readerConnections.increment();
+            return READER;
+        }
+        writerConnections.increment();
+        return WRITER;
+    }
+}
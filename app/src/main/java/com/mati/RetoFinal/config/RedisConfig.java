@@ -4,12 +4,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import io.lettuce.core.ClientOptions;
+import io.lettuce.core.ReadFrom;
 import io.lettuce.core.SocketOptions;
 import io.lettuce.core.cluster.ClusterClientOptions;
 import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.RedisClusterConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisPassword;
@@ -17,6 +22,7 @@ import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.util.StringUtils;
 
@@ -24,12 +30,24 @@ import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Lettuce connection factories and templates.
+ * redisConnectionFactory sends everything to masters; cacheReadConnectionFactory sends
+ * read commands to the nodes chosen by redis.read-from and is only used for cache GETs.
+ * With redis.read-from=master there is no second factory (client, connections and
+ * topology refresh) and cache reads use redisConnectionFactory.
+ */
 @Configuration
 public class RedisConfig {
 
+    private static final String READ_FROM_MASTER = "master";
+
     @Value("${redis.mode:cluster}")
     private String redisMode;
 
+    @Value("${redis.read-from:master}")
+    private String readFrom;
+
     @Value("${spring.data.redis.cluster.nodes:}")
     private String clusterNodes;
 
@@ -52,11 +70,30 @@ public class RedisConfig {
     private long timeout;
 
     @Bean
+    @Primary
     public RedisConnectionFactory redisConnectionFactory() {
+        return createConnectionFactory(ReadFrom.UPSTREAM);
+    }
+
+    /**
+     * Connection factory for cache reads: replica-preferred or nearest (lowest latency).
+     * Writes sent through it would still go to masters.
+     */
+    @Bean
+    @ConditionalOnExpression("!'${redis.read-from:master}'.equalsIgnoreCase('" + READ_FROM_MASTER + "')")
+    public RedisConnectionFactory cacheReadConnectionFactory() {
+        return createConnectionFactory(readFrom(readFrom));
+    }
+
+    private RedisConnectionFactory createConnectionFactory(ReadFrom readFrom) {
         LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder()
                 .commandTimeout(Duration.ofMillis(timeout))
                 .clientOptions(clientOptions());
 
+        if (readFrom != ReadFrom.UPSTREAM) {
+            builder.readFrom(readFrom);
+        }
+
         if (sslEnabled) {
             builder.useSsl().disablePeerVerification();
         }
@@ -94,6 +131,16 @@ public class RedisConfig {
         return new LettuceConnectionFactory(standaloneConfiguration, clientConfig);
     }
 
+    private static ReadFrom readFrom(String readFrom) {
+        return switch (readFrom.toLowerCase()) {
+            case READ_FROM_MASTER -> ReadFrom.UPSTREAM;
+            case "replica-preferred" -> ReadFrom.REPLICA_PREFERRED;
+            case "nearest" -> ReadFrom.LOWEST_LATENCY;
+            default -> throw new IllegalArgumentException(
+                    "Unknown redis.read-from: " + readFrom + " (expected master, replica-preferred or nearest)");
+        };
+    }
+
     private ClientOptions clientOptions() {
         ClusterTopologyRefreshOptions topologyRefreshOptions = ClusterTopologyRefreshOptions.builder()
                 .enablePeriodicRefresh(Duration.ofMinutes(10))
@@ -115,6 +162,17 @@ public class RedisConfig {
 
     @Bean
     public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory connectionFactory) {
+        return stringTemplate(connectionFactory);
+    }
+
+    @Bean
+    public RedisTemplate<String, String> cacheReadRedisTemplate(
+            RedisConnectionFactory connectionFactory,
+            @Qualifier("cacheReadConnectionFactory") ObjectProvider<RedisConnectionFactory> cacheReadConnectionFactory) {
+        return stringTemplate(cacheReadConnectionFactory.getIfAvailable(() -> connectionFactory));
+    }
+
+    private RedisTemplate<String, String> stringTemplate(RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, String> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
@@ -128,6 +186,13 @@ public class RedisConfig {
         return template;
     }
 
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
@@ -3,6 +3,7 @@ package com.mati.RetoFinal.config;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
+import org.redisson.config.ReadMode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -66,6 +67,8 @@ public class RedissonConfig {
                 .setSlaveConnectionPoolSize(slavePoolSize)
                 .setMasterConnectionMinimumIdleSize(masterMinIdle)
                 .setSlaveConnectionMinimumIdleSize(slaveMinIdle)
+                // Locks and the Bloom filter must see the latest writes, cache reads use redis.read-from instead
+                .setReadMode(ReadMode.MASTER)
                 .setScanInterval(5000)
                 .setCheckSlotsCoverage(false);
 
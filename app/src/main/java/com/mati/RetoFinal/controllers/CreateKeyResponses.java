@@ -0,0 +1,26 @@
+package com.mati.RetoFinal.controllers;
+
+import com.mati.RetoFinal.dto.CreateKeyResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Maps a check-or-create response to its HTTP status, shared by both controllers
+ */
+final class CreateKeyResponses {
+
+    private CreateKeyResponses() {
+    }
+
+    /**
+     * Status from the typed outcome, with Retry-After in whole seconds when the caller should retry
+     */
+    static ResponseEntity<CreateKeyResponse> toResponseEntity(CreateKeyResponse response) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.getOutcome().getStatus());
+        if (response.getRetryAfter() != null) {
+            long seconds = Math.max(1, (response.getRetryAfter().toMillis() + 999) / 1000);
+            builder.header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        }
+        return builder.body(response);
+    }
+}
@@ -1,12 +1,16 @@
 package com.mati.RetoFinal.controllers;
 
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,60 +19,164 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import com.mati.RetoFinal.services.BackendFailures;
+import com.mati.RetoFinal.services.CacheWarmupService;
+import com.mati.RetoFinal.services.DistributedLockService;
+import com.mati.RetoFinal.services.FinancialEntityRegistry;
 import com.mati.RetoFinal.services.KeyCacheService;
+import com.mati.RetoFinal.services.KeyEventLog;
+import com.mati.RetoFinal.services.KeyOutboxService;
+import com.mati.RetoFinal.services.KeyListingService;
 
 import com.mati.RetoFinal.services.KeyService;
+import com.mati.RetoFinal.services.NegativeLookupService;
+import com.mati.RetoFinal.services.RedisCircuitBreaker;
+import com.mati.RetoFinal.services.WebhookDispatcher;
+import com.mati.RetoFinal.services.WriteBehindService;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.web.bind.annotation.RestController;
 
+import com.mati.RetoFinal.dto.BatchCreateKeyRequest;
+import com.mati.RetoFinal.dto.BatchCreateKeyResponse;
 import com.mati.RetoFinal.dto.CreateKeyRequest;
 import com.mati.RetoFinal.dto.CreateKeyResponse;
 import com.mati.RetoFinal.dto.EntityKeyResponse;
+import com.mati.RetoFinal.dto.KeyListFilter;
+import com.mati.RetoFinal.dto.KeyPageResponse;
 import com.mati.RetoFinal.dto.UpdateKeyRequest;
 
 /**
  * REST Controller for key registry operations.
  */
 @RestController
-@RequestMapping("/api/keys")
+@Profile("!reactive")
+@RequestMapping("/api")
 @RequiredArgsConstructor
 @Slf4j
 public class KeyRegistryController {
 
     private final KeyService keyService;
+    private final KeyListingService keyListingService;
     private final KeyCacheService keyCacheService;
+    private final NegativeLookupService negativeLookupService;
+    private final CacheWarmupService cacheWarmupService;
+    private final FinancialEntityRegistry entityRegistry;
+    private final WebhookDispatcher webhookDispatcher;
+    private final KeyEventLog keyEventLog;
+    private final KeyOutboxService keyOutbox;
+    private final WriteBehindService writeBehindService;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final DistributedLockService lockService;
 
     /**
      * Check if a key exists or create it if it doesn't
      * POST /api/keys/check-or-create
      */
-    @PostMapping("/check-or-create")
+    @PostMapping("/keys/check-or-create")
     public ResponseEntity<CreateKeyResponse> checkOrCreateKey(@Valid @RequestBody CreateKeyRequest request) {
         log.info("Received check-or-create request for key: {}", request.getKeyValue());
 
-        CreateKeyResponse response = keyService.createKey(request);
+        return CreateKeyResponses.toResponseEntity(keyService.createKey(request));
+    }
+
+    /**
+     * Check or create several keys at once
+     * POST /api/keys/check-or-create/batch
+     */
+    @PostMapping("/keys/check-or-create/batch")
+    public ResponseEntity<BatchCreateKeyResponse> checkOrCreateKeys(@Valid @RequestBody BatchCreateKeyRequest request) {
+        log.info("Received batch check-or-create request for {} keys", request.getKeys().size());
+
+        try {
+            return ResponseEntity.ok(keyService.createKeys(request.getKeys()));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid batch check-or-create request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    /**
+     * List keys by entity (optionally with status), account, owner or status, one keyset page at a time
+     * GET /api/keys?entityCode=...&status=...&cursor=...&limit=...
+     */
+    @GetMapping("/keys")
+    public ResponseEntity<KeyPageResponse> listKeys(
+            KeyListFilter filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Received list request for keys: {}", filter);
 
-        if (response.getMessage() != null && response.getMessage().contains("error")) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        try {
+            return ResponseEntity.ok(keyListingService.listKeys(filter, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid list request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
+    }
+
+    /**
+     * Export every matching key as NDJSON, streamed as rows are read
+     * GET /api/keys-export?entityCode=...&status=...
+     */
+    @GetMapping("/keys-export")
+    public void exportKeys(KeyListFilter filter, HttpServletResponse response) throws IOException {
+        log.info("Received export request for keys: {}", filter);
 
-        return ResponseEntity.ok(response);
+        try {
+            keyListingService.validate(filter);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid export request: {}", e.getMessage());
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        keyListingService.exportKeys(filter, response.getOutputStream());
     }
 
     /**
-     * Get a key by its value
+     * Replay key events retained in the event log after the given event id
+     * GET /api/key-events?after=0&count=100
+     */
+    @GetMapping("/key-events")
+    public ResponseEntity<List<Map<String, Object>>> replayEvents(
+            @RequestParam(defaultValue = "0") String after,
+            @RequestParam(defaultValue = "100") int count) {
+        log.info("Received event replay request after: {}", after);
+
+        try {
+            return ResponseEntity.ok(keyEventLog.replay(after, count));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid event replay request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    /**
+     * Get a key by its value, 503 if neither Redis nor the database can answer
      * GET /api/keys/{keyValue}
      */
-    @GetMapping("/{keyValue}")
+    @GetMapping("/keys/{keyValue}")
     public ResponseEntity<EntityKeyResponse> getKeyByValue(@PathVariable String keyValue) {
         log.info("Received get request for key: {}", keyValue);
 
-        Optional<EntityKeyResponse> response = keyService.findByValue(keyValue);
+        Optional<EntityKeyResponse> response;
+        try {
+            response = keyService.findByValue(keyValue);
+        } catch (RuntimeException e) {
+            if (!BackendFailures.isBackendDown(e)) {
+                throw e;
+            }
+            log.warn("Backend unavailable getting key: {}. Error: {}", keyValue, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
 
         return response
             .map(ResponseEntity::ok)
@@ -79,7 +187,7 @@ public class KeyRegistryController {
      * Update a key by its ID
      * PUT /api/keys/{keyId}
      */
-    @PutMapping("/{keyId}")
+    @PutMapping("/keys/{keyId}")
     public ResponseEntity<EntityKeyResponse> updateKey(
             @PathVariable UUID keyId,
             @Valid @RequestBody UpdateKeyRequest request) {
@@ -96,7 +204,7 @@ public class KeyRegistryController {
      * Delete a key by its ID (soft delete)
      * DELETE /api/keys/{keyId}
      */
-    @DeleteMapping("/{keyId}")
+    @DeleteMapping("/keys/{keyId}")
     public ResponseEntity<Void> deleteKey(@PathVariable UUID keyId) {
         log.info("Received delete request for key ID: {}", keyId);
 
@@ -107,16 +215,56 @@ public class KeyRegistryController {
             : ResponseEntity.notFound().build();
     }
 
+    /**
+     * Rebuild the negative-lookup Bloom filter from the database
+     * POST /api/keys/negative-lookup/rebuild
+     */
+    @PostMapping("/keys/negative-lookup/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildNegativeLookup() {
+        log.info("Received request to rebuild negative-lookup Bloom filter");
+
+        boolean started = negativeLookupService.rebuild();
+
+        return started
+            ? ResponseEntity.accepted().body(negativeLookupService.getStats())
+            : ResponseEntity.status(HttpStatus.CONFLICT).body(negativeLookupService.getStats());
+    }
+
+    /**
+     * Preload active keys into the cache (e.g. after an ElastiCache failover)
+     * POST /api/keys/cache/warmup
+     */
+    @PostMapping("/keys/cache/warmup")
+    public ResponseEntity<Map<String, Object>> warmUpCache() {
+        log.info("Received request to warm up key cache");
+
+        boolean started = cacheWarmupService.start();
+
+        return started
+            ? ResponseEntity.accepted().body(cacheWarmupService.getStats())
+            : ResponseEntity.status(HttpStatus.CONFLICT).body(cacheWarmupService.getStats());
+    }
+
     /**
      * Health check endpoint
      * GET /api/keys/health
      */
-    @GetMapping("/health")
+    @GetMapping("/keys/health")
     public ResponseEntity<Map<String, Object>> health() {
         Map<String, Object> healthStatus = new HashMap<>();
         healthStatus.put("status", "UP");
         healthStatus.put("service", "key-registry");
         healthStatus.put("redisAvailable", keyCacheService.isAvailable());
+        healthStatus.put("redisCircuitBreaker", redisCircuitBreaker.getStats());
+        healthStatus.put("lock", lockService.getStats());
+        healthStatus.put("cache", keyCacheService.getStats());
+        healthStatus.put("negativeLookup", negativeLookupService.getStats());
+        healthStatus.put("warmup", cacheWarmupService.getStats());
+        healthStatus.put("entities", entityRegistry.getStats());
+        healthStatus.put("webhooks", webhookDispatcher.getStats());
+        healthStatus.put("events", keyEventLog.getStats());
+        healthStatus.put("outbox", keyOutbox.getStats());
+        healthStatus.put("writeBehind", writeBehindService.getStats());
 
         return ResponseEntity.ok(healthStatus);
     }
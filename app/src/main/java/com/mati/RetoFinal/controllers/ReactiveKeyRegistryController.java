@@ -0,0 +1,246 @@
+package com.mati.RetoFinal.controllers;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.mati.RetoFinal.dto.BatchCreateKeyRequest;
+import com.mati.RetoFinal.dto.BatchCreateKeyResponse;
+import com.mati.RetoFinal.dto.CreateKeyRequest;
+import com.mati.RetoFinal.dto.CreateKeyResponse;
+import com.mati.RetoFinal.dto.EntityKeyResponse;
+import com.mati.RetoFinal.dto.KeyListFilter;
+import com.mati.RetoFinal.dto.KeyPageResponse;
+import com.mati.RetoFinal.dto.UpdateKeyRequest;
+import com.mati.RetoFinal.services.CacheWarmupService;
+import com.mati.RetoFinal.services.FinancialEntityRegistry;
+import com.mati.RetoFinal.services.KeyCacheService;
+import com.mati.RetoFinal.services.KeyEventLog;
+import com.mati.RetoFinal.services.KeyOutboxService;
+import com.mati.RetoFinal.services.NegativeLookupService;
+import com.mati.RetoFinal.services.RedisCircuitBreaker;
+import com.mati.RetoFinal.services.WebhookDispatcher;
+import com.mati.RetoFinal.services.ReactiveKeyCacheService;
+import com.mati.RetoFinal.services.ReactiveKeyService;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * WebFlux controller for key registry operations, same contract as KeyRegistryController.
+ * Active with the "reactive" profile.
+ */
+@RestController
+@RequestMapping("/api")
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveKeyRegistryController {
+
+    private final ReactiveKeyService keyService;
+    private final ReactiveKeyCacheService reactiveKeyCacheService;
+    private final KeyCacheService keyCacheService;
+    private final NegativeLookupService negativeLookupService;
+    private final CacheWarmupService cacheWarmupService;
+    private final FinancialEntityRegistry entityRegistry;
+    private final WebhookDispatcher webhookDispatcher;
+    private final KeyEventLog keyEventLog;
+    private final KeyOutboxService keyOutbox;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    /**
+     * Check if a key exists or create it if it doesn't
+     * POST /api/keys/check-or-create
+     */
+    @PostMapping("/keys/check-or-create")
+    public Mono<ResponseEntity<CreateKeyResponse>> checkOrCreateKey(@Valid @RequestBody CreateKeyRequest request) {
+        log.info("Received check-or-create request for key: {}", request.getKeyValue());
+
+        return keyService.createKey(request).map(CreateKeyResponses::toResponseEntity);
+    }
+
+    /**
+     * Check or create several keys at once
+     * POST /api/keys/check-or-create/batch
+     */
+    @PostMapping("/keys/check-or-create/batch")
+    public Mono<ResponseEntity<BatchCreateKeyResponse>> checkOrCreateKeys(@Valid @RequestBody BatchCreateKeyRequest request) {
+        log.info("Received batch check-or-create request for {} keys", request.getKeys().size());
+
+        return keyService.createKeys(request.getKeys())
+            .map(ResponseEntity::ok)
+            .onErrorResume(IllegalArgumentException.class, e -> {
+                log.error("Invalid batch check-or-create request: {}", e.getMessage());
+                return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+            });
+    }
+
+    /**
+     * List keys by entity (optionally with status), account, owner or status, one keyset page at a time
+     * GET /api/keys?entityCode=...&status=...&cursor=...&limit=...
+     */
+    @GetMapping("/keys")
+    public Mono<ResponseEntity<KeyPageResponse>> listKeys(
+            KeyListFilter filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Received list request for keys: {}", filter);
+
+        return keyService.listKeys(filter, cursor, limit)
+            .map(ResponseEntity::ok)
+            .onErrorResume(IllegalArgumentException.class, e -> {
+                log.error("Invalid list request: {}", e.getMessage());
+                return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+            });
+    }
+
+    /**
+     * Export every matching key as NDJSON, streamed as rows are read
+     * GET /api/keys-export?entityCode=...&status=...
+     */
+    @GetMapping("/keys-export")
+    public Mono<ResponseEntity<Flux<EntityKeyResponse>>> exportKeys(KeyListFilter filter) {
+        log.info("Received export request for keys: {}", filter);
+
+        try {
+            return Mono.just(ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(keyService.exportKeys(filter)));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid export request: {}", e.getMessage());
+            return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+        }
+    }
+
+    /**
+     * Replay key events retained in the event log after the given event id
+     * GET /api/key-events?after=0&count=100
+     */
+    @GetMapping("/key-events")
+    public Mono<ResponseEntity<List<Map<String, Object>>>> replayEvents(
+            @RequestParam(defaultValue = "0") String after,
+            @RequestParam(defaultValue = "100") int count) {
+        log.info("Received event replay request after: {}", after);
+
+        return Mono.fromCallable(() -> keyEventLog.replay(after, count))
+            .subscribeOn(Schedulers.boundedElastic())
+            .map(ResponseEntity::ok)
+            .onErrorResume(IllegalArgumentException.class, e -> {
+                log.error("Invalid event replay request: {}", e.getMessage());
+                return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+            });
+    }
+
+    /**
+     * Get a key by its value
+     * GET /api/keys/{keyValue}
+     */
+    @GetMapping("/keys/{keyValue}")
+    public Mono<ResponseEntity<EntityKeyResponse>> getKeyByValue(@PathVariable String keyValue) {
+        log.info("Received get request for key: {}", keyValue);
+
+        return keyService.findByValue(keyValue)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Update a key by its ID
+     * PUT /api/keys/{keyId}
+     */
+    @PutMapping("/keys/{keyId}")
+    public Mono<ResponseEntity<EntityKeyResponse>> updateKey(
+            @PathVariable UUID keyId,
+            @Valid @RequestBody UpdateKeyRequest request) {
+        log.info("Received update request for key ID: {}", keyId);
+
+        return keyService.updateKeyByKeyId(keyId, request)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Delete a key by its ID (soft delete)
+     * DELETE /api/keys/{keyId}
+     */
+    @DeleteMapping("/keys/{keyId}")
+    public Mono<ResponseEntity<Void>> deleteKey(@PathVariable UUID keyId) {
+        log.info("Received delete request for key ID: {}", keyId);
+
+        return keyService.deleteKeyById(keyId)
+            .map(deleted -> deleted
+                ? ResponseEntity.noContent().<Void>build()
+                : ResponseEntity.notFound().<Void>build());
+    }
+
+    /**
+     * Rebuild the negative-lookup Bloom filter from the database
+     * POST /api/keys/negative-lookup/rebuild
+     */
+    @PostMapping("/keys/negative-lookup/rebuild")
+    public Mono<ResponseEntity<Map<String, Object>>> rebuildNegativeLookup() {
+        log.info("Received request to rebuild negative-lookup Bloom filter");
+
+        return Mono.fromCallable(() -> negativeLookupService.rebuild()
+                ? ResponseEntity.accepted().body(negativeLookupService.getStats())
+                : ResponseEntity.status(HttpStatus.CONFLICT).body(negativeLookupService.getStats()))
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Preload active keys into the cache (e.g. after an ElastiCache failover)
+     * POST /api/keys/cache/warmup
+     */
+    @PostMapping("/keys/cache/warmup")
+    public Mono<ResponseEntity<Map<String, Object>>> warmUpCache() {
+        log.info("Received request to warm up key cache");
+
+        return Mono.fromCallable(() -> cacheWarmupService.start()
+                ? ResponseEntity.accepted().body(cacheWarmupService.getStats())
+                : ResponseEntity.status(HttpStatus.CONFLICT).body(cacheWarmupService.getStats()))
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Health check endpoint
+     * GET /api/keys/health
+     */
+    @GetMapping("/keys/health")
+    public Mono<ResponseEntity<Map<String, Object>>> health() {
+        // The stats of the blocking services read Redis and PostgreSQL
+        return reactiveKeyCacheService.isAvailable().flatMap(redisAvailable -> Mono.fromCallable(() -> {
+            Map<String, Object> healthStatus = new HashMap<>();
+            healthStatus.put("status", "UP");
+            healthStatus.put("service", "key-registry");
+            healthStatus.put("redisAvailable", redisAvailable);
+            healthStatus.put("redisCircuitBreaker", redisCircuitBreaker.getStats());
+            healthStatus.put("cache", keyCacheService.getStats());
+            healthStatus.put("negativeLookup", negativeLookupService.getStats());
+            healthStatus.put("warmup", cacheWarmupService.getStats());
+            healthStatus.put("entities", entityRegistry.getStats());
+            healthStatus.put("webhooks", webhookDispatcher.getStats());
+            healthStatus.put("events", keyEventLog.getStats());
+            healthStatus.put("outbox", keyOutbox.getStats());
+            return ResponseEntity.ok(healthStatus);
+        }).subscribeOn(Schedulers.boundedElastic()));
+    }
+}
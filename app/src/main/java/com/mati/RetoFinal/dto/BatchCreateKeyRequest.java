@@ -0,0 +1,28 @@
+package com.mati.RetoFinal.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request DTO for checking or creating several keys at once.
+ * keys.batch.max-size can lower the limit below MAX_KEYS, not raise it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchCreateKeyRequest {
+
+    public static final int MAX_KEYS = 500;
+
+    @NotEmpty(message = "Keys cannot be empty")
+    @Size(max = MAX_KEYS, message = "At most {max} keys per batch")
+    private List<@Valid CreateKeyRequest> keys;
+}
@@ -0,0 +1,47 @@
+package com.mati.RetoFinal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response DTO for batch check-or-create operations.
+ * Results are returned in the same order as the requested keys.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchCreateKeyResponse {
+
+    private List<CreateKeyResponse> results;
+    private int created;
+    private int existing;
+    private int failed;
+    private double latencyMs;
+
+    /**
+     * Factory method summarizing per-item results
+     */
+    public static BatchCreateKeyResponse of(List<CreateKeyResponse> results, double latencyMs) {
+        int created = 0;
+        int existing = 0;
+        for (CreateKeyResponse result : results) {
+            if (result.isCreated()) {
+                created++;
+            } else if (result.isExists()) {
+                existing++;
+            }
+        }
+        return BatchCreateKeyResponse.builder()
+                .results(results)
+                .created(created)
+                .existing(existing)
+                .failed(results.size() - created - existing)
+                .latencyMs(Math.round(latencyMs * 100.0) / 100.0)
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.mati.RetoFinal.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Enum representing how a check-or-create call ended, with the HTTP status it is answered with.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum CreateKeyOutcome {
+    /**
+     * Key inserted by this call
+     */
+    CREATED(HttpStatus.OK),
+
+    /**
+     * Key already registered, answered from the cache
+     */
+    EXISTS_CACHE(HttpStatus.OK),
+
+    /**
+     * Key already registered, answered from the database
+     */
+    EXISTS_DATABASE(HttpStatus.OK),
+
+    /**
+     * Key claimed by another request and waiting in the write-behind stream
+     */
+    EXISTS_PENDING(HttpStatus.OK),
+
+    /**
+     * Key value does not match any supported format
+     */
+    INVALID(HttpStatus.BAD_REQUEST),
+
+    /**
+     * Financial entity unknown or inactive
+     */
+    ENTITY_MISSING(HttpStatus.UNPROCESSABLE_ENTITY),
+
+    /**
+     * Key value already registered with a status other than ACTIVE
+     */
+    CONFLICT(HttpStatus.CONFLICT),
+
+    /**
+     * Another request held the lock on the key value for the whole wait, retry shortly
+     */
+    LOCK_TIMEOUT(HttpStatus.TOO_MANY_REQUESTS),
+
+    /**
+     * Redis or the database could not be reached, retry later
+     */
+    BACKEND_DOWN(HttpStatus.SERVICE_UNAVAILABLE),
+
+    /**
+     * Unexpected failure
+     */
+    ERROR(HttpStatus.INTERNAL_SERVER_ERROR);
+
+    private final HttpStatus status;
+}
@@ -1,15 +1,18 @@
 package com.mati.RetoFinal.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Duration;
 import java.util.UUID;
 
 /**
  * Response DTO for key creation or check operations.
+ * The outcome decides the HTTP status; retryAfter, when set, is sent as the Retry-After header.
  */
 @Data
 @NoArgsConstructor
@@ -25,6 +28,10 @@ public class CreateKeyResponse {
     private double latencyMs;
     private String source;
     private String message;
+    private CreateKeyOutcome outcome;
+
+    @JsonIgnore
+    private Duration retryAfter;
 
     /**
      * Factory method for successful key creation
@@ -37,6 +44,7 @@ public class CreateKeyResponse {
                 .keyValue(keyValue)
                 .latencyMs(Math.round(latencyMs * 100.0) / 100.0)
                 .source("new")
+                .outcome(CreateKeyOutcome.CREATED)
                 .build();
     }
 
@@ -51,18 +59,33 @@ public class CreateKeyResponse {
                 .keyValue(keyValue)
                 .latencyMs(Math.round(latencyMs * 100.0) / 100.0)
                 .source(source)
+                .outcome(switch (source) {
+                    case "cache" -> CreateKeyOutcome.EXISTS_CACHE;
+                    case "write-behind" -> CreateKeyOutcome.EXISTS_PENDING;
+                    default -> CreateKeyOutcome.EXISTS_DATABASE;
+                })
                 .build();
     }
 
     /**
-     * Factory method for error responses
+     * Factory method when the key was neither found nor created
+     */
+    public static CreateKeyResponse rejected(CreateKeyOutcome outcome, String message, double latencyMs) {
+        return rejected(outcome, message, latencyMs, null);
+    }
+
+    /**
+     * Factory method when the key was neither found nor created and the call may be retried
      */
-    public static CreateKeyResponse error(String message, double latencyMs) {
+    public static CreateKeyResponse rejected(CreateKeyOutcome outcome, String message, double latencyMs,
+                                             Duration retryAfter) {
         return CreateKeyResponse.builder()
                 .created(false)
                 .exists(false)
                 .latencyMs(Math.round(latencyMs * 100.0) / 100.0)
                 .message(message)
+                .outcome(outcome)
+                .retryAfter(retryAfter)
                 .build();
     }
 }
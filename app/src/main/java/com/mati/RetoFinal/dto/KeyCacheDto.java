@@ -35,13 +35,21 @@ public class KeyCacheDto {
      * Factory method to create from entity
      */
     public static KeyCacheDto fromEntity(Key key) {
+        return fromEntity(key, key.getFinancialEntity() != null ? key.getFinancialEntity().getEntityCode() : null);
+    }
+
+    /**
+     * Factory method to create from entity with an already resolved entity code,
+     * so a lazy financialEntity is not loaded just to read it
+     */
+    public static KeyCacheDto fromEntity(Key key, String entityCode) {
         return KeyCacheDto.builder()
                 .keyId(key.getKeyId())
                 .keyValue(key.getKeyValue())
                 .accountNumber(key.getAccountNumber())
                 .ownerDocument(key.getOwnerDocument())
                 .status(key.getStatus())
-                .entityCode(key.getFinancialEntity() != null ? key.getFinancialEntity().getEntityCode() : null)
+                .entityCode(entityCode)
                 .createdAt(key.getCreatedAt())
                 .build();
     }
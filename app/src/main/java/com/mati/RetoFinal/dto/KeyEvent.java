@@ -0,0 +1,56 @@
+package com.mati.RetoFinal.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mati.RetoFinal.models.KeyStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Key mutation event, as appended to the key event log and delivered to entity webhooks.
+ * eventId is unique per event so receivers can drop redelivered ones.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class KeyEvent {
+
+    public static final String KEY_REGISTERED = "KEY_REGISTERED";
+    public static final String KEY_UPDATED = "KEY_UPDATED";
+    public static final String KEY_SUSPENDED = "KEY_SUSPENDED";
+    public static final String KEY_DELETED = "KEY_DELETED";
+
+    private UUID eventId;
+    private String eventType;
+    private UUID keyId;
+    private String keyValue;
+    private KeyStatus status;
+    private String accountNumber;
+    private String ownerDocument;
+    private String entityCode;
+    private LocalDateTime timestamp;
+
+    /**
+     * Factory method to create from the cached view of a key
+     */
+    public static KeyEvent of(String eventType, KeyCacheDto key) {
+        return KeyEvent.builder()
+                .eventId(UUID.randomUUID())
+                .eventType(eventType)
+                .keyId(key.getKeyId())
+                .keyValue(key.getKeyValue())
+                .status(key.getStatus())
+                .accountNumber(key.getAccountNumber())
+                .ownerDocument(key.getOwnerDocument())
+                .entityCode(key.getEntityCode())
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,24 @@
+package com.mati.RetoFinal.dto;
+
+import com.mati.RetoFinal.models.KeyStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Query parameters for key listings and exports.
+ * Supported filters: entityCode (optionally with status), accountNumber, ownerDocument or status.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KeyListFilter {
+
+    private String entityCode;
+    private String accountNumber;
+    private String ownerDocument;
+    private KeyStatus status;
+}
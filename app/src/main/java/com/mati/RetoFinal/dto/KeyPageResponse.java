@@ -0,0 +1,37 @@
+package com.mati.RetoFinal.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a key listing, most recently created first.
+ * nextCursor is absent on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class KeyPageResponse {
+
+    private List<EntityKeyResponse> items;
+    private int count;
+    private String nextCursor;
+
+    /**
+     * Factory method for a page and the cursor of its last item
+     */
+    public static KeyPageResponse of(List<EntityKeyResponse> items, KeyCursor next) {
+        return KeyPageResponse.builder()
+                .items(items)
+                .count(items.size())
+                .nextCursor(next != null ? next.encode() : null)
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.mati.RetoFinal.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A key mutation committed to the database whose cache eviction and event are still
+ * to be relayed to Redis. Written in the same transaction as the keys change and
+ * deleted once relayed.
+ */
+@Entity
+@Table(name = "key_outbox")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KeyOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "outbox_id", updatable = false, nullable = false)
+    private Long outboxId;
+
+    @Column(name = "key_value", nullable = false)
+    private String keyValue;
+
+    @Column(name = "event_type", nullable = false, length = 30)
+    private String eventType;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,17 @@
+package com.mati.RetoFinal.models;
+
+/**
+ * Enum representing the state of a pending webhook delivery.
+ * Delivered events are removed from the table.
+ */
+public enum WebhookDeliveryStatus {
+    /**
+     * Waiting for its next attempt
+     */
+    PENDING,
+
+    /**
+     * Retry budget of the financial entity exhausted, kept for inspection
+     */
+    FAILED
+}
@@ -0,0 +1,34 @@
+package com.mati.RetoFinal.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.mati.RetoFinal.models.KeyOutboxEntry;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for key mutations waiting to be relayed to Redis.
+ */
+@Repository
+public interface KeyOutboxRepository extends JpaRepository<KeyOutboxEntry, Long> {
+
+    /**
+     * Remove and return up to limit of the oldest entries. The rows only disappear if the
+     * surrounding transaction commits, and SKIP LOCKED lets several pods relay concurrently
+     * without taking the same entries.
+     */
+    @Query(value = "DELETE FROM key_outbox WHERE outbox_id IN (" +
+            "SELECT outbox_id FROM key_outbox ORDER BY outbox_id LIMIT :limit FOR UPDATE SKIP LOCKED) RETURNING *",
+            nativeQuery = true)
+    List<KeyOutboxEntry> takeOldest(@Param("limit") int limit);
+
+    /**
+     * Creation time of the oldest entry not relayed yet
+     */
+    @Query("SELECT MIN(o.createdAt) FROM KeyOutboxEntry o")
+    LocalDateTime findOldestCreatedAt();
+}
@@ -1,18 +1,30 @@
 package com.mati.RetoFinal.repositories;
 
-import com.mati.RetoFinal.models.FinancialEntity;
 import com.mati.RetoFinal.models.Key;
 import com.mati.RetoFinal.models.KeyStatus;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import jakarta.persistence.QueryHint;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 /**
  * Repository for Key operations.
@@ -25,6 +37,19 @@ public interface KeyRepository extends JpaRepository<Key, UUID> {
      */
     Optional<Key> findByKeyValue(String keyValue);
 
+    /**
+     * Find a key by its value with its financial entity loaded (read-only, served by the reader)
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT k FROM Key k JOIN FETCH k.financialEntity WHERE k.keyValue = :keyValue")
+    Optional<Key> findWithEntityByKeyValue(@Param("keyValue") String keyValue);
+
+    /**
+     * Find all keys matching any of the given values, with their financial entity loaded
+     */
+    @Query("SELECT k FROM Key k JOIN FETCH k.financialEntity WHERE k.keyValue IN :keyValues")
+    List<Key> findWithEntityByKeyValueIn(@Param("keyValues") Collection<String> keyValues);
+
     /**
      * Find a key by its value and status
      */
@@ -43,29 +68,98 @@ public interface KeyRepository extends JpaRepository<Key, UUID> {
     boolean existsByKeyValueAndActive(@Param("keyValue") String keyValue);
 
     /**
-     * Find all keys by financial entity
+     * Page through keys with a given status, most recently created first (keyset pagination)
      */
-    List<Key> findByFinancialEntity(FinancialEntity financialEntity);
+    @EntityGraph(attributePaths = "financialEntity")
+    Window<Key> findByStatusOrderByCreatedAtDescKeyIdDesc(KeyStatus status, ScrollPosition position, Limit limit);
 
     /**
-     * Find all keys by financial entity and status
+     * Count keys by status
      */
-    List<Key> findByFinancialEntityAndStatus(FinancialEntity financialEntity, KeyStatus status);
+    long countByStatus(KeyStatus status);
 
     /**
-     * Find all keys by account number
+     * Stream every registered key value (must be consumed inside a transaction)
      */
-    List<Key> findByAccountNumber(String accountNumber);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "5000"))
+    @Query("SELECT k.keyValue FROM Key k")
+    Stream<String> streamAllKeyValues();
+
+    // Keyset-paginated listings, most recently created first.
+    // Pass ScrollPosition.keyset() for the first page; streams must be consumed inside a transaction.
 
     /**
-     * Find all keys by owner document
+     * Page through the keys of a financial entity
      */
-    List<Key> findByOwnerDocument(String ownerDocument);
+    @EntityGraph(attributePaths = "financialEntity")
+    Window<Key> findByFinancialEntityEntityCodeOrderByCreatedAtDescKeyIdDesc(
+            String entityCode, ScrollPosition position, Limit limit);
+
+    /**
+     * Page through the keys of a financial entity with a given status
+     */
+    @EntityGraph(attributePaths = "financialEntity")
+    Window<Key> findByFinancialEntityEntityCodeAndStatusOrderByCreatedAtDescKeyIdDesc(
+            String entityCode, KeyStatus status, ScrollPosition position, Limit limit);
+
+    /**
+     * Page through the keys of an account number
+     */
+    @EntityGraph(attributePaths = "financialEntity")
+    Window<Key> findByAccountNumberOrderByCreatedAtDescKeyIdDesc(
+            String accountNumber, ScrollPosition position, Limit limit);
+
+    /**
+     * Page through the keys of an owner document
+     */
+    @EntityGraph(attributePaths = "financialEntity")
+    Window<Key> findByOwnerDocumentOrderByCreatedAtDescKeyIdDesc(
+            String ownerDocument, ScrollPosition position, Limit limit);
+
+    @EntityGraph(attributePaths = "financialEntity")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Key> streamByFinancialEntityEntityCodeOrderByCreatedAtDescKeyIdDesc(String entityCode);
+
+    @EntityGraph(attributePaths = "financialEntity")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Key> streamByFinancialEntityEntityCodeAndStatusOrderByCreatedAtDescKeyIdDesc(String entityCode, KeyStatus status);
+
+    @EntityGraph(attributePaths = "financialEntity")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Key> streamByAccountNumberOrderByCreatedAtDescKeyIdDesc(String accountNumber);
+
+    @EntityGraph(attributePaths = "financialEntity")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Key> streamByOwnerDocumentOrderByCreatedAtDescKeyIdDesc(String ownerDocument);
+
+    @EntityGraph(attributePaths = "financialEntity")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Key> streamByStatusOrderByCreatedAtDescKeyIdDesc(KeyStatus status);
+
+    /**
+     * Insert a new active key unless its value is already registered.
+     * Relies on the unique index on key_value, no lock required.
+     * @return 1 if the key was inserted, 0 if the value already existed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO keys (key_id, key_value, account_number, owner_document, status, entity_id, created_at) " +
+                   "VALUES (:keyId, :keyValue, :accountNumber, :ownerDocument, 'ACTIVE', :entityId, :createdAt) " +
+                   "ON CONFLICT (key_value) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("keyId") UUID keyId,
+                       @Param("keyValue") String keyValue,
+                       @Param("accountNumber") String accountNumber,
+                       @Param("ownerDocument") String ownerDocument,
+                       @Param("entityId") UUID entityId,
+                       @Param("createdAt") LocalDateTime createdAt);
 
     /**
-     * Find all keys by status
+     * Take a transaction-scoped advisory lock on a key value, released at commit or rollback.
+     * Replaces the Redis lock while Redis is unavailable; the first key keeps these
+     * locks apart from other advisory lock users, hash collisions only add waiting.
      */
-    List<Key> findByStatus(KeyStatus status);
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(1263839571, hashtext(:keyValue))", nativeQuery = true)
+    int lockKeyValue(@Param("keyValue") String keyValue);
 
     /**
      * Suspend a key by its ID
@@ -0,0 +1,208 @@
+package com.mati.RetoFinal.repositories;
+
+import com.mati.RetoFinal.dto.KeyCursor;
+import com.mati.RetoFinal.dto.KeyListFilter;
+import com.mati.RetoFinal.models.FinancialEntity;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.models.KeyStatus;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Non-blocking access to the keys and financial_entities tables over R2DBC,
+ * used by the reactive stack. Mirrors the KeyRepository queries it needs.
+ */
+@Repository
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveKeyRepository {
+
+    private static final String SELECT_WITH_ENTITY =
+            "SELECT k.key_id, k.key_value, k.account_number, k.owner_document, k.status, k.created_at, k.updated_at, " +
+            "e.entity_id, e.entity_code, e.entity_name, e.is_active " +
+            "FROM keys k JOIN financial_entities e ON e.entity_id = k.entity_id ";
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Find a key by its value with its financial entity loaded
+     */
+    public Mono<Key> findWithEntityByKeyValue(String keyValue) {
+        return databaseClient.sql(SELECT_WITH_ENTITY + "WHERE k.key_value = :keyValue")
+                .bind("keyValue", keyValue)
+                .map(ReactiveKeyRepository::toKey)
+                .one();
+    }
+
+    /**
+     * Find all keys matching any of the given values, with their financial entity loaded
+     */
+    public Flux<Key> findWithEntityByKeyValueIn(Collection<String> keyValues) {
+        return databaseClient.sql(SELECT_WITH_ENTITY + "WHERE k.key_value = ANY(:keyValues)")
+                .bind("keyValues", keyValues.toArray(String[]::new))
+                .map(ReactiveKeyRepository::toKey)
+                .all();
+    }
+
+    /**
+     * Find a key by its ID with its financial entity loaded
+     */
+    public Mono<Key> findWithEntityById(UUID keyId) {
+        return databaseClient.sql(SELECT_WITH_ENTITY + "WHERE k.key_id = :keyId")
+                .bind("keyId", keyId)
+                .map(ReactiveKeyRepository::toKey)
+                .one();
+    }
+
+    /**
+     * Keys matching a listing filter, most recently created first, strictly after the cursor
+     * @param after last key of the previous page, null to start from the most recent key
+     * @param limit maximum number of rows, 0 for all of them
+     */
+    public Flux<Key> findByFilter(KeyListFilter filter, KeyCursor after, int limit) {
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> binds = new LinkedHashMap<>();
+        if (filter.getEntityCode() != null) {
+            conditions.add("e.entity_code = :entityCode");
+            binds.put("entityCode", filter.getEntityCode());
+        }
+        if (filter.getStatus() != null) {
+            conditions.add("k.status = :status");
+            binds.put("status", filter.getStatus().name());
+        }
+        if (filter.getAccountNumber() != null) {
+            conditions.add("k.account_number = :accountNumber");
+            binds.put("accountNumber", filter.getAccountNumber());
+        }
+        if (filter.getOwnerDocument() != null) {
+            conditions.add("k.owner_document = :ownerDocument");
+            binds.put("ownerDocument", filter.getOwnerDocument());
+        }
+        if (after != null) {
+            conditions.add("(k.created_at, k.key_id) < (:createdAt, :keyId)");
+            binds.put("createdAt", after.getCreatedAt());
+            binds.put("keyId", after.getKeyId());
+        }
+
+        String sql = SELECT_WITH_ENTITY + "WHERE " + String.join(" AND ", conditions)
+                + " ORDER BY k.created_at DESC, k.key_id DESC";
+        if (limit > 0) {
+            sql += " LIMIT :limit";
+            binds.put("limit", limit);
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (Map.Entry<String, Object> bind : binds.entrySet()) {
+            spec = spec.bind(bind.getKey(), bind.getValue());
+        }
+        return spec.map(ReactiveKeyRepository::toKey).all();
+    }
+
+    /**
+     * Find an active financial entity by its code
+     */
+    public Mono<FinancialEntity> findActiveEntityByCode(String entityCode) {
+        return databaseClient.sql("SELECT entity_id, entity_code, entity_name, is_active FROM financial_entities " +
+                        "WHERE entity_code = :entityCode AND is_active = true")
+                .bind("entityCode", entityCode)
+                .map(ReactiveKeyRepository::toEntity)
+                .one();
+    }
+
+    /**
+     * Insert a new active key unless its value is already registered.
+     * @return 1 if the key was inserted, 0 if the value already existed
+     */
+    public Mono<Long> insertIfAbsent(UUID keyId, String keyValue, String accountNumber, String ownerDocument,
+                                     UUID entityId, LocalDateTime createdAt) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(
+                        "INSERT INTO keys (key_id, key_value, account_number, owner_document, status, entity_id, created_at) " +
+                        "VALUES (:keyId, :keyValue, :accountNumber, :ownerDocument, 'ACTIVE', :entityId, :createdAt) " +
+                        "ON CONFLICT (key_value) DO NOTHING")
+                .bind("keyId", keyId)
+                .bind("keyValue", keyValue)
+                .bind("entityId", entityId)
+                .bind("createdAt", createdAt);
+        spec = bindNullable(spec, "accountNumber", accountNumber);
+        spec = bindNullable(spec, "ownerDocument", ownerDocument);
+        return spec.fetch().rowsUpdated();
+    }
+
+    /**
+     * Write back the mutable fields of a key
+     * @return the number of updated rows
+     */
+    public Mono<Long> update(Key key) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(
+                        "UPDATE keys SET account_number = :accountNumber, owner_document = :ownerDocument, " +
+                        "status = :status, updated_at = :updatedAt WHERE key_id = :keyId")
+                .bind("status", key.getStatus().name())
+                .bind("updatedAt", key.getUpdatedAt())
+                .bind("keyId", key.getKeyId());
+        spec = bindNullable(spec, "accountNumber", key.getAccountNumber());
+        spec = bindNullable(spec, "ownerDocument", key.getOwnerDocument());
+        return spec.fetch().rowsUpdated();
+    }
+
+    /**
+     * Write back the mutable fields of a key and its key_outbox entry in a single statement,
+     * so both commit or neither does without a reactive transaction manager
+     * @return the number of outbox entries written (0 if the key no longer exists)
+     */
+    public Mono<Long> updateWithOutbox(Key key, String eventType, String payload) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(
+                        "WITH updated AS (UPDATE keys SET account_number = :accountNumber, owner_document = :ownerDocument, " +
+                        "status = :status, updated_at = :updatedAt WHERE key_id = :keyId RETURNING key_value) " +
+                        "INSERT INTO key_outbox (key_value, event_type, payload, created_at) " +
+                        "SELECT key_value, :eventType, :payload, :updatedAt FROM updated")
+                .bind("status", key.getStatus().name())
+                .bind("updatedAt", key.getUpdatedAt())
+                .bind("keyId", key.getKeyId())
+                .bind("eventType", eventType)
+                .bind("payload", payload);
+        spec = bindNullable(spec, "accountNumber", key.getAccountNumber());
+        spec = bindNullable(spec, "ownerDocument", key.getOwnerDocument());
+        return spec.fetch().rowsUpdated();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec,
+                                                                  String name, String value) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, String.class);
+    }
+
+    private static Key toKey(Readable row) {
+        return Key.builder()
+                .keyId(row.get("key_id", UUID.class))
+                .keyValue(row.get("key_value", String.class))
+                .accountNumber(row.get("account_number", String.class))
+                .ownerDocument(row.get("owner_document", String.class))
+                .status(KeyStatus.valueOf(row.get("status", String.class)))
+                .createdAt(row.get("created_at", LocalDateTime.class))
+                .updatedAt(row.get("updated_at", LocalDateTime.class))
+                .financialEntity(toEntity(row))
+                .build();
+    }
+
+    private static FinancialEntity toEntity(Readable row) {
+        return FinancialEntity.builder()
+                .entityId(row.get("entity_id", UUID.class))
+                .entityCode(row.get("entity_code", String.class))
+                .entityName(row.get("entity_name", String.class))
+                .isActive(row.get("is_active", Boolean.class))
+                .build();
+    }
+}
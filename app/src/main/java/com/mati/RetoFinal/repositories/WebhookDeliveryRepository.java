@@ -0,0 +1,67 @@
+package com.mati.RetoFinal.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.mati.RetoFinal.models.WebhookDelivery;
+import com.mati.RetoFinal.models.WebhookDeliveryStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for pending webhook deliveries.
+ */
+@Repository
+public interface WebhookDeliveryRepository extends JpaRepository<WebhookDelivery, UUID> {
+
+    /**
+     * Claim up to limit due deliveries by moving their next attempt to leaseUntil.
+     * SKIP LOCKED lets several pods claim concurrently without handing out the same row;
+     * a claim that is never completed (pod crash) becomes due again once the lease expires.
+     */
+    @Query(value = "UPDATE webhook_deliveries SET next_attempt_at = :leaseUntil WHERE delivery_id IN (" +
+            "SELECT delivery_id FROM webhook_deliveries WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED) RETURNING *",
+            nativeQuery = true)
+    List<WebhookDelivery> claimDue(@Param("now") LocalDateTime now,
+                                   @Param("leaseUntil") LocalDateTime leaseUntil,
+                                   @Param("limit") int limit);
+
+    /**
+     * Move the next attempt of the given deliveries without counting an attempt
+     */
+    @Modifying
+    @Query("UPDATE WebhookDelivery d SET d.nextAttemptAt = :nextAttemptAt WHERE d.deliveryId IN :ids")
+    int reschedule(@Param("ids") Collection<UUID> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    /**
+     * Record a failed attempt and schedule the next one
+     */
+    @Modifying
+    @Query("UPDATE WebhookDelivery d SET d.attempts = d.attempts + 1, d.nextAttemptAt = :nextAttemptAt, " +
+           "d.lastError = :error WHERE d.deliveryId IN :ids")
+    int retryLater(@Param("ids") Collection<UUID> ids,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("error") String error);
+
+    /**
+     * Record a failed attempt and give up on the given deliveries
+     */
+    @Modifying
+    @Query("UPDATE WebhookDelivery d SET d.attempts = d.attempts + 1, d.status = :status, " +
+           "d.lastError = :error WHERE d.deliveryId IN :ids")
+    int markFailed(@Param("ids") Collection<UUID> ids,
+                   @Param("status") WebhookDeliveryStatus status,
+                   @Param("error") String error);
+
+    /**
+     * Count deliveries by status
+     */
+    long countByStatus(WebhookDeliveryStatus status);
+}
@@ -0,0 +1,30 @@
+package com.mati.RetoFinal.services;
+
+import org.redisson.client.RedisConnectionException;
+import org.redisson.client.RedisTimeoutException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * Tells failures to reach Redis or the database, which callers should retry
+ * later, apart from bugs.
+ */
+public final class BackendFailures {
+
+    private BackendFailures() {
+    }
+
+    public static boolean isBackendDown(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessResourceFailureException
+                    || cause instanceof TransientDataAccessException
+                    || cause instanceof CannotCreateTransactionException
+                    || cause instanceof RedisConnectionException
+                    || cause instanceof RedisTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
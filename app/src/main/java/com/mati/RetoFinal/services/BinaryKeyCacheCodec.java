@@ -0,0 +1,237 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.models.KeyStatus;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary format for KeyCacheDto.
+ *
+ * Layout (version 1):
+ * magic (1) | version (1) | presence flags (1) | keyId msb/lsb (16) | status ordinal (1) |
+ * createdAt epoch millis UTC (8) | keyValue, accountNumber, ownerDocument, entityCode
+ * as unsigned-short length + UTF-8 bytes. Absent fields are skipped.
+ *
+ * Also maps an entry onto Redis hash fields for the hash storage mode.
+ * KeyStatus constants must only ever be appended, never reordered.
+ */
+public class BinaryKeyCacheCodec implements KeyCacheCodec {
+
+    static final byte MAGIC = (byte) 0xB7;
+    static final byte VERSION = 1;
+
+    private static final int HAS_KEY_ID = 1;
+    private static final int HAS_STATUS = 1 << 1;
+    private static final int HAS_CREATED_AT = 1 << 2;
+    private static final int HAS_KEY_VALUE = 1 << 3;
+    private static final int HAS_ACCOUNT_NUMBER = 1 << 4;
+    private static final int HAS_OWNER_DOCUMENT = 1 << 5;
+    private static final int HAS_ENTITY_CODE = 1 << 6;
+
+    private static final KeyStatus[] STATUSES = KeyStatus.values();
+
+    static final String FIELD_VERSION = "v";
+    static final String FIELD_KEY_ID = "id";
+    static final String FIELD_KEY_VALUE = "kv";
+    static final String FIELD_ACCOUNT_NUMBER = "an";
+    static final String FIELD_OWNER_DOCUMENT = "od";
+    static final String FIELD_STATUS = "st";
+    static final String FIELD_ENTITY_CODE = "ec";
+    static final String FIELD_CREATED_AT = "ca";
+
+    @Override
+    public byte[] encode(KeyCacheDto dto) {
+        byte[] keyValue = utf8(dto.getKeyValue());
+        byte[] accountNumber = utf8(dto.getAccountNumber());
+        byte[] ownerDocument = utf8(dto.getOwnerDocument());
+        byte[] entityCode = utf8(dto.getEntityCode());
+
+        int flags = 0;
+        int size = 3;
+        if (dto.getKeyId() != null) { flags |= HAS_KEY_ID; size += 16; }
+        if (dto.getStatus() != null) { flags |= HAS_STATUS; size += 1; }
+        if (dto.getCreatedAt() != null) { flags |= HAS_CREATED_AT; size += 8; }
+        if (keyValue != null) { flags |= HAS_KEY_VALUE; size += 2 + keyValue.length; }
+        if (accountNumber != null) { flags |= HAS_ACCOUNT_NUMBER; size += 2 + accountNumber.length; }
+        if (ownerDocument != null) { flags |= HAS_OWNER_DOCUMENT; size += 2 + ownerDocument.length; }
+        if (entityCode != null) { flags |= HAS_ENTITY_CODE; size += 2 + entityCode.length; }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MAGIC).put(VERSION).put((byte) flags);
+        if (dto.getKeyId() != null) {
+            buffer.putLong(dto.getKeyId().getMostSignificantBits());
+            buffer.putLong(dto.getKeyId().getLeastSignificantBits());
+        }
+        if (dto.getStatus() != null) {
+            buffer.put((byte) dto.getStatus().ordinal());
+        }
+        if (dto.getCreatedAt() != null) {
+            buffer.putLong(toEpochMillis(dto.getCreatedAt()));
+        }
+        putString(buffer, keyValue);
+        putString(buffer, accountNumber);
+        putString(buffer, ownerDocument);
+        putString(buffer, entityCode);
+        return buffer.array();
+    }
+
+    @Override
+    public KeyCacheDto decode(byte[] bytes) {
+        if (!canDecode(bytes)) {
+            throw new IllegalArgumentException("Not a binary KeyCacheDto entry");
+        }
+        if (bytes[1] != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary KeyCacheDto version: " + bytes[1]);
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 3, bytes.length - 3);
+            int flags = bytes[2];
+            KeyCacheDto.KeyCacheDtoBuilder builder = KeyCacheDto.builder();
+            if ((flags & HAS_KEY_ID) != 0) {
+                builder.keyId(new UUID(buffer.getLong(), buffer.getLong()));
+            }
+            if ((flags & HAS_STATUS) != 0) {
+                builder.status(status(buffer.get()));
+            }
+            if ((flags & HAS_CREATED_AT) != 0) {
+                builder.createdAt(fromEpochMillis(buffer.getLong()));
+            }
+            if ((flags & HAS_KEY_VALUE) != 0) {
+                builder.keyValue(getString(buffer));
+            }
+            if ((flags & HAS_ACCOUNT_NUMBER) != 0) {
+                builder.accountNumber(getString(buffer));
+            }
+            if ((flags & HAS_OWNER_DOCUMENT) != 0) {
+                builder.ownerDocument(getString(buffer));
+            }
+            if ((flags & HAS_ENTITY_CODE) != 0) {
+                builder.entityCode(getString(buffer));
+            }
+            return builder.build();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary KeyCacheDto entry", e);
+        }
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes.length >= 3 && bytes[0] == MAGIC;
+    }
+
+    /**
+     * Map an entry onto Redis hash fields (fixed-width binary values)
+     */
+    public Map<byte[], byte[]> toHash(KeyCacheDto dto) {
+        Map<byte[], byte[]> hash = new HashMap<>();
+        hash.put(utf8(FIELD_VERSION), new byte[] {VERSION});
+        if (dto.getKeyId() != null) {
+            hash.put(utf8(FIELD_KEY_ID), ByteBuffer.allocate(16)
+                    .putLong(dto.getKeyId().getMostSignificantBits())
+                    .putLong(dto.getKeyId().getLeastSignificantBits())
+                    .array());
+        }
+        if (dto.getStatus() != null) {
+            hash.put(utf8(FIELD_STATUS), new byte[] {(byte) dto.getStatus().ordinal()});
+        }
+        if (dto.getCreatedAt() != null) {
+            hash.put(utf8(FIELD_CREATED_AT), ByteBuffer.allocate(8).putLong(toEpochMillis(dto.getCreatedAt())).array());
+        }
+        putField(hash, FIELD_KEY_VALUE, dto.getKeyValue());
+        putField(hash, FIELD_ACCOUNT_NUMBER, dto.getAccountNumber());
+        putField(hash, FIELD_OWNER_DOCUMENT, dto.getOwnerDocument());
+        putField(hash, FIELD_ENTITY_CODE, dto.getEntityCode());
+        return hash;
+    }
+
+    /**
+     * Rebuild an entry from Redis hash fields
+     * @return null if the hash is empty (missing key)
+     */
+    public KeyCacheDto fromHash(Map<byte[], byte[]> rawHash) {
+        if (rawHash == null || rawHash.isEmpty()) {
+            return null;
+        }
+        Map<String, byte[]> hash = new HashMap<>();
+        rawHash.forEach((field, value) -> hash.put(new String(field, StandardCharsets.UTF_8), value));
+
+        byte[] version = hash.get(FIELD_VERSION);
+        if (version == null || version.length != 1 || version[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported hash KeyCacheDto version");
+        }
+
+        KeyCacheDto.KeyCacheDtoBuilder builder = KeyCacheDto.builder();
+        byte[] keyId = hash.get(FIELD_KEY_ID);
+        if (keyId != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(keyId);
+            builder.keyId(new UUID(buffer.getLong(), buffer.getLong()));
+        }
+        byte[] status = hash.get(FIELD_STATUS);
+        if (status != null) {
+            builder.status(status(status[0]));
+        }
+        byte[] createdAt = hash.get(FIELD_CREATED_AT);
+        if (createdAt != null) {
+            builder.createdAt(fromEpochMillis(ByteBuffer.wrap(createdAt).getLong()));
+        }
+        return builder
+                .keyValue(string(hash.get(FIELD_KEY_VALUE)))
+                .accountNumber(string(hash.get(FIELD_ACCOUNT_NUMBER)))
+                .ownerDocument(string(hash.get(FIELD_OWNER_DOCUMENT)))
+                .entityCode(string(hash.get(FIELD_ENTITY_CODE)))
+                .build();
+    }
+
+    private static KeyStatus status(byte ordinal) {
+        if (ordinal < 0 || ordinal >= STATUSES.length) {
+            throw new IllegalArgumentException("Unknown KeyStatus ordinal: " + ordinal);
+        }
+        return STATUSES[ordinal];
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromEpochMillis(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value != null) {
+            buffer.putShort((short) value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void putField(Map<byte[], byte[]> hash, String field, String value) {
+        if (value != null) {
+            hash.put(utf8(field), utf8(value));
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String string(byte[] value) {
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+}
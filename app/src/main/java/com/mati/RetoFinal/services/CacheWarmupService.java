@@ -0,0 +1,194 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.models.KeyStatus;
+import com.mati.RetoFinal.repositories.KeyRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preloads active keys into Redis, most recently created first, so a cold cache
+ * (new deploy, ElastiCache failover) does not send every lookup to Aurora.
+ * Keys are read from the reader with keyset pagination and written with one
+ * pipeline per page. Until the first warm-up reaches cache.warmup.ready-fraction
+ * of its target (or cache.warmup.max-wait elapses) the pod reports itself as not ready.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheWarmupService {
+
+    private final KeyRepository keyRepository;
+    private final KeyCacheService keyCacheService;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cache.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.warmup.max-keys:1000000}")
+    private long maxKeys;
+
+    @Value("${cache.warmup.page-size:1000}")
+    private int pageSize;
+
+    @Value("${cache.warmup.ready-fraction:0.8}")
+    private double readyFraction;
+
+    @Value("${cache.warmup.max-wait:120s}")
+    private Duration maxWait;
+
+    private final ExecutorService warmupExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "cache-warmup"));
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicLong alreadyCached = new AtomicLong();
+
+    private TransactionTemplate readOnlyTx;
+    private volatile long target = -1;
+    private volatile long startedAt;
+    private volatile boolean finished;
+    private volatile boolean ready;
+
+    @PostConstruct
+    void init() {
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+
+        Gauge.builder("keys.cache.warmup.progress", this, CacheWarmupService::progress)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!start()) {
+            ready = true;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        warmupExecutor.shutdownNow();
+    }
+
+    /**
+     * Trigger an asynchronous warm-up (e.g. after an ElastiCache failover)
+     * @return false if disabled or a warm-up is already running on this pod
+     */
+    public boolean start() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return false;
+        }
+        loaded.set(0);
+        alreadyCached.set(0);
+        target = -1;
+        finished = false;
+        startedAt = System.nanoTime();
+        warmupExecutor.submit(this::warmUp);
+        return true;
+    }
+
+    /**
+     * Readiness gate: true once the startup warm-up is far enough along, has
+     * finished (or failed) or has run for cache.warmup.max-wait. Later warm-ups
+     * never take a ready pod out of rotation.
+     */
+    public boolean isReady() {
+        if (!ready) {
+            long warmed = loaded.get() + alreadyCached.get();
+            boolean warmEnough = target >= 0 && warmed >= readyFraction * target;
+            boolean timedOut = startedAt != 0 && System.nanoTime() - startedAt >= maxWait.toNanos();
+            if (warmEnough || finished || timedOut) {
+                ready = true;
+                log.info("Cache warm-up readiness reached ({} of {} keys warm)", warmed, target);
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Fraction of the warm-up target already in Redis
+     */
+    public double progress() {
+        long currentTarget = target;
+        if (currentTarget <= 0) {
+            return finished ? 1.0 : 0.0;
+        }
+        return Math.min(1.0, (double) (loaded.get() + alreadyCached.get()) / currentTarget);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("target", target);
+        stats.put("loaded", loaded.get());
+        stats.put("alreadyCached", alreadyCached.get());
+        stats.put("progress", progress());
+        return stats;
+    }
+
+    private void warmUp() {
+        try {
+            long activeKeys = readOnlyTx.execute(status -> keyRepository.countByStatus(KeyStatus.ACTIVE));
+            target = Math.min(activeKeys, maxKeys);
+            log.info("Cache warm-up started for {} of {} active keys", target, activeKeys);
+
+            ScrollPosition position = ScrollPosition.keyset();
+            long remaining = target;
+            while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+                ScrollPosition from = position;
+                Limit limit = Limit.of((int) Math.min(pageSize, remaining));
+                Window<Key> page = readOnlyTx.execute(status ->
+                        keyRepository.findByStatusOrderByCreatedAtDescKeyIdDesc(KeyStatus.ACTIVE, from, limit));
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+
+                Map<String, KeyCacheDto> dtos = new LinkedHashMap<>();
+                page.forEach(key -> dtos.put(key.getKeyValue(), KeyCacheDto.fromEntity(key)));
+                int written = keyCacheService.warmKeyDtos(dtos);
+                loaded.addAndGet(written);
+                alreadyCached.addAndGet(dtos.size() - written);
+                remaining -= page.size();
+
+                if (!page.hasNext()) {
+                    break;
+                }
+                position = page.positionAt(page.size() - 1);
+            }
+
+            log.info("Cache warm-up finished: {} keys loaded, {} already cached in {}ms",
+                    loaded.get(), alreadyCached.get(), Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+        } catch (Exception e) {
+            log.error("Error warming up key cache after {} keys. Error: {}",
+                    loaded.get() + alreadyCached.get(), e.getMessage());
+        } finally {
+            finished = true;
+            running.set(false);
+        }
+    }
+}
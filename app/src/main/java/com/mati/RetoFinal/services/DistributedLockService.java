@@ -1,88 +1,350 @@
 package com.mati.RetoFinal.services;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service for managing distributed locks using Redisson.
  * Prevents race conditions in distributed systems.
+ *
+ * Redisson identifies the lock owner by thread id. The id is captured once on the
+ * request thread and passed explicitly, so ownership is the same whether requests
+ * run on platform or virtual threads (virtual thread ids are unique and never reused).
+ * A lock must be released by the thread that acquired it.
+ *
+ * Acquisition first tries without waiting, so contention is measured directly:
+ * keys.lock.acquisitions counts uncontended, contended, timed out and failed attempts
+ * and keys.lock.waiting how many requests are currently queued on a held lock.
+ * The first attempt is recorded by RedisCircuitBreaker; while the circuit is open
+ * acquisition returns UNAVAILABLE without calling Redis and callers switch to the
+ * fallback provider (keys.lock.fallback): a PostgreSQL advisory lock, or none at all
+ * with the unique index on key_value arbitrating. keys.lock.provider.active shows
+ * which one is in use.
+ *
+ * Before Redis, a local lock striped by key hash (keys.lock.local-stripes) is taken,
+ * so concurrent requests for the same key value on one pod queue locally and only
+ * one of them competes for the Redis lock. The Redis lease follows the hold times
+ * measured here (keys.lock.hold) instead of a fixed 10s.
+ *
+ * A key value has a Redis lock under each of its RedisKeyNames lock names; all of
+ * them are taken, in order, so pods using either naming exclude each other.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DistributedLockService {
 
-    private static final String LOCK_PREFIX = "lock:key:";
-    private static final Duration DEFAULT_WAIT_TIME = Duration.ofSeconds(5);
-    private static final Duration DEFAULT_LEASE_TIME = Duration.ofSeconds(10);
+    static final Duration DEFAULT_WAIT_TIME = Duration.ofSeconds(5);
+    static final Duration DEFAULT_LEASE_TIME = Duration.ofSeconds(10);
+
+    public static final String PROVIDER_REDIS = "redis";
+    public static final String PROVIDER_ADVISORY = "advisory";
+    public static final String PROVIDER_INSERT = "insert";
+
+    /**
+     * Result of a lock acquisition
+     */
+    public enum Acquisition {
+        ACQUIRED,
+
+        /**
+         * Held by another owner for the whole wait time
+         */
+        TIMED_OUT,
+
+        /**
+         * Redis could not be reached
+         */
+        UNAVAILABLE
+    }
 
     private final RedissonClient redissonClient;
+    private final MeterRegistry meterRegistry;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final RedisKeyNames keyNames;
+
+    @Value("${keys.lock.fallback:advisory}")
+    private String fallback;
+
+    @Value("${keys.lock.local-stripes:1024}")
+    private int localStripes;
+
+    @Value("${keys.lock.lease.adaptive:true}")
+    private boolean adaptiveLease;
+
+    @Value("${keys.lock.lease.hold-multiplier:4}")
+    private double leaseHoldMultiplier;
+
+    @Value("${keys.lock.lease.min:2s}")
+    private Duration minLease;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger localWaiting = new AtomicInteger();
+
+    // Start of the current hold per key value; the stripe guarantees one holder per key on this pod
+    private final Map<String, Long> heldSince = new ConcurrentHashMap<>();
+
+    private ReentrantLock[] stripes;
+
+    private Counter uncontended;
+    private Counter contended;
+    private Counter timedOut;
+    private Counter failed;
+    private Counter localUncontended;
+    private Counter localContended;
+    private Timer holdTime;
+
+    @PostConstruct
+    void registerMetrics() {
+        stripes = new ReentrantLock[localStripes];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        localUncontended = Counter.builder("keys.lock.local.acquisitions").tag("result", "uncontended").register(meterRegistry);
+        localContended = Counter.builder("keys.lock.local.acquisitions").tag("result", "contended").register(meterRegistry);
+        Gauge.builder("keys.lock.local.waiting", localWaiting, AtomicInteger::get)
+                .register(meterRegistry);
+        holdTime = Timer.builder("keys.lock.hold")
+                .register(meterRegistry);
+        Gauge.builder("keys.lock.lease", this, service -> service.leaseTime().toMillis())
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+
+        uncontended = Counter.builder("keys.lock.acquisitions").tag("result", "uncontended").register(meterRegistry);
+        contended = Counter.builder("keys.lock.acquisitions").tag("result", "contended").register(meterRegistry);
+        timedOut = Counter.builder("keys.lock.acquisitions").tag("result", "timeout").register(meterRegistry);
+        failed = Counter.builder("keys.lock.acquisitions").tag("result", "error").register(meterRegistry);
+        Gauge.builder("keys.lock.waiting", waiting, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("keys.lock.contention.ratio", this, DistributedLockService::contentionRatio)
+                .register(meterRegistry);
+        for (String provider : List.of(PROVIDER_REDIS, fallbackProvider())) {
+            Gauge.builder("keys.lock.provider.active", this, service -> provider.equals(service.activeProvider()) ? 1 : 0)
+                    .tag("provider", provider)
+                    .register(meterRegistry);
+        }
+    }
 
     /**
-     * Acquire a lock with default wait and lease times
+     * Provider used when the Redis lock is unavailable: advisory or insert
      */
-    public boolean acquireLock(String key) {
-        return acquireLock(key, DEFAULT_WAIT_TIME, DEFAULT_LEASE_TIME);
+    public String fallbackProvider() {
+        return PROVIDER_INSERT.equalsIgnoreCase(fallback) ? PROVIDER_INSERT : PROVIDER_ADVISORY;
     }
 
     /**
-     * Acquire a lock with custom wait and lease times
+     * Provider new acquisitions go to: the fallback while the Redis circuit is open
+     */
+    public String activeProvider() {
+        return circuitBreaker.getState() == RedisCircuitBreaker.State.OPEN ? fallbackProvider() : PROVIDER_REDIS;
+    }
+
+    /**
+     * Acquire a lock with the default wait time and the measured lease time
+     */
+    public Acquisition acquireLock(String key) {
+        return acquireLock(key, DEFAULT_WAIT_TIME, leaseTime());
+    }
+
+    /**
+     * Acquire a lock with custom wait and lease times: the local stripe, then the Redis lock
      * @param key The key to lock
-     * @param waitTime Maximum time to wait for lock
+     * @param waitTime Maximum time to wait for lock, local and Redis waits together
      * @param leaseTime Time after which lock is automatically released
-     * @return true if lock was acquired, false otherwise
+     * @return ACQUIRED, or why not. Timeouts are expected under contention and only logged at debug level
      */
-    public boolean acquireLock(String key, Duration waitTime, Duration leaseTime) {
-        String lockKey = LOCK_PREFIX + key;
-        RLock lock = redissonClient.getLock(lockKey);
+    public Acquisition acquireLock(String key, Duration waitTime, Duration leaseTime) {
+        long deadline = System.nanoTime() + waitTime.toNanos();
+        ReentrantLock stripe = stripeFor(key);
+        Acquisition local = lockStripe(stripe, key, waitTime);
+        if (local != Acquisition.ACQUIRED) {
+            return local;
+        }
+
+        Acquisition remote = acquireRemote(key, Duration.ofNanos(Math.max(0, deadline - System.nanoTime())), leaseTime);
+        if (remote == Acquisition.ACQUIRED) {
+            heldSince.put(key, System.nanoTime());
+        } else {
+            stripe.unlock();
+        }
+        return remote;
+    }
 
+    /**
+     * Lease for the Redis lock: a multiple of the longest recent hold time, between
+     * keys.lock.lease.min and the default 10s
+     */
+    public Duration leaseTime() {
+        if (!adaptiveLease) {
+            return DEFAULT_LEASE_TIME;
+        }
+        long lease = (long) (holdTime.max(TimeUnit.MILLISECONDS) * leaseHoldMultiplier);
+        return Duration.ofMillis(Math.min(DEFAULT_LEASE_TIME.toMillis(), Math.max(minLease.toMillis(), lease)));
+    }
+
+    private Acquisition lockStripe(ReentrantLock stripe, String key, Duration waitTime) {
+        if (stripe.tryLock()) {
+            localUncontended.increment();
+            return Acquisition.ACQUIRED;
+        }
+
+        localContended.increment();
+        localWaiting.incrementAndGet();
         try {
-            boolean acquired = lock.tryLock(
-                waitTime.toMillis(),
-                leaseTime.toMillis(),
-                TimeUnit.MILLISECONDS
-            );
+            if (stripe.tryLock(waitTime.toNanos(), TimeUnit.NANOSECONDS)) {
+                return Acquisition.ACQUIRED;
+            }
+            timedOut.increment();
+            log.debug("Failed to acquire local lock for key: {} after waiting {}ms", key, waitTime.toMillis());
+            return Acquisition.TIMED_OUT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.increment();
+            log.warn("Thread interrupted while acquiring local lock for key: {}", key);
+            return Acquisition.UNAVAILABLE;
+        } finally {
+            localWaiting.decrementAndGet();
+        }
+    }
+
+    private ReentrantLock stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    private Acquisition acquireRemote(String key, Duration waitTime, Duration leaseTime) {
+        List<RLock> locks = locks(key);
+        long ownerId = currentOwnerId();
 
-            if (acquired) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            failed.increment();
+            return Acquisition.UNAVAILABLE;
+        }
+        try {
+            boolean free;
+            long start = System.nanoTime();
+            try {
+                free = tryLock(locks, Duration.ZERO, leaseTime, ownerId);
+                circuitBreaker.onSuccess(start);
+            } catch (ExecutionException | RuntimeException e) {
+                circuitBreaker.onError(start);
+                throw e;
+            }
+            if (free) {
+                uncontended.increment();
                 log.debug("Lock acquired for key: {}", key);
-            } else {
-                log.warn("Failed to acquire lock for key: {} after waiting {}ms", key, waitTime.toMillis());
+                return Acquisition.ACQUIRED;
+            }
+
+            contended.increment();
+            waiting.incrementAndGet();
+            boolean acquired;
+            try {
+                acquired = tryLock(locks, waitTime, leaseTime, ownerId);
+            } finally {
+                waiting.decrementAndGet();
             }
 
-            return acquired;
+            if (!acquired) {
+                timedOut.increment();
+                log.debug("Failed to acquire lock for key: {} after waiting {}ms", key, waitTime.toMillis());
+                return Acquisition.TIMED_OUT;
+            }
+            log.debug("Lock acquired for key: {} after waiting", key);
+            return Acquisition.ACQUIRED;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            log.error("Thread interrupted while acquiring lock for key: {}", key, e);
-            return false;
+            failed.increment();
+            log.warn("Thread interrupted while acquiring lock for key: {}", key);
+            return Acquisition.UNAVAILABLE;
+        } catch (ExecutionException e) {
+            failed.increment();
+            log.error("Error acquiring lock for key: {}. Error: {}", key, e.getCause().getMessage());
+            return Acquisition.UNAVAILABLE;
         } catch (Exception e) {
-            log.error("Error acquiring lock for key: {}. Error: {}", key, e.getMessage(), e);
-            return false;
+            failed.increment();
+            log.error("Error acquiring lock for key: {}. Error: {}", key, e.getMessage());
+            return Acquisition.UNAVAILABLE;
         }
     }
 
+    /**
+     * Share of acquisitions since startup that found the Redis lock already held
+     */
+    public double contentionRatio() {
+        double total = uncontended.count() + contended.count();
+        return total == 0 ? 0.0 : contended.count() / total;
+    }
+
+    /**
+     * Share of acquisitions since startup that queued behind another request on this pod
+     */
+    public double localContentionRatio() {
+        double total = localUncontended.count() + localContended.count();
+        return total == 0 ? 0.0 : localContended.count() / total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeProvider", activeProvider());
+        stats.put("fallbackProvider", fallbackProvider());
+        stats.put("uncontended", (long) uncontended.count());
+        stats.put("contended", (long) contended.count());
+        stats.put("timedOut", (long) timedOut.count());
+        stats.put("failed", (long) failed.count());
+        stats.put("waiting", waiting.get());
+        stats.put("contentionRatio", contentionRatio());
+        stats.put("localContended", (long) localContended.count());
+        stats.put("localWaiting", localWaiting.get());
+        stats.put("localContentionRatio", localContentionRatio());
+        stats.put("maxHoldMs", holdTime.max(TimeUnit.MILLISECONDS));
+        stats.put("leaseMs", leaseTime().toMillis());
+        return stats;
+    }
+
     /**
      * Release a lock
      * @param key The key to unlock
      */
     public void releaseLock(String key) {
-        String lockKey = LOCK_PREFIX + key;
-        RLock lock = redissonClient.getLock(lockKey);
+        List<RLock> locks = locks(key);
+        long ownerId = currentOwnerId();
+        Long since = heldSince.remove(key);
+        if (since != null) {
+            holdTime.record(System.nanoTime() - since, TimeUnit.NANOSECONDS);
+        }
 
         try {
-            if (lock.isHeldByCurrentThread()) {
-                lock.unlock();
+            if (unlock(locks, ownerId)) {
                 log.debug("Lock released for key: {}", key);
             } else {
-                log.warn("Attempted to release lock for key: {} but it's not held by current thread", key);
+                log.warn("Attempted to release lock for key: {} but it's not held by current thread (lease expired?)", key);
             }
         } catch (Exception e) {
             log.error("Error releasing lock for key: {}. Error: {}", key, e.getMessage(), e);
+        } finally {
+            if (since != null) {
+                stripeFor(key).unlock();
+            }
         }
     }
 
@@ -90,23 +352,67 @@ public class DistributedLockService {
      * Check if a lock is currently held
      */
     public boolean isLocked(String key) {
-        String lockKey = LOCK_PREFIX + key;
-        RLock lock = redissonClient.getLock(lockKey);
-        return lock.isLocked();
+        return locks(key).stream().anyMatch(RLock::isLocked);
     }
 
     /**
      * Force unlock (use with caution)
      */
     public void forceUnlock(String key) {
-        String lockKey = LOCK_PREFIX + key;
-        RLock lock = redissonClient.getLock(lockKey);
-
         try {
-            lock.forceUnlock();
+            locks(key).forEach(RLock::forceUnlock);
             log.warn("Force unlock performed for key: {}", key);
         } catch (Exception e) {
             log.error("Error force unlocking key: {}. Error: {}", key, e.getMessage(), e);
         }
     }
+
+    private List<RLock> locks(String key) {
+        return keyNames.lockNames(key).stream().map(redissonClient::getLock).toList();
+    }
+
+    /**
+     * Take every lock within waitTime, or none of them
+     */
+    private static boolean tryLock(List<RLock> locks, Duration waitTime, Duration leaseTime, long ownerId)
+            throws InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + waitTime.toNanos();
+        for (int i = 0; i < locks.size(); i++) {
+            Duration remaining = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+            if (!tryLock(locks.get(i), remaining, leaseTime, ownerId)) {
+                unlock(locks.subList(0, i), ownerId);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Release the locks held by ownerId, in reverse order
+     * @return false if none of them was held any more
+     */
+    private static boolean unlock(List<RLock> locks, long ownerId) {
+        boolean released = false;
+        for (RLock lock : locks.reversed()) {
+            if (lock.isHeldByThread(ownerId)) {
+                lock.unlockAsync(ownerId).toCompletableFuture().join();
+                released = true;
+            }
+        }
+        return released;
+    }
+
+    private static boolean tryLock(RLock lock, Duration waitTime, Duration leaseTime, long ownerId)
+            throws InterruptedException, ExecutionException {
+        return lock.tryLockAsync(
+            waitTime.toMillis(),
+            leaseTime.toMillis(),
+            TimeUnit.MILLISECONDS,
+            ownerId
+        ).toCompletableFuture().get();
+    }
+
+    private static long currentOwnerId() {
+        return Thread.currentThread().threadId();
+    }
 }
@@ -0,0 +1,247 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.config.ReadWriteRoutingDataSource;
+import com.mati.RetoFinal.models.FinancialEntity;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.repositories.FinancialEntityRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory snapshot of the financial_entities table, so key creation resolves
+ * the entity by code without a database round trip. The table is tiny and
+ * almost static: the snapshot is reloaded in the background every refresh-interval
+ * and on every pod as soon as an entity changes (Redis Pub/Sub).
+ * Codes missing from the snapshot fall back to the database.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FinancialEntityRegistry implements MessageListener {
+
+    private static final String CHANNEL = "entities:events";
+
+    private final FinancialEntityRepository financialEntityRepository;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${entities.registry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${entities.registry.refresh-interval:60s}")
+    private Duration refreshInterval;
+
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "entity-registry-refresh"));
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), null);
+
+    private Counter hits;
+    private Counter misses;
+
+    private record Snapshot(Map<String, FinancialEntity> byCode, Map<UUID, String> codesById, LocalDateTime loadedAt) {
+
+        static Snapshot of(List<FinancialEntity> entities) {
+            Map<String, FinancialEntity> byCode = new HashMap<>();
+            Map<UUID, String> codesById = new HashMap<>();
+            for (FinancialEntity entity : entities) {
+                byCode.put(entity.getEntityCode(), entity);
+                codesById.put(entity.getEntityId(), entity.getEntityCode());
+            }
+            return new Snapshot(Map.copyOf(byCode), Map.copyOf(codesById), LocalDateTime.now());
+        }
+
+        Snapshot with(FinancialEntity entity) {
+            Map<String, FinancialEntity> byCode = new HashMap<>(this.byCode);
+            Map<UUID, String> codesById = new HashMap<>(this.codesById);
+            byCode.put(entity.getEntityCode(), entity);
+            codesById.put(entity.getEntityId(), entity.getEntityCode());
+            return new Snapshot(Map.copyOf(byCode), Map.copyOf(codesById), loadedAt);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        hits = Counter.builder("keys.entity.registry.lookups").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("keys.entity.registry.lookups").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("keys.entity.registry.size", this, registry -> registry.snapshot.byCode().size())
+                .register(meterRegistry);
+
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        refreshExecutor.scheduleWithFixedDelay(() -> reload(false),
+                0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Find an active financial entity by its code. The returned instance is detached
+     * and shared: it may be referenced by new keys but must not be modified.
+     */
+    public Optional<FinancialEntity> findActive(String entityCode) {
+        if (!enabled) {
+            return financialEntityRepository.findByEntityCodeAndActive(entityCode);
+        }
+
+        FinancialEntity entity = snapshot.byCode().get(entityCode);
+        if (entity != null) {
+            hits.increment();
+            return Boolean.TRUE.equals(entity.getIsActive()) ? Optional.of(entity) : Optional.empty();
+        }
+
+        // Created after the last reload (or not at all)
+        misses.increment();
+        Optional<FinancialEntity> loaded = financialEntityRepository.findByEntityCodeAndActive(entityCode);
+        loaded.ifPresent(found -> snapshot = snapshot.with(found));
+        return loaded;
+    }
+
+    /**
+     * Find a financial entity by its id, active or not (snapshot, then database)
+     */
+    public Optional<FinancialEntity> findById(UUID entityId) {
+        Snapshot current = snapshot;
+        String code = enabled ? current.codesById().get(entityId) : null;
+        if (code != null) {
+            return Optional.ofNullable(current.byCode().get(code));
+        }
+        return financialEntityRepository.findById(entityId);
+    }
+
+    /**
+     * Snapshot-only lookup for callers that must not block (reactive stack)
+     * @return empty if the code is unknown, inactive or not loaded yet
+     */
+    public Optional<FinancialEntity> findActiveCached(String entityCode) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(snapshot.byCode().get(entityCode))
+                .filter(entity -> Boolean.TRUE.equals(entity.getIsActive()));
+    }
+
+    /**
+     * Entity code of a key, read from the snapshot when its financial entity is an
+     * uninitialized lazy proxy instead of loading it
+     */
+    public String entityCodeOf(Key key) {
+        FinancialEntity entity = key.getFinancialEntity();
+        if (entity == null) {
+            return null;
+        }
+        if (!Hibernate.isInitialized(entity) && entity instanceof HibernateProxy proxy) {
+            String code = snapshot.codesById().get((UUID) proxy.getHibernateLazyInitializer().getIdentifier());
+            if (code != null) {
+                return code;
+            }
+        }
+        return entity.getEntityCode();
+    }
+
+    /**
+     * Reload the registry on every pod once the current transaction commits
+     */
+    public void invalidate(String entityCode) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishInvalidation(entityCode);
+                }
+            });
+        } else {
+            publishInvalidation(entityCode);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("entities", current.byCode().size());
+        stats.put("loadedAt", current.loadedAt());
+        stats.put("hits", (long) hits.count());
+        stats.put("misses", (long) misses.count());
+        return stats;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String entityCode = new String(message.getBody(), StandardCharsets.UTF_8);
+        log.debug("Financial entity changed: {}", entityCode);
+        refreshExecutor.submit(() -> reload(true));
+    }
+
+    private void publishInvalidation(String entityCode) {
+        // Reload locally even if the broadcast fails, other pods catch up on their next refresh
+        refreshExecutor.submit(() -> reload(true));
+        try {
+            redisTemplate.convertAndSend(CHANNEL, entityCode);
+        } catch (Exception e) {
+            log.error("Error publishing financial entity change for code: {}. Error: {}", entityCode, e.getMessage());
+        }
+    }
+
+    /**
+     * @param fromWriter read from the writer, the change that triggered the reload may not have reached the reader yet
+     */
+    private void reload(boolean fromWriter) {
+        try {
+            List<FinancialEntity> entities = fromWriter
+                    ? ReadWriteRoutingDataSource.onWriter(financialEntityRepository::findAll)
+                    : financialEntityRepository.findAll();
+            snapshot = Snapshot.of(entities);
+            log.debug("Financial entity registry reloaded with {} entities", entities.size());
+        } catch (Exception e) {
+            log.error("Error reloading financial entity registry. Error: {}", e.getMessage());
+        }
+    }
+}
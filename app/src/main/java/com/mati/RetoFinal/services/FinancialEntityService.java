@@ -18,6 +18,7 @@ import java.util.UUID;
 public class FinancialEntityService {
 
     private final FinancialEntityRepository financialEntityRepository;
+    private final FinancialEntityRegistry entityRegistry;
 
     @Transactional
     public FinancialEntityResponse createFinancialEntity(CreateFinancialEntityRequest request) {
@@ -40,6 +41,7 @@ public class FinancialEntityService {
                 .build();
 
         FinancialEntity saved = financialEntityRepository.save(entity);
+        entityRegistry.invalidate(saved.getEntityCode());
         log.info("Financial entity created successfully with ID: {}", saved.getEntityId());
 
         return mapToResponse(saved);
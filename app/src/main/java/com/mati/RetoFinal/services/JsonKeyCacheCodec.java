@@ -0,0 +1,41 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mati.RetoFinal.dto.KeyCacheDto;
+
+import java.io.IOException;
+
+/**
+ * Original Jackson JSON format (ISO timestamps, UUID as text).
+ */
+public class JsonKeyCacheCodec implements KeyCacheCodec {
+
+    private final ObjectMapper objectMapper;
+
+    public JsonKeyCacheCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public byte[] encode(KeyCacheDto dto) {
+        try {
+            return objectMapper.writeValueAsBytes(dto);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Error serializing KeyCacheDto: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public KeyCacheDto decode(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, KeyCacheDto.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Error deserializing KeyCacheDto: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == '{';
+    }
+}
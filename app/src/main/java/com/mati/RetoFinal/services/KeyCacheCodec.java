@@ -0,0 +1,25 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.KeyCacheDto;
+
+/**
+ * Serialization format for KeyCacheDto entries stored in Redis.
+ */
+public interface KeyCacheCodec {
+
+    /**
+     * Encode a KeyCacheDto into the bytes stored in Redis
+     */
+    byte[] encode(KeyCacheDto dto);
+
+    /**
+     * Decode bytes written by this codec
+     * @throws IllegalArgumentException if the bytes are not in this codec's format
+     */
+    KeyCacheDto decode(byte[] bytes);
+
+    /**
+     * Whether the bytes were written by this codec
+     */
+    boolean canDecode(byte[] bytes);
+}
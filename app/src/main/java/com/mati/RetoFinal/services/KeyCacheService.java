@@ -1,39 +1,189 @@
 package com.mati.RetoFinal.services;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.mati.RetoFinal.dto.KeyCacheDto;
 
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 /**
  * Service for caching key data in Redis.
  * Implements resilience pattern: never fail if Redis is down, only log errors.
+ * Calls go through RedisCircuitBreaker: while it is open they are skipped as misses
+ * (or no-op writes) instead of each waiting for the Redis timeout.
+ * KeyCacheDto lookups go through the in-process near cache (L1) before Redis (L2).
+ * KeyCacheDto entries are stored with a pluggable codec (JSON or compact binary),
+ * either as a single string value or as a Redis hash.
+ * Cache GETs can be served by replicas (redis.read-from); keys this pod wrote or
+ * evicted within the replication lag window are still read from the masters.
+ * Warm-up skips those keys too, its rows may predate the write.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class KeyCacheService {
 
-    private static final String KEY_PREFIX = "key:";
+    private static final String OK = "OK";
     private static final Duration DEFAULT_TTL = Duration.ofHours(1);
+    private static final String CODEC_BINARY = "binary";
+    private static final String STORAGE_HASH = "hash";
+    // ARGV[1] is the TTL in seconds, the rest are the hash fields and values
+    private static final String WARM_HASH_SCRIPT = """
+            if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end
+            redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """;
+    // Replaces the entry in one step, so readers never see it missing or half written
+    private static final String PUT_HASH_SCRIPT = """
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """;
+    static final RedisScript<Long> PUT_HASH = RedisScript.of(PUT_HASH_SCRIPT, Long.class);
+    private static final byte[] TTL_ARG = String.valueOf(DEFAULT_TTL.toSeconds()).getBytes(StandardCharsets.UTF_8);
+    private static final String WRONGTYPE = "WRONGTYPE";
 
     private final RedisTemplate<String, String> redisTemplate;
+    private final RedisTemplate<String, String> cacheReadRedisTemplate;
     private final ObjectMapper objectMapper;
+    private final NearCacheService nearCache;
+    private final MeterRegistry meterRegistry;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final RedisKeyNames keyNames;
+
+    @Value("${cache.negative.ttl:60s}")
+    private Duration negativeTtl;
+
+    @Value("${cache.codec:json}")
+    private String codecName;
+
+    @Value("${cache.storage:string}")
+    private String storage;
+
+    @Value("${cache.pipeline.batch-size:500}")
+    private int pipelineBatchSize;
+
+    @Value("${spring.data.redis.timeout:3000}")
+    private long redisTimeoutMillis;
+
+    @Value("${redis.read-from:master}")
+    private String readFrom;
+
+    @Value("${redis.read-your-writes-window:1s}")
+    private Duration readYourWritesWindow;
+
+    @Value("${redis.read-your-writes-max-size:100000}")
+    private long readYourWritesMaxSize;
+
+    private final BinaryKeyCacheCodec binaryCodec = new BinaryKeyCacheCodec();
+    private KeyCacheCodec codec;
+    private List<KeyCacheCodec> readCodecs;
+    private boolean hashStorage;
+    private DistributionSummary entrySize;
+    private NodePipelineExecutor pipeline;
+    private NodePipelineExecutor readPipeline;
+    private boolean replicaReads;
+    private Cache<String, Boolean> recentWrites;
+    private Counter replicaRouted;
+    private Counter masterRouted;
+
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        JsonKeyCacheCodec jsonCodec = new JsonKeyCacheCodec(objectMapper);
+        codec = CODEC_BINARY.equalsIgnoreCase(codecName) ? binaryCodec : jsonCodec;
+        readCodecs = List.of(binaryCodec, jsonCodec);
+        hashStorage = STORAGE_HASH.equalsIgnoreCase(storage);
+        log.info("KeyCacheDto cache codec: {}, storage: {}", codecName, storage);
+
+        DistributionSummary pipelineNodes = DistributionSummary.builder("keys.cache.pipeline.nodes")
+                .register(meterRegistry);
+        pipeline = new NodePipelineExecutor(redisTemplate, pipelineBatchSize,
+                Duration.ofMillis(redisTimeoutMillis), pipelineNodes::record);
+        replicaReads = !"master".equalsIgnoreCase(readFrom);
+        readPipeline = replicaReads
+                ? new NodePipelineExecutor(cacheReadRedisTemplate, pipelineBatchSize,
+                        Duration.ofMillis(redisTimeoutMillis), pipelineNodes::record)
+                : pipeline;
+        recentWrites = Caffeine.newBuilder()
+                .maximumSize(readYourWritesMaxSize)
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+        replicaRouted = Counter.builder("keys.cache.reads").tag("route", "replica").register(meterRegistry);
+        masterRouted = Counter.builder("keys.cache.reads").tag("route", "master").register(meterRegistry);
+        // Another pod wrote or evicted the key: replicas, and warm-up rows, may still hold the old entry
+        nearCache.addInvalidationListener(this::recordWrite);
+        log.info("Cache reads from: {}", readFrom);
+
+        entrySize = DistributionSummary.builder("keys.cache.entry.size")
+                .baseUnit("bytes")
+                .tag("codec", codecName)
+                .register(meterRegistry);
+        FunctionCounter.builder("keys.cache.requests", redisHits, LongAdder::sum)
+                .tag("tier", "redis").tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("keys.cache.requests", redisMisses, LongAdder::sum)
+                .tag("tier", "redis").tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("keys.cache.hit.ratio", this, KeyCacheService::redisHitRatio)
+                .tag("tier", "redis")
+                .register(meterRegistry);
+        Gauge.builder("keys.cache.hit.ratio", nearCache, NearCacheService::hitRatio)
+                .tag("tier", "near")
+                .register(meterRegistry);
+    }
 
     /**
      * Get a simple value from cache
      */
     public Optional<String> getValue(String key) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return Optional.empty();
+        }
         try {
-            String cacheKey = KEY_PREFIX + key;
-            String value = redisTemplate.opsForValue().get(cacheKey);
+            String cacheKey = keyNames.cacheKey(key);
+            RedisTemplate<String, String> template = readTemplate(key);
+            String value = circuitBreaker.call(() -> template.opsForValue().get(cacheKey));
             if (value != null) {
                 log.debug("Cache hit for key: {}", key);
                 return Optional.of(value);
@@ -50,9 +200,13 @@ public class KeyCacheService {
      * Put a simple value into cache with TTL
      */
     public void putValue(String key, String value, Duration ttl) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return;
+        }
         try {
-            String cacheKey = KEY_PREFIX + key;
-            redisTemplate.opsForValue().set(cacheKey, value, ttl);
+            String cacheKey = keyNames.cacheKey(key);
+            recordWrite(key);
+            circuitBreaker.run(() -> redisTemplate.opsForValue().set(cacheKey, value, ttl));
             log.debug("Cached value for key: {} with TTL: {}", key, ttl);
         } catch (Exception e) {
             log.error("Error putting value into cache for key: {}. Error: {}", key, e.getMessage());
@@ -67,44 +221,375 @@ public class KeyCacheService {
     }
 
     /**
-     * Put a KeyCacheDto into cache (serialized as JSON)
+     * Put a KeyCacheDto into cache (encoded with the configured codec/storage)
      */
     public void putKeyDto(String key, KeyCacheDto dto) {
+        nearCache.put(key, dto);
+        recordWrite(key);
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return;
+        }
         try {
-            String json = objectMapper.writeValueAsString(dto);
-            putValue(key, json, DEFAULT_TTL);
+            byte[] cacheKey = rawKey(key);
+            if (hashStorage) {
+                byte[][] args = hashArgs(dto);
+                circuitBreaker.run(() -> pipeline.execute(List.of(cacheKey), (async, i) -> writeHash(async, cacheKey, args)));
+            } else {
+                byte[] value = encode(dto);
+                circuitBreaker.run(() -> redisTemplate.execute((RedisCallback<Object>) connection -> connection.stringCommands()
+                        .set(cacheKey, value, Expiration.from(DEFAULT_TTL), RedisStringCommands.SetOption.upsert())));
+            }
             log.info("Cached KeyCacheDto for key: {}", key);
-        } catch (JsonProcessingException e) {
-            log.error("Error serializing KeyCacheDto for key: {}. Error: {}", key, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error putting KeyCacheDto into cache for key: {}. Error: {}", key, e.getMessage());
         }
     }
 
     /**
-     * Get a KeyCacheDto from cache (deserialized from JSON)
+     * Get a KeyCacheDto from cache (near cache, then Redis)
      */
     public Optional<KeyCacheDto> getKeyDto(String key) {
+        Optional<KeyCacheDto> nearHit = nearCache.get(key);
+        if (nearHit.isPresent()) {
+            log.debug("Near cache hit for key: {}", key);
+            return nearHit;
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return Optional.empty();
+        }
+
         try {
-            Optional<String> jsonOpt = getValue(key);
-            if (jsonOpt.isPresent()) {
-                KeyCacheDto dto = objectMapper.readValue(jsonOpt.get(), KeyCacheDto.class);
-                log.debug("Retrieved and deserialized KeyCacheDto for key: {}", key);
+            byte[] cacheKey = rawKey(key);
+            RedisTemplate<String, String> template = readTemplate(key);
+            KeyCacheDto dto = circuitBreaker.call(() -> template.execute((RedisCallback<KeyCacheDto>) connection ->
+                    readEntry(connection, cacheKey)));
+            if (dto != null) {
+                redisHits.increment();
+                nearCache.put(key, dto);
+                log.debug("Retrieved and decoded KeyCacheDto for key: {}", key);
                 return Optional.of(dto);
             }
+            redisMisses.increment();
             return Optional.empty();
-        } catch (JsonProcessingException e) {
-            log.error("Error deserializing KeyCacheDto for key: {}. Error: {}", key, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error getting KeyCacheDto from cache for key: {}. Error: {}", key, e.getMessage());
             return Optional.empty();
         }
     }
 
     /**
-     * Evict a key from cache
+     * Get several KeyCacheDtos at once: near cache first, then one pipeline of GETs
+     * (HGETALLs in hash storage mode) per cluster node
+     * @return the cached entries, keyed by key value (misses are absent)
+     */
+    public Map<String, KeyCacheDto> getKeyDtos(Collection<String> keys) {
+        Map<String, KeyCacheDto> found = new HashMap<>();
+        List<String> remaining = new ArrayList<>();
+        for (String key : keys) {
+            Optional<KeyCacheDto> nearHit = nearCache.get(key);
+            if (nearHit.isPresent()) {
+                found.put(key, nearHit.get());
+            } else {
+                remaining.add(key);
+            }
+        }
+        if (remaining.isEmpty() || !circuitBreaker.tryAcquirePermission()) {
+            return found;
+        }
+
+        try {
+            Map<Boolean, List<String>> byRoute = remaining.stream()
+                    .collect(Collectors.partitioningBy(this::readsFromReplicas));
+            for (Map.Entry<Boolean, List<String>> route : byRoute.entrySet()) {
+                List<String> routeKeys = route.getValue();
+                List<KeyCacheDto> dtos = readKeyDtos(route.getKey() ? readPipeline : pipeline, routeKeys);
+                for (int i = 0; i < routeKeys.size(); i++) {
+                    KeyCacheDto dto = dtos.get(i);
+                    if (dto == null) {
+                        redisMisses.increment();
+                        continue;
+                    }
+                    redisHits.increment();
+                    nearCache.put(routeKeys.get(i), dto);
+                    found.put(routeKeys.get(i), dto);
+                }
+            }
+            log.debug("Multi-get for {} keys: {} found", keys.size(), found.size());
+        } catch (Exception e) {
+            log.error("Error getting {} values from cache. Error: {}", remaining.size(), e.getMessage());
+        }
+        return found;
+    }
+
+    private List<KeyCacheDto> readKeyDtos(NodePipelineExecutor executor, List<String> keys) {
+        List<byte[]> cacheKeys = keys.stream().map(this::rawKey).toList();
+        return circuitBreaker.call(() -> executor.execute(cacheKeys, (async, i) -> readEntry(async, cacheKeys.get(i))));
+    }
+
+    /**
+     * Read an entry in the configured storage mode. An entry written in the other mode
+     * (before a storage switch, or by a pod not switched yet) fails with WRONGTYPE and is
+     * read with the other command instead, so the switch is not taken for a Redis failure.
+     */
+    private KeyCacheDto readEntry(RedisConnection connection, byte[] cacheKey) {
+        try {
+            return readEntry(connection, cacheKey, hashStorage);
+        } catch (RuntimeException e) {
+            if (!isWrongType(e)) {
+                throw e;
+            }
+            return readEntry(connection, cacheKey, !hashStorage);
+        }
+    }
+
+    private KeyCacheDto readEntry(RedisConnection connection, byte[] cacheKey, boolean hash) {
+        return hash
+                ? binaryCodec.fromHash(connection.hashCommands().hGetAll(cacheKey))
+                : decode(connection.stringCommands().get(cacheKey));
+    }
+
+    private CompletionStage<KeyCacheDto> readEntry(RedisClusterAsyncCommands<byte[], byte[]> async, byte[] cacheKey) {
+        return readEntry(async, cacheKey, hashStorage).exceptionallyCompose(e -> isWrongType(e)
+                ? readEntry(async, cacheKey, !hashStorage)
+                : CompletableFuture.failedStage(e));
+    }
+
+    private CompletionStage<KeyCacheDto> readEntry(RedisClusterAsyncCommands<byte[], byte[]> async, byte[] cacheKey,
+                                                   boolean hash) {
+        return hash
+                ? async.hgetall(cacheKey).thenApply(binaryCodec::fromHash)
+                : async.get(cacheKey).thenApply(this::decode);
+    }
+
+    /**
+     * Whether a Redis error means the entry is stored as the other data type
+     */
+    static boolean isWrongType(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().startsWith(WRONGTYPE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Put several KeyCacheDtos into cache, pipelined per cluster node
+     */
+    public void putKeyDtos(Map<String, KeyCacheDto> dtos) {
+        if (dtos.isEmpty()) {
+            return;
+        }
+        dtos.forEach(nearCache::put);
+        dtos.keySet().forEach(this::recordWrite);
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return;
+        }
+
+        try {
+            circuitBreaker.run(() -> writeKeyDtos(dtos, SetArgs.Builder.ex(DEFAULT_TTL)));
+            log.debug("Cached {} KeyCacheDtos in per-node pipelines", dtos.size());
+        } catch (Exception e) {
+            log.error("Error putting {} values into cache. Error: {}", dtos.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Preload KeyCacheDtos, pipelined per cluster node, without touching the near cache.
+     * Entries are only written if absent, so fresher entries are kept, and keys written
+     * or evicted within the read-your-writes window are skipped since the rows may predate
+     * the write; a key evicted while the page is being written is evicted again.
+     * Unlike the other writes, Redis errors are left to the caller.
+     * @return the number of entries written
+     */
+    public int warmKeyDtos(Map<String, KeyCacheDto> dtos) {
+        Map<String, KeyCacheDto> untouched = new LinkedHashMap<>(dtos);
+        untouched.keySet().removeIf(this::recentlyWritten);
+        if (untouched.isEmpty()) {
+            return 0;
+        }
+
+        List<String> keys = List.copyOf(untouched.keySet());
+        List<byte[]> cacheKeys = keys.stream().map(this::rawKey).toList();
+        List<Boolean> written;
+        if (hashStorage) {
+            List<byte[][]> args = untouched.values().stream().map(this::hashArgs).toList();
+            written = pipeline.<Long>execute(cacheKeys, (async, i) -> async.eval(WARM_HASH_SCRIPT,
+                            ScriptOutputType.INTEGER, new byte[][] {cacheKeys.get(i)}, args.get(i)))
+                    .stream().map(result -> result != null && result == 1).toList();
+        } else {
+            SetArgs setArgs = SetArgs.Builder.ex(DEFAULT_TTL).nx();
+            List<byte[]> encoded = untouched.values().stream().map(this::encode).toList();
+            written = pipeline.execute(cacheKeys, (async, i) -> async.set(cacheKeys.get(i), encoded.get(i), setArgs))
+                    .stream().map(OK::equals).toList();
+        }
+
+        int count = 0;
+        List<String> raced = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (!written.get(i)) {
+                continue;
+            }
+            if (recentlyWritten(keys.get(i))) {
+                raced.add(keys.get(i));
+            } else {
+                count++;
+            }
+        }
+        if (!raced.isEmpty()) {
+            redisTemplate.delete(raced.stream().map(keyNames::cacheKey).toList());
+        }
+        return count;
+    }
+
+    /**
+     * Arguments of the hash scripts: the TTL in seconds, then the hash fields and values
+     */
+    byte[][] hashArgs(KeyCacheDto dto) {
+        Map<byte[], byte[]> fields = binaryCodec.toHash(dto);
+        byte[][] args = new byte[1 + 2 * fields.size()][];
+        args[0] = TTL_ARG;
+        int i = 1;
+        for (Map.Entry<byte[], byte[]> field : fields.entrySet()) {
+            args[i++] = field.getKey();
+            args[i++] = field.getValue();
+        }
+        return args;
+    }
+
+    /**
+     * Write entries through the per-node pipelines: SET with the given arguments,
+     * or a hash replacing the entry in hash storage mode
+     */
+    private void writeKeyDtos(Map<String, KeyCacheDto> dtos, SetArgs setArgs) {
+        List<byte[]> cacheKeys = dtos.keySet().stream().map(this::rawKey).toList();
+        List<KeyCacheDto> values = List.copyOf(dtos.values());
+        if (hashStorage) {
+            List<byte[][]> args = values.stream().map(this::hashArgs).toList();
+            pipeline.execute(cacheKeys, (async, i) -> writeHash(async, cacheKeys.get(i), args.get(i)));
+            return;
+        }
+        List<byte[]> encoded = values.stream().map(this::encode).toList();
+        pipeline.execute(cacheKeys, (async, i) -> async.set(cacheKeys.get(i), encoded.get(i), setArgs));
+    }
+
+    /**
+     * Replace an entry with a hash: DEL first, since a string entry written
+     * before a storage switch would make HSET fail with WRONGTYPE
+     */
+    private RedisFuture<Long> writeHash(RedisClusterAsyncCommands<byte[], byte[]> async, byte[] cacheKey, byte[][] args) {
+        return async.eval(PUT_HASH_SCRIPT, ScriptOutputType.INTEGER, new byte[][] {cacheKey}, args);
+    }
+
+    byte[] encode(KeyCacheDto dto) {
+        byte[] value = codec.encode(dto);
+        entrySize.record(value.length);
+        return value;
+    }
+
+    /**
+     * Decode with whichever codec wrote the entry, so pods on either format
+     * can read each other's entries during a rolling upgrade
+     * @return null for a missing or unreadable entry
+     */
+    KeyCacheDto decode(byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        for (KeyCacheCodec candidate : readCodecs) {
+            if (candidate.canDecode(value)) {
+                return candidate.decode(value);
+            }
+        }
+        log.warn("Unknown KeyCacheDto encoding, treating entry as a miss");
+        return null;
+    }
+
+    private byte[] rawKey(String key) {
+        return keyNames.cacheKey(key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Duration entryTtl() {
+        return DEFAULT_TTL;
+    }
+
+    Duration negativeTtl() {
+        return negativeTtl;
+    }
+
+    boolean isHashStorage() {
+        return hashStorage;
+    }
+
+    KeyCacheDto fromHash(Map<byte[], byte[]> hash) {
+        return binaryCodec.fromHash(hash);
+    }
+
+    /**
+     * Remember a key value this pod wrote or evicted (or was told another pod evicted),
+     * so it is read from the masters until replicas have caught up and warm-up leaves it alone
+     */
+    private void recordWrite(String key) {
+        recentWrites.put(key, Boolean.TRUE);
+    }
+
+    private boolean recentlyWritten(String key) {
+        return recentWrites.getIfPresent(key) != null;
+    }
+
+    /**
+     * recordWrite once the current transaction commits (right away outside a transaction),
+     * for database writes whose cache eviction is relayed from another pod
+     */
+    void recordWriteAfterCommit(String key) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recordWrite(key);
+                }
+            });
+        } else {
+            recordWrite(key);
+        }
+    }
+
+    /**
+     * Whether a read of key may go to the replicas, counting the read by route
+     */
+    private boolean readsFromReplicas(String key) {
+        boolean replica = replicaReads && !recentlyWritten(key);
+        (replica ? replicaRouted : masterRouted).increment();
+        return replica;
+    }
+
+    private RedisTemplate<String, String> readTemplate(String key) {
+        return readsFromReplicas(key) ? cacheReadRedisTemplate : redisTemplate;
+    }
+
+    void recordRedisLookups(long hits, long misses) {
+        redisHits.add(hits);
+        redisMisses.add(misses);
+    }
+
+    /**
+     * Evict a key from cache. Redis goes first: other pods reload their near cache
+     * as soon as they get the invalidation, and must not find the stale entry there.
      */
     public void evict(String key) {
+        recordWrite(key);
+        deleteEntries(key);
+        nearCache.invalidate(key);
+    }
+
+    private void deleteEntries(String key) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return;
+        }
         try {
-            String cacheKey = KEY_PREFIX + key;
-            Boolean deleted = redisTemplate.delete(cacheKey);
-            if (Boolean.TRUE.equals(deleted)) {
+            List<String> cacheKeys = keyNames.cacheKeys(key);
+            Long deleted = circuitBreaker.call(() -> redisTemplate.delete(cacheKeys));
+            if (deleted != null && deleted > 0) {
                 log.info("Evicted key from cache: {}", key);
             } else {
                 log.debug("Key not found in cache for eviction: {}", key);
@@ -115,15 +600,91 @@ public class KeyCacheService {
     }
 
     /**
-     * Check if cache is available
+     * Evict several keys from cache in one call. Unlike evict, Redis errors are thrown
+     * so callers that retry (the outbox relay) know the keys may still be cached.
      */
-    public boolean isAvailable() {
+    public void evictAll(Collection<String> keys) {
+        keys.forEach(this::recordWrite);
+        Long deleted = redisTemplate.delete(keys.stream().flatMap(key -> keyNames.cacheKeys(key).stream()).toList());
+        log.debug("Evicted {} of {} keys from cache", deleted, keys.size());
+        keys.forEach(nearCache::invalidate);
+    }
+
+    /**
+     * Record that a key value is known not to exist (short-lived tombstone)
+     */
+    public void putTombstone(String key) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return;
+        }
         try {
-            redisTemplate.opsForValue().get("health-check");
-            return true;
+            circuitBreaker.run(() -> redisTemplate.opsForValue().set(keyNames.tombstoneKey(key), "1", negativeTtl));
+            log.debug("Cached tombstone for key: {} with TTL: {}", key, negativeTtl);
         } catch (Exception e) {
-            log.warn("Redis cache is not available: {}", e.getMessage());
+            log.error("Error putting tombstone into cache for key: {}. Error: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Check whether a tombstone exists for a key value
+     */
+    public boolean hasTombstone(String key) {
+        if (!circuitBreaker.tryAcquirePermission()) {
             return false;
         }
+        try {
+            return circuitBreaker.call(() -> redisTemplate.opsForValue().get(keyNames.tombstoneKey(key))) != null;
+        } catch (Exception e) {
+            log.error("Error reading tombstone from cache for key: {}. Error: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Remove the tombstone of a key value (e.g. once it has been created)
+     */
+    public void evictTombstone(String key) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return;
+        }
+        try {
+            circuitBreaker.run(() -> redisTemplate.delete(keyNames.tombstoneKeys(key)));
+        } catch (Exception e) {
+            log.error("Error evicting tombstone from cache for key: {}. Error: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Hit ratio of the Redis tier for KeyCacheDto lookups that missed the near cache
+     */
+    public double redisHitRatio() {
+        long hits = redisHits.sum();
+        long total = hits + redisMisses.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Hit/miss statistics for both cache tiers
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> redis = new LinkedHashMap<>();
+        redis.put("hits", redisHits.sum());
+        redis.put("misses", redisMisses.sum());
+        redis.put("hitRatio", redisHitRatio());
+        redis.put("readFrom", readFrom);
+        redis.put("readsFromReplicas", (long) replicaRouted.count());
+        redis.put("readsFromMaster", (long) masterRouted.count());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("near", nearCache.stats());
+        stats.put("redis", redis);
+        return stats;
+    }
+
+    /**
+     * Check if cache is available: false while the Redis circuit is open
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.getState() != RedisCircuitBreaker.State.OPEN;
     }
 }
@@ -0,0 +1,323 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mati.RetoFinal.dto.KeyEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Durable log of key events on the key-events Redis Stream.
+ *
+ * Events are appended once their transaction commits: the request thread only
+ * buffers them, and a background thread writes each drained batch with pipelined
+ * XADD, trimming the stream to about max-length entries. Consumers read it through
+ * consumer groups (WebhookDispatcher is one), so each group tracks its own offset
+ * and can be rewound with XGROUP SETID to replay what is still retained.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KeyEventLog {
+
+    public static final String STREAM = "key-events";
+
+    private static final Pattern ENTRY_ID = Pattern.compile("\\d+(-\\d+)?");
+    private static final int MAX_REPLAY_COUNT = 1000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${events.log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${events.log.max-length:1000000}")
+    private long maxLength;
+
+    @Value("${events.log.batch-size:500}")
+    private int batchSize;
+
+    @Value("${events.log.buffer-capacity:10000}")
+    private int bufferCapacity;
+
+    @Value("${events.log.flush-interval:50ms}")
+    private Duration flushInterval;
+
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "key-event-log"));
+
+    private BlockingQueue<KeyEvent> buffer;
+    private volatile boolean running;
+
+    private Counter appended;
+    private Counter overflowed;
+    private Counter dropped;
+
+    @PostConstruct
+    void init() {
+        buffer = new ArrayBlockingQueue<>(bufferCapacity);
+
+        appended = Counter.builder("keys.events.log").tag("result", "appended").register(meterRegistry);
+        overflowed = Counter.builder("keys.events.log").tag("result", "overflow").register(meterRegistry);
+        dropped = Counter.builder("keys.events.log").tag("result", "dropped").register(meterRegistry);
+        Gauge.builder("keys.events.log.buffered", buffer, BlockingQueue::size)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flushExecutor.submit(this::flushLoop);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        flushExecutor.shutdownNow();
+        try {
+            flushExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<KeyEvent> remaining = new ArrayList<>();
+        buffer.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            try {
+                write(remaining);
+            } catch (Exception e) {
+                dropped.increment(remaining.size());
+                log.error("Error appending {} buffered key events on shutdown. Error: {}", remaining.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Append an event once the current transaction commits (right away outside a transaction).
+     * Events of a rolled back transaction are never appended.
+     */
+    public void append(KeyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    buffer(event);
+                }
+            });
+        } else {
+            buffer(event);
+        }
+    }
+
+    /**
+     * Append events right away on the caller's thread, for callers that must know they
+     * were written (the outbox relay)
+     * If Redis rejects the write none, or only some, of the events may have been appended.
+     */
+    public void appendNow(List<KeyEvent> events) throws JsonProcessingException {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        write(events);
+    }
+
+    /**
+     * Create a consumer group reading new events, if it does not exist yet
+     */
+    public void createGroup(String group) {
+        byte[] rawStream = STREAM.getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(rawStream, group, ReadOffset.latest(), true));
+        } catch (Exception e) {
+            // BUSYGROUP: the group already exists
+            log.debug("Key event consumer group {} not created: {}", group, e.getMessage());
+        }
+    }
+
+    /**
+     * Read retained events after the given stream entry id, oldest first
+     * @param after id of the last entry already seen, or "0" to start from the oldest one
+     */
+    public List<MapRecord<String, Object, Object>> read(String after, int count) {
+        return redisTemplate.opsForStream().range(STREAM,
+                Range.rightUnbounded(Range.Bound.exclusive(after)), Limit.limit().count(count));
+    }
+
+    /**
+     * Retained events after the given entry id with their ids, for consumers catching up
+     * @throws IllegalArgumentException if the id is malformed or count is out of range
+     */
+    public List<Map<String, Object>> replay(String after, int count) {
+        if (!ENTRY_ID.matcher(after).matches()) {
+            throw new IllegalArgumentException("Invalid event id: " + after);
+        }
+        if (count < 1 || count > MAX_REPLAY_COUNT) {
+            throw new IllegalArgumentException("count must be between 1 and " + MAX_REPLAY_COUNT);
+        }
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : read(after, count)) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", record.getId().getValue());
+            try {
+                entry.put("event", toEvent(record));
+            } catch (JsonProcessingException e) {
+                log.error("Error reading key event {}. Error: {}", record.getId(), e.getMessage());
+                entry.put("event", null);
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Decode the event of a stream entry
+     */
+    public KeyEvent toEvent(MapRecord<String, Object, Object> record) throws JsonProcessingException {
+        return objectMapper.readValue((String) record.getValue().get("payload"), KeyEvent.class);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("buffered", buffer.size());
+        stats.put("appended", (long) appended.count());
+        stats.put("overflowed", (long) overflowed.count());
+        stats.put("dropped", (long) dropped.count());
+        if (!enabled) {
+            return stats;
+        }
+        try {
+            stats.put("length", redisTemplate.opsForStream().size(STREAM));
+            Map<String, Object> groups = new LinkedHashMap<>();
+            for (StreamInfo.XInfoGroup group : redisTemplate.opsForStream().groups(STREAM)) {
+                Map<String, Object> offsets = new LinkedHashMap<>();
+                offsets.put("lastDeliveredId", group.lastDeliveredId());
+                offsets.put("pending", group.pendingCount());
+                offsets.put("consumers", group.consumerCount());
+                groups.put(group.groupName(), offsets);
+            }
+            stats.put("groups", groups);
+        } catch (Exception e) {
+            // No stream yet, or Redis unavailable
+            log.debug("Error reading key event log info. Error: {}", e.getMessage());
+        }
+        return stats;
+    }
+
+    private void buffer(KeyEvent event) {
+        if (buffer.offer(event)) {
+            return;
+        }
+        // Buffer full (Redis slow or down): append on the caller's thread rather than lose the event
+        overflowed.increment();
+        try {
+            write(List.of(event));
+        } catch (Exception e) {
+            dropped.increment();
+            log.error("Error appending event {} for key: {}. Error: {}", event.getEventType(), event.getKeyValue(), e.getMessage());
+        }
+    }
+
+    private void flushLoop() {
+        List<KeyEvent> batch = new ArrayList<>(batchSize);
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                if (batch.isEmpty()) {
+                    KeyEvent first = buffer.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    buffer.drainTo(batch, batchSize - 1);
+                }
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // The batch is kept and written again, new events wait in the buffer
+                log.error("Error appending {} key events. Error: {}", batch.size(), e.getMessage());
+                try {
+                    Thread.sleep(flushInterval.toMillis() * 10);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * One pipelined XADD per event, in a single round trip
+     */
+    private void write(List<KeyEvent> events) throws JsonProcessingException {
+        List<MapRecord<byte[], byte[], byte[]>> records = new ArrayList<>(events.size());
+        for (KeyEvent event : events) {
+            Map<byte[], byte[]> fields = new LinkedHashMap<>();
+            fields.put(bytes("eventType"), bytes(event.getEventType()));
+            if (event.getEntityCode() != null) {
+                fields.put(bytes("entityCode"), bytes(event.getEntityCode()));
+            }
+            fields.put(bytes("payload"), objectMapper.writeValueAsBytes(event));
+            records.add(StreamRecords.newRecord().in(bytes(STREAM)).ofMap(fields));
+        }
+
+        XAddOptions options = XAddOptions.maxlen(maxLength).approximateTrimming(true);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (MapRecord<byte[], byte[], byte[]> record : records) {
+                connection.streamCommands().xAdd(record, options);
+            }
+            return null;
+        });
+        appended.increment(events.size());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
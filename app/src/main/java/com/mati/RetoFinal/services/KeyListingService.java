@@ -0,0 +1,184 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mati.RetoFinal.dto.EntityKeyResponse;
+import com.mati.RetoFinal.dto.KeyCursor;
+import com.mati.RetoFinal.dto.KeyListFilter;
+import com.mati.RetoFinal.dto.KeyPageResponse;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.repositories.KeyRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Key listings by entity, account, owner or status, paginated by keyset
+ * (createdAt, keyId) so every page costs the same regardless of depth,
+ * and NDJSON exports that stream rows with constant memory.
+ * Both run in read-only transactions, i.e. on the Aurora reader.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KeyListingService {
+
+    private static final int EXPORT_FLUSH_EVERY = 500;
+
+    private final KeyRepository keyRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${keys.list.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${keys.list.max-page-size:1000}")
+    private int maxPageSize;
+
+    private TransactionTemplate readOnlyTx;
+
+    @PostConstruct
+    void init() {
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * List one page of keys
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param limit page size, defaults to keys.list.default-page-size and is capped at keys.list.max-page-size
+     */
+    public KeyPageResponse listKeys(KeyListFilter filter, String cursor, Integer limit) {
+        validate(filter);
+        ScrollPosition position = cursor == null || cursor.isBlank()
+            ? ScrollPosition.keyset()
+            : toPosition(KeyCursor.decode(cursor));
+        Limit pageLimit = Limit.of(pageSize(limit));
+
+        return readOnlyTx.execute(status -> {
+            Window<Key> page = page(filter, position, pageLimit);
+            List<EntityKeyResponse> items = page.map(key -> EntityKeyResponse.fromEntity(key, "database")).getContent();
+            KeyCursor next = page.hasNext() && !page.isEmpty()
+                ? toCursor(page.positionAt(page.size() - 1))
+                : null;
+            return KeyPageResponse.of(items, next);
+        });
+    }
+
+    /**
+     * Write every matching key as one JSON document per line, flushing as rows are read.
+     * Keys are detached once written so the persistence context does not grow with the export.
+     */
+    public void exportKeys(KeyListFilter filter, OutputStream out) {
+        validate(filter);
+
+        readOnlyTx.executeWithoutResult(status -> {
+            long written = 0;
+            try (Stream<Key> keys = stream(filter)) {
+                for (Key key : (Iterable<Key>) keys::iterator) {
+                    out.write(objectMapper.writeValueAsBytes(EntityKeyResponse.fromEntity(key, "database")));
+                    out.write('\n');
+                    entityManager.detach(key);
+                    if (++written % EXPORT_FLUSH_EVERY == 0) {
+                        out.flush();
+                    }
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            log.info("Exported {} keys", written);
+        });
+    }
+
+    /**
+     * @throws IllegalArgumentException unless the filter is one of the supported combinations
+     */
+    public void validate(KeyListFilter filter) {
+        int selectors = (filter.getEntityCode() != null ? 1 : 0)
+            + (filter.getAccountNumber() != null ? 1 : 0)
+            + (filter.getOwnerDocument() != null ? 1 : 0);
+        boolean valid = selectors == 1
+            ? filter.getStatus() == null || filter.getEntityCode() != null
+            : selectors == 0 && filter.getStatus() != null;
+        if (!valid) {
+            throw new IllegalArgumentException(
+                "Filter by entityCode (optionally with status), accountNumber, ownerDocument or status");
+        }
+    }
+
+    public int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private Window<Key> page(KeyListFilter filter, ScrollPosition position, Limit limit) {
+        if (filter.getEntityCode() != null) {
+            return filter.getStatus() != null
+                ? keyRepository.findByFinancialEntityEntityCodeAndStatusOrderByCreatedAtDescKeyIdDesc(
+                    filter.getEntityCode(), filter.getStatus(), position, limit)
+                : keyRepository.findByFinancialEntityEntityCodeOrderByCreatedAtDescKeyIdDesc(
+                    filter.getEntityCode(), position, limit);
+        }
+        if (filter.getAccountNumber() != null) {
+            return keyRepository.findByAccountNumberOrderByCreatedAtDescKeyIdDesc(filter.getAccountNumber(), position, limit);
+        }
+        if (filter.getOwnerDocument() != null) {
+            return keyRepository.findByOwnerDocumentOrderByCreatedAtDescKeyIdDesc(filter.getOwnerDocument(), position, limit);
+        }
+        return keyRepository.findByStatusOrderByCreatedAtDescKeyIdDesc(filter.getStatus(), position, limit);
+    }
+
+    private Stream<Key> stream(KeyListFilter filter) {
+        if (filter.getEntityCode() != null) {
+            return filter.getStatus() != null
+                ? keyRepository.streamByFinancialEntityEntityCodeAndStatusOrderByCreatedAtDescKeyIdDesc(
+                    filter.getEntityCode(), filter.getStatus())
+                : keyRepository.streamByFinancialEntityEntityCodeOrderByCreatedAtDescKeyIdDesc(filter.getEntityCode());
+        }
+        if (filter.getAccountNumber() != null) {
+            return keyRepository.streamByAccountNumberOrderByCreatedAtDescKeyIdDesc(filter.getAccountNumber());
+        }
+        if (filter.getOwnerDocument() != null) {
+            return keyRepository.streamByOwnerDocumentOrderByCreatedAtDescKeyIdDesc(filter.getOwnerDocument());
+        }
+        return keyRepository.streamByStatusOrderByCreatedAtDescKeyIdDesc(filter.getStatus());
+    }
+
+    private static ScrollPosition toPosition(KeyCursor cursor) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("createdAt", cursor.getCreatedAt());
+        keys.put("keyId", cursor.getKeyId());
+        return ScrollPosition.forward(keys);
+    }
+
+    private static KeyCursor toCursor(ScrollPosition position) {
+        Map<String, Object> keys = ((KeysetScrollPosition) position).getKeys();
+        return new KeyCursor((LocalDateTime) keys.get("createdAt"), (UUID) keys.get("keyId"));
+    }
+}
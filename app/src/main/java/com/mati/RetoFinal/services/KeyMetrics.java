@@ -0,0 +1,105 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.CreateKeyResponse;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Timers for the key request paths: keys.requests once per request, tagged by
+ * operation, outcome and source, and keys.stage.duration for each step within it.
+ * Both publish percentile histograms, so P99 is computed in Prometheus with
+ * histogram_quantile across pods instead of averaged client-side.
+ */
+@Service
+@RequiredArgsConstructor
+public class KeyMetrics {
+
+    public static final String CREATE = "create";
+    public static final String FIND = "find";
+
+    private static final Duration MIN_EXPECTED = Duration.ofNanos(100_000);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(10);
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${keys.metrics.percentile-histograms:true}")
+    private boolean percentileHistograms;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * Start timing a request, stopped by recordCreate or recordFind
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Run one stage of a request and time it, outcome error if it throws
+     */
+    public <T> T stage(String operation, String stage, Supplier<T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = work.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(timer("keys.stage.duration", operation, "stage", stage, outcome));
+        }
+    }
+
+    public void stage(String operation, String stage, Runnable work) {
+        stage(operation, stage, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Record a createKey call by where its answer came from (cache, database,
+     * write-behind, created or rejected) and its typed outcome
+     */
+    public CreateKeyResponse recordCreate(Timer.Sample sample, CreateKeyResponse response) {
+        String source = response.isCreated() ? "created"
+                : response.isExists() ? response.getSource()
+                : "rejected";
+        sample.stop(timer("keys.requests", CREATE, "source", source, response.getOutcome().name().toLowerCase()));
+        return response;
+    }
+
+    /**
+     * Record a findByValue call: cache, negative (Bloom filter or tombstone),
+     * database, not_found or error
+     */
+    public void recordFind(Timer.Sample sample, String source) {
+        sample.stop(timer("keys.requests", FIND, "source", source, "error".equals(source) ? "error" : "success"));
+    }
+
+    /**
+     * Count a createKey call by the lock provider that serialized it: redis, advisory or insert
+     */
+    public void recordLockProvider(String provider) {
+        meterRegistry.counter("keys.lock.provider.uses", "provider", provider).increment();
+    }
+
+    private Timer timer(String name, String operation, String tagKey, String tagValue, String outcome) {
+        return timers.computeIfAbsent(String.join(":", name, operation, tagValue, outcome), k -> Timer.builder(name)
+                .tag("operation", operation)
+                .tag(tagKey, tagValue)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram(percentileHistograms)
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(meterRegistry));
+    }
+}
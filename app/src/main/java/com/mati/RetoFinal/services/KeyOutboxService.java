@@ -0,0 +1,240 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mati.RetoFinal.dto.KeyEvent;
+import com.mati.RetoFinal.models.KeyOutboxEntry;
+import com.mati.RetoFinal.repositories.KeyOutboxRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transactional outbox for key updates and deletes.
+ *
+ * The mutation only writes a key_outbox row in its own transaction, so nothing
+ * reaches Redis unless the keys change commits. A relay thread then takes committed
+ * rows in batches, evicts their keys from the cache and appends their events to the
+ * key event log; rows are removed in the same transaction, so a crash or a Redis
+ * outage delays the relay instead of losing it. Every pod runs the relay and
+ * SKIP LOCKED spreads the rows between them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KeyOutboxService {
+
+    private final KeyOutboxRepository outboxRepository;
+    private final KeyCacheService keyCacheService;
+    private final KeyEventLog keyEventLog;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${keys.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${keys.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${keys.outbox.poll-interval:200ms}")
+    private Duration pollInterval;
+
+    private final ExecutorService relayExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "key-outbox-relay"));
+    private final Semaphore wakeUps = new Semaphore(0);
+
+    private TransactionTemplate transactionTemplate;
+    private Counter relayed;
+    private Counter failed;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        relayed = Counter.builder("keys.outbox").tag("result", "relayed").register(meterRegistry);
+        failed = Counter.builder("keys.outbox").tag("result", "failed").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            relayExecutor.submit(this::run);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Entries not relayed yet stay in the table for the next pod or restart
+        relayExecutor.shutdownNow();
+    }
+
+    /**
+     * Record a key mutation in the current transaction.
+     * With the outbox disabled the key is evicted and the event appended after commit instead.
+     */
+    public void record(KeyEvent event) {
+        if (!enabled) {
+            evictAfterCommit(event.getKeyValue());
+            keyEventLog.append(event);
+            return;
+        }
+
+        outboxRepository.save(KeyOutboxEntry.builder()
+                .keyValue(event.getKeyValue())
+                .eventType(event.getEventType())
+                .payload(toPayload(event))
+                .build());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+    }
+
+    /**
+     * Serialized form of an event, for writers that insert the outbox row themselves (R2DBC)
+     */
+    public String toPayload(KeyEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error serializing key event for key: " + event.getKeyValue(), e);
+        }
+    }
+
+    /**
+     * Relay committed entries now rather than on the next poll
+     */
+    public void wakeUp() {
+        wakeUps.release();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("relayed", (long) relayed.count());
+        stats.put("failed", (long) failed.count());
+        if (!enabled) {
+            return stats;
+        }
+        try {
+            stats.put("pending", outboxRepository.count());
+            LocalDateTime oldest = outboxRepository.findOldestCreatedAt();
+            stats.put("lagMs", oldest != null ? Duration.between(oldest, LocalDateTime.now()).toMillis() : 0L);
+        } catch (Exception e) {
+            log.error("Error reading key outbox backlog. Error: {}", e.getMessage());
+        }
+        return stats;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                wakeUps.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                wakeUps.drainPermits();
+                // A full batch means the backlog is not drained yet
+                int relayedCount;
+                do {
+                    relayedCount = relayBatch();
+                } while (relayedCount == batchSize);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // The batch was rolled back and is taken again on the next round
+                failed.increment();
+                log.error("Error relaying key outbox. Error: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollInterval.toMillis() * 5);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Take the oldest entries, evict their keys and append their events, all inside the
+     * transaction deleting them. Events may be appended twice if the commit then fails,
+     * receivers already drop duplicates by eventId.
+     * @return number of entries relayed
+     */
+    private int relayBatch() {
+        Integer count = transactionTemplate.execute(status -> {
+            List<KeyOutboxEntry> entries = outboxRepository.takeOldest(batchSize);
+            if (entries.isEmpty()) {
+                return 0;
+            }
+
+            Set<String> keyValues = new LinkedHashSet<>();
+            List<KeyEvent> events = new ArrayList<>(entries.size());
+            for (KeyOutboxEntry entry : entries) {
+                keyValues.add(entry.getKeyValue());
+                try {
+                    events.add(objectMapper.readValue(entry.getPayload(), KeyEvent.class));
+                } catch (JsonProcessingException e) {
+                    log.error("Skipping unreadable outbox event {} for key: {}. Error: {}",
+                            entry.getOutboxId(), entry.getKeyValue(), e.getMessage());
+                }
+            }
+
+            keyCacheService.evictAll(keyValues);
+            try {
+                keyEventLog.appendNow(events);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+            return entries.size();
+        });
+        int relayedCount = count != null ? count : 0;
+        relayed.increment(relayedCount);
+        return relayedCount;
+    }
+
+    private void evictAfterCommit(String keyValue) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keyCacheService.evict(keyValue);
+                }
+            });
+        } else {
+            keyCacheService.evict(keyValue);
+        }
+    }
+}
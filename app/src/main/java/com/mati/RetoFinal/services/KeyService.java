@@ -1,27 +1,45 @@
 package com.mati.RetoFinal.services;
 
+import com.mati.RetoFinal.config.ReadWriteRoutingDataSource;
+import com.mati.RetoFinal.dto.BatchCreateKeyResponse;
+import com.mati.RetoFinal.dto.CreateKeyOutcome;
 import com.mati.RetoFinal.dto.CreateKeyRequest;
 import com.mati.RetoFinal.dto.CreateKeyResponse;
 import com.mati.RetoFinal.dto.EntityKeyResponse;
 import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.dto.KeyEvent;
 import com.mati.RetoFinal.dto.UpdateKeyRequest;
 import com.mati.RetoFinal.models.FinancialEntity;
 import com.mati.RetoFinal.models.Key;
 import com.mati.RetoFinal.models.KeyStatus;
-import com.mati.RetoFinal.repositories.FinancialEntityRepository;
 import com.mati.RetoFinal.repositories.KeyRepository;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Main service for key management operations.
- * Implements Cache-Aside pattern with distributed locks.
+ * Implements Cache-Aside pattern with distributed locks
+ * (or lock-free INSERT ... ON CONFLICT when keys.create.strategy=insert,
+ * or a Redis Stream drained into PostgreSQL when keys.create.strategy=write-behind).
  */
 @Service
 @RequiredArgsConstructor
@@ -29,11 +47,40 @@ import java.util.UUID;
 public class KeyService {
 
     private final KeyRepository keyRepository;
-    private final FinancialEntityRepository financialEntityRepository;
+    private final FinancialEntityRegistry entityRegistry;
     private final KeyCacheService keyCacheService;
     private final DistributedLockService lockService;
     private final KeyValidator keyValidator;
-    //private final KeyEventPublisher eventPublisher;
+    private final NegativeLookupService negativeLookupService;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final PlatformTransactionManager transactionManager;
+    private final RequestCoalescer requestCoalescer;
+    private final WriteBehindService writeBehindService;
+    private final KeyEventPublisher eventPublisher;
+    private final KeyOutboxService keyOutbox;
+    private final KeyMetrics metrics;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    private static final String CREATE_STRATEGY_INSERT = "insert";
+
+    @Value("${keys.create.strategy:lock}")
+    private String createStrategy;
+
+    @Value("${keys.batch.max-size:500}")
+    private int maxBatchSize;
+
+    @Value("${keys.create.retry-after.lock-timeout:1s}")
+    private Duration lockTimeoutRetryAfter;
+
+    @Value("${keys.create.retry-after.unavailable:5s}")
+    private Duration unavailableRetryAfter;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     /**
      * Create a key or return existing one.
@@ -41,26 +88,37 @@ public class KeyService {
      * 1. Measure start time
      * 2. Validate format
      * 3. Check cache
-     * 4. Acquire distributed lock
-     * 5. Double-check in DB
-     * 6. Create if not exists
-     * 7. Cache and publish event
-     * 8. Release lock
-     * 9. Calculate latency and return
+     * 4. Collapse identical concurrent requests on this pod (single-flight)
+     * 5. Create through the configured strategy:
+     *    - lock: acquire distributed lock, then double-check in DB and insert in a transaction
+     *      (PostgreSQL advisory lock or plain insert instead while Redis is unavailable)
+     *    - insert: INSERT ... ON CONFLICT (key_value) DO NOTHING in a transaction, no lock
+     *    - write-behind: claim the value in Redis and append the key to the write-behind stream
+     * 6. Cache and publish event
+     * 7. Calculate latency and return
+     * Expected failures (invalid format, unknown entity, lock timeout...) are returned as a
+     * typed outcome without throwing. Each step is timed as a keys.stage.duration stage and the whole call as keys.requests.
      */
-    @Transactional
     public CreateKeyResponse createKey(CreateKeyRequest request) {
+        Timer.Sample sample = metrics.start();
+        return metrics.recordCreate(sample, create(request));
+    }
+
+    private CreateKeyResponse create(CreateKeyRequest request) {
         long startTime = System.nanoTime();
 
         try {
             // Step 1: Validate format
-            if (!keyValidator.validateKeyFormat(request.getKeyValue())) {
+            boolean valid = metrics.stage(KeyMetrics.CREATE, "validation",
+                () -> keyValidator.validateKeyFormat(request.getKeyValue()));
+            if (!valid) {
                 double latencyMs = calculateLatencyMs(startTime);
-                return CreateKeyResponse.error("Invalid key format", latencyMs);
+                return CreateKeyResponse.rejected(CreateKeyOutcome.INVALID, "Invalid key format", latencyMs);
             }
 
             // Step 2: Check cache first
-            Optional<KeyCacheDto> cachedKey = keyCacheService.getKeyDto(request.getKeyValue());
+            Optional<KeyCacheDto> cachedKey = metrics.stage(KeyMetrics.CREATE, "cache.get",
+                () -> keyCacheService.getKeyDto(request.getKeyValue()));
             if (cachedKey.isPresent()) {
                 double latencyMs = calculateLatencyMs(startTime);
                 KeyCacheDto dto = cachedKey.get();
@@ -68,98 +126,548 @@ public class KeyService {
                 return CreateKeyResponse.exists(dto.getKeyId(), dto.getKeyValue(), latencyMs, "cache");
             }
 
-            // Step 3: Acquire distributed lock
-            boolean lockAcquired = lockService.acquireLock(request.getKeyValue());
-            if (!lockAcquired) {
-                double latencyMs = calculateLatencyMs(startTime);
-                log.warn("Failed to acquire lock for key: {}", request.getKeyValue());
-                return CreateKeyResponse.error("Failed to acquire lock, please retry", latencyMs);
+            // Step 3: Only one identical request per pod goes on to the lock/database,
+            // with a bounded number of them at once while Redis is bypassed
+            return requestCoalescer.execute(
+                "create",
+                coalescingKey(request),
+                () -> redisCircuitBreaker.limitDatabaseFallback(() -> createWithStrategy(request, startTime)),
+                leaderResponse -> asCoalescedResponse(leaderResponse, startTime)
+            );
+
+        } catch (IllegalArgumentException e) {
+            double latencyMs = calculateLatencyMs(startTime);
+            log.warn("Validation error creating key: {}", e.getMessage());
+            return CreateKeyResponse.rejected(CreateKeyOutcome.INVALID, e.getMessage(), latencyMs);
+        } catch (Exception e) {
+            double latencyMs = calculateLatencyMs(startTime);
+            if (BackendFailures.isBackendDown(e)) {
+                // One line per request, a stack trace per request would flood the logs during an outage
+                log.warn("Backend unavailable creating key: {}. Error: {}", request.getKeyValue(), e.getMessage());
+                return CreateKeyResponse.rejected(CreateKeyOutcome.BACKEND_DOWN,
+                    "Service temporarily unavailable, please retry", latencyMs, unavailableRetryAfter);
             }
+            log.error("Error creating key: {}", e.getMessage(), e);
+            return CreateKeyResponse.rejected(CreateKeyOutcome.ERROR, "Internal error", latencyMs);
+        }
+    }
 
-            try {
-                // Step 4: Double-check in database (after acquiring lock)
-                Optional<Key> existingKey = keyRepository.findByKeyValueAndStatus(
-                    request.getKeyValue(),
-                    KeyStatus.ACTIVE
-                );
-
-                if (existingKey.isPresent()) {
-                    Key key = existingKey.get();
-                    // Cache it for next time
-                    keyCacheService.putKeyDto(request.getKeyValue(), KeyCacheDto.fromEntity(key));
-                    double latencyMs = calculateLatencyMs(startTime);
-                    log.info("Key found in database: {} (latency: {}ms)", request.getKeyValue(), latencyMs);
-                    return CreateKeyResponse.exists(key.getKeyId(), key.getKeyValue(), latencyMs, "database");
-                }
+    private CreateKeyResponse createWithStrategy(CreateKeyRequest request, long startTime) {
+        if (writeBehindService.isEnabled()) {
+            return createWithWriteBehind(request, startTime);
+        }
+        return CREATE_STRATEGY_INSERT.equalsIgnoreCase(createStrategy)
+            ? transactionTemplate.execute(status -> createWithInsert(request, startTime))
+            : createWithLock(request, startTime);
+    }
 
-                // Step 5: Key doesn't exist, create new one
-                // Get financial entity
-                FinancialEntity entity = financialEntityRepository
-                    .findByEntityCodeAndActive(request.getEntityCode())
-                    .orElseThrow(() -> new IllegalArgumentException(
-                        "Financial entity not found or inactive: " + request.getEntityCode()
-                    ));
+    /**
+     * Lock strategy: distributed lock per key value, then DB double-check and save.
+     * If the Redis lock is unavailable, the fallback provider serializes the creation instead.
+     */
+    private CreateKeyResponse createWithLock(CreateKeyRequest request, long startTime) {
+        DistributedLockService.Acquisition acquisition = metrics.stage(KeyMetrics.CREATE, "lock.wait",
+            () -> lockService.acquireLock(request.getKeyValue()));
+        if (acquisition == DistributedLockService.Acquisition.TIMED_OUT) {
+            return CreateKeyResponse.rejected(CreateKeyOutcome.LOCK_TIMEOUT,
+                "Key is being registered by another request, please retry", calculateLatencyMs(startTime), lockTimeoutRetryAfter);
+        }
+        if (acquisition == DistributedLockService.Acquisition.UNAVAILABLE) {
+            return createWithFallbackLock(request, startTime);
+        }
+        metrics.recordLockProvider(DistributedLockService.PROVIDER_REDIS);
 
-                // Create new key
-                Key newKey = Key.builder()
-                    .keyValue(request.getKeyValue())
-                    .accountNumber(request.getAccountNumber())
-                    .ownerDocument(request.getOwnerDocument())
-                    .status(KeyStatus.ACTIVE)
-                    .financialEntity(entity)
-                    .build();
+        try {
+            return transactionTemplate.execute(status -> createLocked(request, startTime));
+        } catch (DataIntegrityViolationException e) {
+            // The lease expired before commit and another request registered the key value meanwhile
+            log.warn("Key: {} was registered concurrently while locked, reading it back", request.getKeyValue());
+            return resolveConflict(request, startTime, e);
+        } finally {
+            // Always release lock, after the transaction has committed
+            lockService.releaseLock(request.getKeyValue());
+        }
+    }
 
-                // Save to database
-                Key savedKey = keyRepository.save(newKey);
+    /**
+     * Answer with the key that won the unique index on key_value; the rolled back
+     * key was already cached, so the entry is replaced (or evicted if not active)
+     */
+    private CreateKeyResponse resolveConflict(CreateKeyRequest request, long startTime, DataIntegrityViolationException e) {
+        keyCacheService.evict(request.getKeyValue());
+        Optional<Key> existingKey = transactionTemplate.execute(status ->
+            keyRepository.findWithEntityByKeyValue(request.getKeyValue()));
+        if (existingKey == null || existingKey.isEmpty()) {
+            throw e;
+        }
+        return existingKeyResponse(existingKey.get(), startTime);
+    }
 
-                // Cache the new key
-                keyCacheService.putKeyDto(savedKey.getKeyValue(), KeyCacheDto.fromEntity(savedKey));
+    /**
+     * Degraded lock strategy while Redis is unavailable: a transaction-scoped advisory lock
+     * on the key value, or no lock at all with the unique index on key_value arbitrating
+     */
+    private CreateKeyResponse createWithFallbackLock(CreateKeyRequest request, long startTime) {
+        String provider = lockService.fallbackProvider();
+        metrics.recordLockProvider(provider);
+        if (DistributedLockService.PROVIDER_INSERT.equals(provider)) {
+            return transactionTemplate.execute(status -> createWithInsert(request, startTime));
+        }
+        return transactionTemplate.execute(status -> {
+            metrics.stage(KeyMetrics.CREATE, "lock.wait", () -> keyRepository.lockKeyValue(request.getKeyValue()));
+            return createLocked(request, startTime);
+        });
+    }
 
-                // Publish event
-                //eventPublisher.publishKeyRegistered(savedKey);
+    /**
+     * Double-check in database and save, run while holding the distributed lock
+     */
+    private CreateKeyResponse createLocked(CreateKeyRequest request, long startTime) {
+        // Double-check in database (after acquiring lock)
+        // Any status: a suspended or deleted key still holds the unique key value
+        Optional<Key> existingKey = metrics.stage(KeyMetrics.CREATE, "db.check",
+            () -> keyRepository.findWithEntityByKeyValue(request.getKeyValue()));
+
+        if (existingKey.isPresent()) {
+            // Cached for next time if active, conflict otherwise
+            return existingKeyResponse(existingKey.get(), startTime);
+        }
 
-                double latencyMs = calculateLatencyMs(startTime);
-                log.info("New key created: {} (latency: {}ms)", savedKey.getKeyValue(), latencyMs);
+        // Key doesn't exist, create new one
+        Optional<FinancialEntity> entity = findActiveEntity(request.getEntityCode());
+        if (entity.isEmpty()) {
+            return entityMissing(request, startTime);
+        }
 
-                return CreateKeyResponse.created(savedKey.getKeyId(), savedKey.getKeyValue(), latencyMs);
+        Key newKey = Key.builder()
+            .keyValue(request.getKeyValue())
+            .accountNumber(request.getAccountNumber())
+            .ownerDocument(request.getOwnerDocument())
+            .status(KeyStatus.ACTIVE)
+            .financialEntity(entity.get())
+            .build();
 
-            } finally {
-                // Step 6: Always release lock
-                lockService.releaseLock(request.getKeyValue());
-            }
+        // Save to database
+        Key savedKey = metrics.stage(KeyMetrics.CREATE, "insert", () -> keyRepository.save(newKey));
+        onKeyCreated(toCacheDto(savedKey));
+
+        double latencyMs = calculateLatencyMs(startTime);
+        log.info("New key created: {} (latency: {}ms)", savedKey.getKeyValue(), latencyMs);
+
+        return CreateKeyResponse.created(savedKey.getKeyId(), savedKey.getKeyValue(), latencyMs);
+    }
+
+    /**
+     * Insert strategy: idempotent INSERT ... ON CONFLICT DO NOTHING arbitrated by the
+     * unique index on key_value, the existing row is read back only on conflict
+     */
+    private CreateKeyResponse createWithInsert(CreateKeyRequest request, long startTime) {
+        Optional<FinancialEntity> activeEntity = findActiveEntity(request.getEntityCode());
+        if (activeEntity.isEmpty()) {
+            return entityMissing(request, startTime);
+        }
+        FinancialEntity entity = activeEntity.get();
+
+        UUID keyId = UUID.randomUUID();
+        LocalDateTime createdAt = LocalDateTime.now();
+        int inserted = metrics.stage(KeyMetrics.CREATE, "insert", () -> keyRepository.insertIfAbsent(
+            keyId,
+            request.getKeyValue(),
+            request.getAccountNumber(),
+            request.getOwnerDocument(),
+            entity.getEntityId(),
+            createdAt
+        ));
+
+        if (inserted == 1) {
+            onKeyCreated(KeyCacheDto.builder()
+                .keyId(keyId)
+                .keyValue(request.getKeyValue())
+                .accountNumber(request.getAccountNumber())
+                .ownerDocument(request.getOwnerDocument())
+                .status(KeyStatus.ACTIVE)
+                .entityCode(entity.getEntityCode())
+                .createdAt(createdAt)
+                .build());
 
-        } catch (IllegalArgumentException e) {
             double latencyMs = calculateLatencyMs(startTime);
-            log.error("Validation error creating key: {}", e.getMessage());
-            return CreateKeyResponse.error(e.getMessage(), latencyMs);
+            log.info("New key created: {} (latency: {}ms)", request.getKeyValue(), latencyMs);
+            return CreateKeyResponse.created(keyId, request.getKeyValue(), latencyMs);
+        }
+
+        // Conflict: the key value is already registered
+        Key key = metrics.stage(KeyMetrics.CREATE, "db.check",
+                () -> keyRepository.findWithEntityByKeyValue(request.getKeyValue()))
+            .orElseThrow(() -> new IllegalStateException(
+                "Key conflicted on insert but was not found: " + request.getKeyValue()
+            ));
+        return existingKeyResponse(key, startTime);
+    }
+
+    /**
+     * Write-behind strategy: the key value is claimed in Redis (SET NX) and the key is
+     * appended to the write-behind stream, WriteBehindService persists it later.
+     * Falls back to the insert strategy under back-pressure or if Redis fails.
+     */
+    private CreateKeyResponse createWithWriteBehind(CreateKeyRequest request, long startTime) {
+        if (!writeBehindService.acceptsWrites()) {
+            return transactionTemplate.execute(status -> createWithInsert(request, startTime));
+        }
+
+        Optional<FinancialEntity> activeEntity = findActiveEntity(request.getEntityCode());
+        if (activeEntity.isEmpty()) {
+            return entityMissing(request, startTime);
+        }
+        FinancialEntity entity = activeEntity.get();
+
+        // Persisted keys may no longer be cached: check the writer unless the Bloom filter rules the value out
+        if (!negativeLookupService.isKnownAbsent(request.getKeyValue())) {
+            Optional<Key> existingKey = metrics.stage(KeyMetrics.CREATE, "db.check", () ->
+                ReadWriteRoutingDataSource.onWriter(() -> keyRepository.findWithEntityByKeyValue(request.getKeyValue())));
+            if (existingKey.isPresent()) {
+                return existingKeyResponse(existingKey.get(), startTime);
+            }
+        }
+
+        KeyCacheDto dto = KeyCacheDto.builder()
+            .keyId(UUID.randomUUID())
+            .keyValue(request.getKeyValue())
+            .accountNumber(request.getAccountNumber())
+            .ownerDocument(request.getOwnerDocument())
+            .status(KeyStatus.ACTIVE)
+            .entityCode(entity.getEntityCode())
+            .createdAt(LocalDateTime.now())
+            .build();
+
+        UUID owner;
+        try {
+            owner = metrics.stage(KeyMetrics.CREATE, "enqueue", () -> {
+                UUID claimedBy = writeBehindService.claim(dto.getKeyValue(), dto.getKeyId());
+                if (dto.getKeyId().equals(claimedBy)) {
+                    try {
+                        writeBehindService.enqueue(dto, entity.getEntityId());
+                    } catch (RuntimeException e) {
+                        // The claim was won but nothing will persist it: free the value for the insert fallback
+                        writeBehindService.releaseClaim(dto.getKeyValue());
+                        throw e;
+                    }
+                }
+                return claimedBy;
+            });
         } catch (Exception e) {
+            log.error("Error enqueuing write-behind key: {}. Error: {}", dto.getKeyValue(), e.getMessage());
+            return transactionTemplate.execute(status -> createWithInsert(request, startTime));
+        }
+
+        if (owner == null) {
+            // Claimed by another request whose key has just been persisted
+            return transactionTemplate.execute(status -> createWithInsert(request, startTime));
+        }
+        if (!dto.getKeyId().equals(owner)) {
             double latencyMs = calculateLatencyMs(startTime);
-            log.error("Error creating key: {}", e.getMessage(), e);
-            return CreateKeyResponse.error("Internal error: " + e.getMessage(), latencyMs);
+            log.info("Key pending write-behind: {} (latency: {}ms)", dto.getKeyValue(), latencyMs);
+            return CreateKeyResponse.exists(owner, dto.getKeyValue(), latencyMs, "write-behind");
+        }
+
+        onKeyCreated(dto);
+
+        double latencyMs = calculateLatencyMs(startTime);
+        log.info("New key enqueued for write-behind: {} (latency: {}ms)", dto.getKeyValue(), latencyMs);
+        return CreateKeyResponse.created(dto.getKeyId(), dto.getKeyValue(), latencyMs);
+    }
+
+    /**
+     * Response for a key value that is already registered in the database
+     */
+    private CreateKeyResponse existingKeyResponse(Key key, long startTime) {
+        if (!key.isActive()) {
+            double latencyMs = calculateLatencyMs(startTime);
+            return CreateKeyResponse.rejected(CreateKeyOutcome.CONFLICT,
+                "Key already registered with status " + key.getStatus(), latencyMs);
         }
+
+        metrics.stage(KeyMetrics.CREATE, "cache.put", () -> keyCacheService.putKeyDto(key.getKeyValue(), toCacheDto(key)));
+        double latencyMs = calculateLatencyMs(startTime);
+        log.info("Key found in database: {} (latency: {}ms)", key.getKeyValue(), latencyMs);
+        return CreateKeyResponse.exists(key.getKeyId(), key.getKeyValue(), latencyMs, "database");
+    }
+
+    /**
+     * Get an active financial entity by code
+     */
+    private Optional<FinancialEntity> findActiveEntity(String entityCode) {
+        return metrics.stage(KeyMetrics.CREATE, "entity.lookup", () -> entityRegistry.findActive(entityCode));
+    }
+
+    /**
+     * Response for a request naming an unknown or inactive financial entity
+     */
+    private CreateKeyResponse entityMissing(CreateKeyRequest request, long startTime) {
+        return CreateKeyResponse.rejected(CreateKeyOutcome.ENTITY_MISSING,
+            "Financial entity not found or inactive: " + request.getEntityCode(), calculateLatencyMs(startTime));
+    }
+
+    /**
+     * Cache entry for a key, without loading a lazy financial entity just for its code
+     */
+    private KeyCacheDto toCacheDto(Key key) {
+        return KeyCacheDto.fromEntity(key, entityRegistry.entityCodeOf(key));
+    }
+
+    /**
+     * Requests are only coalesced when their whole payload is identical
+     */
+    private String coalescingKey(CreateKeyRequest request) {
+        return String.join("|",
+            request.getKeyValue(),
+            String.valueOf(request.getAccountNumber()),
+            String.valueOf(request.getOwnerDocument()),
+            request.getEntityCode());
+    }
+
+    /**
+     * What a coalesced waiter receives: the leader's outcome with its own latency.
+     * Only the leader reports the key as newly created.
+     */
+    private CreateKeyResponse asCoalescedResponse(CreateKeyResponse leaderResponse, long startTime) {
+        double latencyMs = calculateLatencyMs(startTime);
+        if (leaderResponse.isCreated()) {
+            return CreateKeyResponse.exists(leaderResponse.getKeyId(), leaderResponse.getKeyValue(), latencyMs, "database");
+        }
+        if (leaderResponse.isExists()) {
+            return CreateKeyResponse.exists(leaderResponse.getKeyId(), leaderResponse.getKeyValue(), latencyMs, leaderResponse.getSource());
+        }
+        return CreateKeyResponse.rejected(leaderResponse.getOutcome(), leaderResponse.getMessage(), latencyMs,
+            leaderResponse.getRetryAfter());
+    }
+
+    /**
+     * Bookkeeping shared by all creation strategies once a key has been inserted
+     */
+    private void onKeyCreated(KeyCacheDto dto) {
+        negativeLookupService.recordCreated(dto.getKeyValue());
+        readYourWritesTracker.recordWrite(dto.getKeyValue());
+
+        // Cache the new key
+        metrics.stage(KeyMetrics.CREATE, "cache.put", () -> keyCacheService.putKeyDto(dto.getKeyValue(), dto));
+
+        // Publish event
+        eventPublisher.publishKeyRegistered(dto);
+    }
+
+    /**
+     * Check or create several keys at once.
+     * 1. Validate format
+     * 2. Resolve cached keys with a single multi-get
+     * 3. Resolve the rest with a single IN (...) query
+     * 4. Insert the missing ones with JDBC batching in one transaction
+     * 5. Cache everything resolved from the database in one pipeline
+     * Database work is bounded like createKey's while the Redis circuit is open.
+     * The batch insert is only used where the unique index on key_value arbitrates
+     * (lock and insert strategies): if it loses a race, the missing keys go through
+     * createKey's path one by one. With write-behind, where Redis claims arbitrate
+     * until the stream is drained, missing keys always take that path.
+     * Each key is recorded in keys.requests like a createKey call lasting the whole batch.
+     */
+    public BatchCreateKeyResponse createKeys(List<CreateKeyRequest> requests) {
+        Timer.Sample sample = metrics.start();
+        long startTime = System.nanoTime();
+
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size " + requests.size() + " exceeds maximum " + maxBatchSize);
+        }
+
+        Map<String, CreateKeyResponse> resolved = new HashMap<>();
+        Map<String, CreateKeyRequest> pending = new LinkedHashMap<>();
+        metrics.stage(KeyMetrics.CREATE, "validation", () -> {
+            for (CreateKeyRequest request : requests) {
+                if (keyValidator.validateKeyFormat(request.getKeyValue())) {
+                    pending.putIfAbsent(request.getKeyValue(), request);
+                }
+            }
+        });
+
+        // Step 2: Cache (near + one Redis MGET)
+        Map<String, KeyCacheDto> cached = metrics.stage(KeyMetrics.CREATE, "cache.get",
+            () -> keyCacheService.getKeyDtos(pending.keySet()));
+        cached.forEach((keyValue, dto) -> {
+            resolved.put(keyValue, CreateKeyResponse.exists(dto.getKeyId(), keyValue, calculateLatencyMs(startTime), "cache"));
+            pending.remove(keyValue);
+        });
+
+        Map<String, KeyCacheDto> toCache = new HashMap<>();
+        try {
+            // Step 3: Database (one IN query)
+            if (!pending.isEmpty()) {
+                findExistingKeys(pending, resolved, toCache, startTime);
+            }
+
+            // Step 4: Insert of the missing keys
+            if (!pending.isEmpty()) {
+                if (writeBehindService.isEnabled()) {
+                    pending.values().forEach(request -> resolved.put(request.getKeyValue(), create(request)));
+                } else {
+                    createMissingKeys(pending, resolved, toCache, startTime);
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!BackendFailures.isBackendDown(e)) {
+                throw e;
+            }
+            log.warn("Backend unavailable for batch check-or-create of {} keys. Error: {}", requests.size(), e.getMessage());
+            for (String keyValue : pending.keySet()) {
+                resolved.putIfAbsent(keyValue, CreateKeyResponse.rejected(CreateKeyOutcome.BACKEND_DOWN,
+                    "Service temporarily unavailable, please retry", calculateLatencyMs(startTime), unavailableRetryAfter));
+            }
+        }
+
+        // Step 5: Cache in one pipeline
+        metrics.stage(KeyMetrics.CREATE, "cache.put", () -> keyCacheService.putKeyDtos(toCache));
+
+        List<CreateKeyResponse> results = new ArrayList<>(requests.size());
+        for (CreateKeyRequest request : requests) {
+            CreateKeyResponse result = resolved.get(request.getKeyValue());
+            results.add(metrics.recordCreate(sample, result != null ? result : CreateKeyResponse.rejected(
+                CreateKeyOutcome.INVALID, "Invalid key format", calculateLatencyMs(startTime))));
+        }
+
+        double latencyMs = calculateLatencyMs(startTime);
+        log.info("Batch check-or-create for {} keys completed (latency: {}ms)", requests.size(), latencyMs);
+        return BatchCreateKeyResponse.of(results, latencyMs);
+    }
+
+    private void findExistingKeys(Map<String, CreateKeyRequest> pending,
+                                  Map<String, CreateKeyResponse> resolved,
+                                  Map<String, KeyCacheDto> toCache,
+                                  long startTime) {
+        List<Key> existingKeys = redisCircuitBreaker.limitDatabaseFallback(() -> metrics.stage(KeyMetrics.CREATE, "db.check",
+            () -> keyRepository.findWithEntityByKeyValueIn(pending.keySet())));
+        for (Key key : existingKeys) {
+            pending.remove(key.getKeyValue());
+            if (key.isActive()) {
+                toCache.put(key.getKeyValue(), toCacheDto(key));
+                resolved.put(key.getKeyValue(), CreateKeyResponse.exists(
+                    key.getKeyId(), key.getKeyValue(), calculateLatencyMs(startTime), "database"));
+            } else {
+                resolved.put(key.getKeyValue(), CreateKeyResponse.rejected(CreateKeyOutcome.CONFLICT,
+                    "Key already registered with status " + key.getStatus(), calculateLatencyMs(startTime)));
+            }
+        }
+    }
+
+    private void createMissingKeys(Map<String, CreateKeyRequest> pending,
+                                   Map<String, CreateKeyResponse> resolved,
+                                   Map<String, KeyCacheDto> toCache,
+                                   long startTime) {
+        Map<String, Optional<FinancialEntity>> entities = new HashMap<>();
+        List<Key> newKeys = new ArrayList<>();
+        for (CreateKeyRequest request : pending.values()) {
+            Optional<FinancialEntity> entity = entities.computeIfAbsent(
+                request.getEntityCode(), this::findActiveEntity);
+            if (entity.isEmpty()) {
+                resolved.put(request.getKeyValue(), entityMissing(request, startTime));
+                continue;
+            }
+            newKeys.add(Key.builder()
+                .keyValue(request.getKeyValue())
+                .accountNumber(request.getAccountNumber())
+                .ownerDocument(request.getOwnerDocument())
+                .status(KeyStatus.ACTIVE)
+                .financialEntity(entity.get())
+                .build());
+        }
+        if (newKeys.isEmpty()) {
+            return;
+        }
+
+        try {
+            redisCircuitBreaker.limitDatabaseFallback(() -> metrics.stage(KeyMetrics.CREATE, "insert", () ->
+                transactionTemplate.execute(status -> {
+                    List<Key> savedKeys = keyRepository.saveAll(newKeys);
+                    keyRepository.flush();
+                    for (Key savedKey : savedKeys) {
+                        negativeLookupService.recordCreated(savedKey.getKeyValue());
+                        readYourWritesTracker.recordWrite(savedKey.getKeyValue());
+                    }
+                    return savedKeys;
+                })));
+        } catch (DataIntegrityViolationException e) {
+            // Another request registered one of the keys concurrently, resolve each key on its own
+            log.warn("Batch insert of {} keys conflicted, falling back to single creation", newKeys.size());
+            for (Key newKey : newKeys) {
+                resolved.put(newKey.getKeyValue(), create(pending.get(newKey.getKeyValue())));
+            }
+            return;
+        }
+
+        for (Key savedKey : newKeys) {
+            KeyCacheDto dto = toCacheDto(savedKey);
+            toCache.put(savedKey.getKeyValue(), dto);
+            eventPublisher.publishKeyRegistered(dto);
+            resolved.put(savedKey.getKeyValue(), CreateKeyResponse.created(
+                savedKey.getKeyId(), savedKey.getKeyValue(), calculateLatencyMs(startTime)));
+        }
+        log.info("Batch inserted {} new keys", newKeys.size());
     }
 
     /**
      * Find a key by its value (cache first, then database)
      */
     public Optional<EntityKeyResponse> findByValue(String keyValue) {
-        // Try cache first
-        Optional<KeyCacheDto> cachedKey = keyCacheService.getKeyDto(keyValue);
-        if (cachedKey.isPresent()) {
-            log.info("Key found in cache: {}", keyValue);
-            return Optional.of(EntityKeyResponse.fromCache(cachedKey.get()));
+        Timer.Sample sample = metrics.start();
+        String source = "error";
+        try {
+            // Try cache first
+            Optional<KeyCacheDto> cachedKey = metrics.stage(KeyMetrics.FIND, "cache.get",
+                () -> keyCacheService.getKeyDto(keyValue));
+            if (cachedKey.isPresent()) {
+                source = "cache";
+                log.info("Key found in cache: {}", keyValue);
+                return Optional.of(EntityKeyResponse.fromCache(cachedKey.get()));
+            }
+
+            // Known to be absent (Bloom filter or tombstone), skip the database
+            boolean knownAbsent = metrics.stage(KeyMetrics.FIND, "negative.lookup",
+                () -> negativeLookupService.isKnownAbsent(keyValue));
+            if (knownAbsent) {
+                source = "negative";
+                log.info("Key not found (negative lookup): {}", keyValue);
+                return Optional.empty();
+            }
+
+            // Not in cache, only one concurrent lookup per key value on this pod hits the database
+            Optional<EntityKeyResponse> loaded = requestCoalescer.execute("lookup", keyValue,
+                () -> redisCircuitBreaker.limitDatabaseFallback(() -> loadFromDatabase(keyValue)));
+            source = loaded.isPresent() ? "database" : "not_found";
+            return loaded;
+        } finally {
+            metrics.recordFind(sample, source);
         }
+    }
 
-        // Not in cache, check database
-        Optional<Key> dbKey = keyRepository.findByKeyValue(keyValue);
+    /**
+     * Load a key from the database and populate the cache
+     */
+    private Optional<EntityKeyResponse> loadFromDatabase(String keyValue) {
+        // Reader, unless written recently by this pod
+        Optional<Key> dbKey = metrics.stage(KeyMetrics.FIND, "db.lookup", () -> readYourWritesTracker.isRecentlyWritten(keyValue)
+            ? ReadWriteRoutingDataSource.onWriter(() -> keyRepository.findWithEntityByKeyValue(keyValue))
+            : keyRepository.findWithEntityByKeyValue(keyValue));
+
+        // The reader may lag behind the writer, confirm a miss before caching it as absent
+        if (dbKey.isEmpty()) {
+            dbKey = metrics.stage(KeyMetrics.FIND, "db.confirm",
+                () -> ReadWriteRoutingDataSource.onWriter(() -> keyRepository.findWithEntityByKeyValue(keyValue)));
+        }
         if (dbKey.isPresent()) {
             Key key = dbKey.get();
             // Cache it for next time
-            keyCacheService.putKeyDto(keyValue, KeyCacheDto.fromEntity(key));
+            metrics.stage(KeyMetrics.FIND, "cache.put", () -> keyCacheService.putKeyDto(keyValue, toCacheDto(key)));
             log.info("Key found in database and cached: {}", keyValue);
             return Optional.of(EntityKeyResponse.fromEntity(key, "database"));
         }
 
+        negativeLookupService.recordMiss(keyValue);
         log.info("Key not found: {}", keyValue);
         return Optional.empty();
     }
@@ -175,6 +683,7 @@ public class KeyService {
         }
 
         Key key = keyOpt.get();
+        KeyStatus previousStatus = key.getStatus();
 
         // Update fields if provided
         if (request.getAccountNumber() != null) {
@@ -195,11 +704,14 @@ public class KeyService {
         // Save changes
         Key updatedKey = keyRepository.save(key);
 
-        // Invalidate cache
-        keyCacheService.evict(updatedKey.getKeyValue());
+        readYourWritesTracker.recordWrite(updatedKey.getKeyValue());
+        keyCacheService.recordWriteAfterCommit(updatedKey.getKeyValue());
 
-        // Publish event
-        //eventPublisher.publishKeyUpdated(updatedKey);
+        // Cache eviction and event are relayed from the outbox once this commits
+        String eventType = updatedKey.getStatus() == KeyStatus.SUSPENDED && previousStatus != KeyStatus.SUSPENDED
+                ? KeyEvent.KEY_SUSPENDED
+                : KeyEvent.KEY_UPDATED;
+        keyOutbox.record(KeyEvent.of(eventType, toCacheDto(updatedKey)));
 
         log.info("Key updated: {}", keyId);
         return Optional.of(EntityKeyResponse.fromEntity(updatedKey, "database"));
@@ -219,11 +731,11 @@ public class KeyService {
         key.delete();
         keyRepository.save(key);
 
-        // Invalidate cache
-        keyCacheService.evict(key.getKeyValue());
+        readYourWritesTracker.recordWrite(key.getKeyValue());
+        keyCacheService.recordWriteAfterCommit(key.getKeyValue());
 
-        // Publish event
-        //eventPublisher.publishKeyDeleted(key);
+        // Cache eviction and event are relayed from the outbox once this commits
+        keyOutbox.record(KeyEvent.of(KeyEvent.KEY_DELETED, toCacheDto(key)));
 
         log.info("Key soft deleted: {}", keyId);
         return true;
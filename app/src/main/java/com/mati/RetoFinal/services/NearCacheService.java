@@ -0,0 +1,161 @@
+package com.mati.RetoFinal.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mati.RetoFinal.dto.KeyCacheDto;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process L1 cache sitting in front of the Redis L2 cache.
+ * Entries are size-bounded and expire after a short TTL; evictions are
+ * broadcast to the other pods through Redis Pub/Sub so every L1 stays coherent.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NearCacheService implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "cache-invalidation:keys";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cache.near.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.near.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${cache.near.ttl:30s}")
+    private Duration ttl;
+
+    private Cache<String, KeyCacheDto> cache;
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            log.info("Near cache disabled");
+            return;
+        }
+
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "keys.near");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        log.info("Near cache enabled (maximumSize={}, ttl={})", maximumSize, ttl);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get a KeyCacheDto from the local tier
+     */
+    public Optional<KeyCacheDto> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    /**
+     * Put a KeyCacheDto into the local tier
+     */
+    public void put(String key, KeyCacheDto dto) {
+        if (enabled) {
+            cache.put(key, dto);
+        }
+    }
+
+    /**
+     * Invalidate a key on this pod only, the caller broadcasts it
+     */
+    void invalidateLocally(String key) {
+        if (enabled) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Invalidate a key locally and on every other pod
+     */
+    public void invalidate(String key) {
+        if (!enabled) {
+            return;
+        }
+        cache.invalidate(key);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, key);
+        } catch (Exception e) {
+            log.error("Error publishing near cache invalidation for key: {}. Error: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Also notify listener of every invalidation broadcast received (only broadcast while enabled)
+     */
+    void addInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    /**
+     * Handle invalidation messages published by other pods
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        cache.invalidate(key);
+        invalidationListeners.forEach(listener -> listener.accept(key));
+        log.debug("Near cache invalidated by broadcast for key: {}", key);
+    }
+
+    /**
+     * Hit ratio of the local tier, 0 when disabled or unused
+     */
+    public double hitRatio() {
+        return enabled ? cache.stats().hitRate() : 0.0;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (enabled) {
+            CacheStats cacheStats = cache.stats();
+            stats.put("size", cache.estimatedSize());
+            stats.put("hits", cacheStats.hitCount());
+            stats.put("misses", cacheStats.missCount());
+            stats.put("evictions", cacheStats.evictionCount());
+            stats.put("hitRatio", cacheStats.hitRate());
+        }
+        return stats;
+    }
+}
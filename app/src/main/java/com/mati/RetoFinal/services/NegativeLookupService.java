@@ -0,0 +1,496 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.repositories.KeyRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Negative-lookup layer for key values that are not registered.
+ * A cluster-wide Bloom filter holds every registered keyValue, so unknown keys
+ * are answered without touching PostgreSQL; Bloom false positives that still
+ * reach the database leave a short-lived tombstone in Redis.
+ *
+ * The filter is versioned by generation: a rebuild fills a new generation while
+ * every pod adds new keys to both, then all pods switch over through Pub/Sub.
+ * Pub/Sub is best effort, so each pod also re-reads the generations every
+ * cache.negative.bloom.check-interval and the rebuild waits that long before filling.
+ *
+ * Adds that could not reach Redis are counted in bloom:keys:missed, shared by all
+ * pods: while it is above zero no pod trusts the filter, and only a completed
+ * rebuild brings it back down.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NegativeLookupService implements MessageListener {
+
+    private static final String FILTER_PREFIX = "bloom:keys:";
+    private static final String CURRENT_GENERATION = "bloom:keys:current";
+    private static final String NEXT_GENERATION = "bloom:keys:next";
+    private static final String MISSED_ADDS = "bloom:keys:missed";
+    private static final String REBUILD_LOCK = "lock:bloom:keys";
+    private static final String CHANNEL = "bloom:keys:events";
+    private static final Duration SWITCH_GRACE = Duration.ofSeconds(1);
+    private static final Duration RETIRED_FILTER_TTL = Duration.ofMinutes(5);
+    private static final int ADD_BATCH_SIZE = 10_000;
+
+    private final RedissonClient redissonClient;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final KeyRepository keyRepository;
+    private final KeyCacheService keyCacheService;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cache.negative.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.negative.bloom.expected-insertions:10000000}")
+    private long expectedInsertions;
+
+    @Value("${cache.negative.bloom.false-probability:0.01}")
+    private double falseProbability;
+
+    @Value("${cache.negative.bloom.check-interval:1s}")
+    private Duration checkInterval;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "bloom-rebuild"));
+    private final ScheduledExecutorService checkExecutor = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "bloom-check"));
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    // Adds skipped or failed while Redis was unavailable, not yet counted in MISSED_ADDS
+    private final AtomicLong unreportedMissedAdds = new AtomicLong();
+    // MISSED_ADDS as last read; the filter is only trusted at zero
+    private volatile long missedAdds = -1;
+
+    private volatile RBloomFilter<String> current;
+    private volatile RBloomFilter<String> next;
+    // Generations of current and next, only ever moved forward (guarded by this)
+    private long currentGeneration;
+    private long nextGeneration;
+
+    private Counter bloomRejected;
+    private Counter tombstoneHits;
+    private Counter falsePositives;
+
+    @PostConstruct
+    void init() {
+        bloomRejected = Counter.builder("keys.negative.lookups").tag("result", "bloom_rejected").register(meterRegistry);
+        tombstoneHits = Counter.builder("keys.negative.lookups").tag("result", "tombstone").register(meterRegistry);
+        falsePositives = Counter.builder("keys.negative.lookups").tag("result", "false_positive").register(meterRegistry);
+        Gauge.builder("keys.negative.bloom.false.positive.rate", this, NegativeLookupService::observedFalsePositiveRate)
+                .register(meterRegistry);
+
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        rebuildExecutor.submit(() -> {
+            try {
+                refreshGenerations();
+                if (current == null && rebuilding.compareAndSet(false, true)) {
+                    log.info("No Bloom filter found for key values, building it");
+                    rebuildNow();
+                }
+            } catch (Exception e) {
+                log.error("Error initializing Bloom filter for key values. Error: {}", e.getMessage());
+            }
+        });
+        checkExecutor.scheduleWithFixedDelay(this::check,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        checkExecutor.shutdownNow();
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns true if the key value is known not to exist.
+     * Fails open (returns false) whenever the filter is not ready or Redis errors.
+     */
+    public boolean isKnownAbsent(String keyValue) {
+        if (!enabled) {
+            return false;
+        }
+        if (bloomRejects(keyValue)) {
+            return true;
+        }
+        if (keyCacheService.hasTombstone(keyValue)) {
+            countTombstoneHit();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record that the database confirmed the key value does not exist
+     */
+    public void recordMiss(String keyValue) {
+        if (!enabled) {
+            return;
+        }
+        countFalsePositive();
+        keyCacheService.putTombstone(keyValue);
+    }
+
+    /**
+     * Register a newly created key value. The tombstone is dropped again after
+     * commit so a concurrent lookup cannot leave a stale one behind.
+     */
+    public void recordCreated(String keyValue) {
+        if (!enabled) {
+            return;
+        }
+        addToFilters(keyValue);
+        keyCacheService.evictTombstone(keyValue);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keyCacheService.evictTombstone(keyValue);
+                }
+            });
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Building blocks shared with ReactiveNegativeLookupService, which keeps tombstones
+    // on the reactive Redis client but reuses the filter generations and counters
+
+    /**
+     * Bloom filter part of isKnownAbsent (blocking call to Redis, skipped while the Redis circuit is open).
+     * A filter that missed adds on any pod is not trusted until a rebuild covers them.
+     * @return true if the current filter rejects the key value
+     */
+    boolean bloomRejects(String keyValue) {
+        RBloomFilter<String> filter = current;
+        if (filter == null || !isTrusted()) {
+            return false;
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return false;
+        }
+        try {
+            if (!circuitBreaker.call(() -> filter.contains(keyValue))) {
+                bloomRejected.increment();
+                return true;
+            }
+        } catch (Exception e) {
+            log.error("Error checking Bloom filter for key: {}. Error: {}", keyValue, e.getMessage());
+        }
+        return false;
+    }
+
+    void countTombstoneHit() {
+        tombstoneHits.increment();
+    }
+
+    /**
+     * A database miss is only a Bloom false positive if the filter was consulted
+     */
+    void countFalsePositive() {
+        if (current != null && isTrusted()) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Trigger an asynchronous rebuild of the Bloom filter from the database
+     * @return false if a rebuild is already running on this pod
+     */
+    public boolean rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            rebuildExecutor.submit(this::rebuildNow);
+            return true;
+        } catch (RejectedExecutionException e) {
+            rebuilding.set(false);
+            return false;
+        }
+    }
+
+    /**
+     * Observed false positive rate: lookups the filter let through that the database rejected
+     */
+    public double observedFalsePositiveRate() {
+        double fp = falsePositives.count();
+        double negatives = fp + bloomRejected.count();
+        return negatives == 0 ? 0.0 : fp / negatives;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", current != null);
+        stats.put("generation", currentGeneration());
+        stats.put("trusted", isTrusted());
+        stats.put("missedAdds", missedAdds);
+        stats.put("unreportedMissedAdds", unreportedMissedAdds.get());
+        stats.put("rebuilding", rebuilding.get());
+        stats.put("expectedFalseProbability", falseProbability);
+        stats.put("observedFalsePositiveRate", observedFalsePositiveRate());
+        stats.put("bloomRejected", (long) bloomRejected.count());
+        stats.put("tombstoneHits", (long) tombstoneHits.count());
+        stats.put("falsePositives", (long) falsePositives.count());
+        return stats;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            String[] parts = body.split(":", 2);
+            long generation = Long.parseLong(parts[1]);
+
+            if ("next".equals(parts[0])) {
+                applyGenerations(null, generation);
+            } else if ("current".equals(parts[0])) {
+                applyGenerations(generation, null);
+            }
+            log.debug("Bloom filter generation event: {}", body);
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed Bloom filter event: {}", body);
+        }
+    }
+
+    /**
+     * Build a new generation; the caller must have set rebuilding, which is cleared here
+     */
+    private void rebuildNow() {
+        RLock lock = redissonClient.getLock(REBUILD_LOCK);
+        try {
+            if (!lock.tryLock(0, TimeUnit.MILLISECONDS)) {
+                log.info("Bloom filter rebuild already running on another pod");
+                return;
+            }
+            try {
+                long generation = System.currentTimeMillis();
+                RBloomFilter<String> filter = filter(generation);
+                filter.tryInit(expectedInsertions, falseProbability);
+
+                generationBucket(NEXT_GENERATION).set(generation);
+                applyGenerations(null, generation);
+                redisTemplate.convertAndSend(CHANNEL, "next:" + generation);
+                // Pods that lost the event pick the generation up on their next check
+                Thread.sleep(SWITCH_GRACE.plus(checkInterval).toMillis());
+
+                // populate reads every key value, covering the adds missed so far;
+                // adds missed later keep the counter above zero
+                long covered = missedAddsCounter().get();
+                long added = populate(filter);
+
+                RBloomFilter<String> retired = current;
+                generationBucket(CURRENT_GENERATION).set(generation);
+                generationBucket(NEXT_GENERATION).delete();
+                applyGenerations(generation, null);
+                missedAdds = missedAddsCounter().addAndGet(-covered);
+                redisTemplate.convertAndSend(CHANNEL, "current:" + generation);
+                if (retired != null) {
+                    retired.expire(RETIRED_FILTER_TTL);
+                }
+
+                log.info("Bloom filter generation {} built with {} key values", generation, added);
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error rebuilding Bloom filter for key values. Error: {}", e.getMessage(), e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private long populate(RBloomFilter<String> filter) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+
+        Long added = tx.execute(status -> {
+            long count = 0;
+            List<String> batch = new ArrayList<>(ADD_BATCH_SIZE);
+            try (Stream<String> values = keyRepository.streamAllKeyValues()) {
+                for (String value : (Iterable<String>) values::iterator) {
+                    batch.add(value);
+                    if (batch.size() == ADD_BATCH_SIZE) {
+                        filter.add(batch);
+                        count += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                filter.add(batch);
+                count += batch.size();
+            }
+            return count;
+        });
+        return added != null ? added : 0;
+    }
+
+    private void refreshGenerations() {
+        applyGenerations(generationBucket(CURRENT_GENERATION).get(), generationBucket(NEXT_GENERATION).get());
+    }
+
+    /**
+     * Move to the given generations if they are newer than the known ones, so a stale
+     * read or a late event never steps back; next is dropped once current catches up.
+     * Null leaves a generation as it is.
+     */
+    private synchronized void applyGenerations(Long currentGen, Long nextGen) {
+        if (currentGen != null && currentGen > currentGeneration) {
+            current = filter(currentGen);
+            currentGeneration = currentGen;
+        }
+        if (nextGen != null && nextGen > nextGeneration && nextGen > currentGeneration) {
+            next = filter(nextGen);
+            nextGeneration = nextGen;
+        }
+        if (next != null && nextGeneration <= currentGeneration) {
+            next = null;
+        }
+    }
+
+    private synchronized long currentGeneration() {
+        return currentGeneration;
+    }
+
+    /**
+     * Periodic check: re-read the generations in case a Pub/Sub event was lost
+     * (e.g. while the listener reconnected), then check for missed adds
+     */
+    private void check() {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return;
+        }
+        try {
+            circuitBreaker.run(this::refreshGenerations);
+        } catch (Exception e) {
+            log.error("Error refreshing Bloom filter generations. Error: {}", e.getMessage());
+            return;
+        }
+        checkMissedAdds();
+    }
+
+    void addToFilters(String keyValue) {
+        RBloomFilter<String> filter = current;
+        RBloomFilter<String> pending = next;
+        if (filter == null && pending == null) {
+            return;
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            unreportedMissedAdds.incrementAndGet();
+            return;
+        }
+        try {
+            circuitBreaker.run(() -> {
+                if (filter != null) {
+                    filter.add(keyValue);
+                }
+                if (pending != null) {
+                    pending.add(keyValue);
+                }
+            });
+        } catch (Exception e) {
+            unreportedMissedAdds.incrementAndGet();
+            log.error("Error adding key to Bloom filter: {}. Error: {}", keyValue, e.getMessage());
+        }
+    }
+
+    /**
+     * Report this pod's missed adds to MISSED_ADDS and read back the cluster-wide count;
+     * while it is above zero and Redis is healthy, start a rebuild (the lock keeps it to one pod)
+     */
+    private void checkMissedAdds() {
+        if (current == null || !circuitBreaker.tryAcquirePermission()) {
+            return;
+        }
+        try {
+            long unreported = unreportedMissedAdds.get();
+            long missed = circuitBreaker.call(() -> unreported > 0
+                    ? missedAddsCounter().addAndGet(unreported)
+                    : missedAddsCounter().get());
+            unreportedMissedAdds.addAndGet(-unreported);
+            missedAdds = missed;
+            if (missed > 0 && circuitBreaker.getState() == RedisCircuitBreaker.State.CLOSED && rebuild()) {
+                log.info("Bloom filter missed {} adds, rebuilding it", missed);
+            }
+        } catch (Exception e) {
+            log.error("Error checking missed Bloom filter adds. Error: {}", e.getMessage());
+        }
+    }
+
+    private boolean isTrusted() {
+        return missedAdds == 0 && unreportedMissedAdds.get() == 0;
+    }
+
+    private RAtomicLong missedAddsCounter() {
+        return redissonClient.getAtomicLong(MISSED_ADDS);
+    }
+
+    private RBloomFilter<String> filter(long generation) {
+        return redissonClient.getBloomFilter(FILTER_PREFIX + generation, StringCodec.INSTANCE);
+    }
+
+    private RBucket<Long> generationBucket(String name) {
+        return redissonClient.getBucket(name, LongCodec.INSTANCE);
+    }
+}
@@ -0,0 +1,113 @@
+package com.mati.RetoFinal.services;
+
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.cluster.models.partitions.Partitions;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs one command per key as per-node pipelines on the shared Lettuce connection.
+ *
+ * Keys are grouped by the cluster node that owns their slot and each round sends up
+ * to batchSize commands to every node at once, so a batch takes as many rounds as its
+ * largest node group and gets faster as nodes are added. Unlike executePipelined,
+ * no dedicated connection is opened per batch. In standalone mode all keys form one group.
+ */
+final class NodePipelineExecutor {
+
+    private static final String STANDALONE = "standalone";
+
+    /**
+     * Issues the command(s) for the key at index and returns the future of its result
+     * (a RedisFuture, or a stage composed from the key's commands)
+     */
+    @FunctionalInterface
+    interface Command<T> {
+        CompletionStage<T> issue(RedisClusterAsyncCommands<byte[], byte[]> async, int index);
+    }
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final int batchSize;
+    private final Duration timeout;
+    private final IntConsumer nodesPerBatch;
+
+    NodePipelineExecutor(RedisTemplate<String, String> redisTemplate, int batchSize, Duration timeout,
+                         IntConsumer nodesPerBatch) {
+        this.redisTemplate = redisTemplate;
+        this.batchSize = batchSize;
+        this.timeout = timeout;
+        this.nodesPerBatch = nodesPerBatch;
+    }
+
+    /**
+     * Run command for each key, all commands for a key must target that key's slot
+     * @return the results in the order of keys
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> execute(List<byte[]> keys, Command<T> command) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        return redisTemplate.execute((RedisCallback<List<T>>) connection -> {
+            RedisClusterAsyncCommands<byte[], byte[]> async =
+                    (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            Map<String, List<Integer>> groups = groupByNode(keys);
+            nodesPerBatch.accept(groups.size());
+
+            CompletableFuture<T>[] futures = new CompletableFuture[keys.size()];
+            int rounds = groups.values().stream().mapToInt(List::size).max().orElse(0);
+            for (int from = 0; from < rounds; from += batchSize) {
+                List<CompletableFuture<T>> round = new ArrayList<>();
+                for (List<Integer> group : groups.values()) {
+                    for (int i = from; i < Math.min(from + batchSize, group.size()); i++) {
+                        int index = group.get(i);
+                        CompletableFuture<T> future = command.issue(async, index).toCompletableFuture();
+                        futures[index] = future;
+                        round.add(future);
+                    }
+                }
+                if (!LettuceFutures.awaitAll(timeout, round.toArray(new CompletableFuture[0]))) {
+                    throw new QueryTimeoutException("Redis pipeline of " + round.size()
+                            + " commands did not complete within " + timeout);
+                }
+            }
+
+            List<T> results = new ArrayList<>(keys.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Indexes of keys by the node owning their slot, from the cluster client's cached topology
+     */
+    private Map<String, List<Integer>> groupByNode(List<byte[]> keys) {
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        Partitions partitions = redisTemplate.getConnectionFactory() instanceof LettuceConnectionFactory factory
+                && factory.getNativeClient() instanceof RedisClusterClient client
+                ? client.getPartitions()
+                : null;
+        for (int i = 0; i < keys.size(); i++) {
+            RedisClusterNode node = partitions != null ? partitions.getPartitionBySlot(SlotHash.getSlot(keys.get(i))) : null;
+            groups.computeIfAbsent(node != null ? node.getNodeId() : STANDALONE, k -> new ArrayList<>()).add(i);
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,100 @@
+package com.mati.RetoFinal.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonReactiveClient;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distributed locks for the reactive stack, on the same lock keys as DistributedLockService.
+ * A reactive pipeline has no owning thread, so each acquisition gets an explicit
+ * random owner id that must be passed back on release.
+ * Like DistributedLockService it takes every lock name of the key value, in order.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveDistributedLockService {
+
+    private final RedissonReactiveClient redissonReactiveClient;
+    private final RedisKeyNames keyNames;
+
+    /**
+     * New owner id for one lock acquisition
+     */
+    public long newOwnerId() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Acquire a lock with default wait and lease times
+     * @return ACQUIRED, or why not (Redis errors are UNAVAILABLE)
+     */
+    public Mono<DistributedLockService.Acquisition> acquireLock(String key, long ownerId) {
+        return tryLock(keyNames.lockNames(key), ownerId)
+                .map(acquired -> {
+                    if (acquired) {
+                        log.debug("Lock acquired for key: {}", key);
+                        return DistributedLockService.Acquisition.ACQUIRED;
+                    }
+                    log.debug("Failed to acquire lock for key: {} after waiting {}ms",
+                            key, DistributedLockService.DEFAULT_WAIT_TIME.toMillis());
+                    return DistributedLockService.Acquisition.TIMED_OUT;
+                })
+                .onErrorResume(e -> {
+                    log.error("Error acquiring lock for key: {}. Error: {}", key, e.getMessage());
+                    return Mono.just(DistributedLockService.Acquisition.UNAVAILABLE);
+                });
+    }
+
+    /**
+     * Release a lock held by the given owner
+     */
+    public Mono<Void> releaseLock(String key, long ownerId) {
+        return unlock(keyNames.lockNames(key), ownerId)
+                .doOnSuccess(ignored -> log.debug("Lock released for key: {}", key));
+    }
+
+    /**
+     * Take every lock, or none of them
+     */
+    private Mono<Boolean> tryLock(List<String> lockNames, long ownerId) {
+        if (lockNames.isEmpty()) {
+            return Mono.just(true);
+        }
+        List<String> rest = lockNames.subList(1, lockNames.size());
+        return redissonReactiveClient.getLock(lockNames.get(0))
+                .tryLock(
+                    DistributedLockService.DEFAULT_WAIT_TIME.toMillis(),
+                    DistributedLockService.DEFAULT_LEASE_TIME.toMillis(),
+                    TimeUnit.MILLISECONDS,
+                    ownerId
+                )
+                .flatMap(acquired -> !acquired
+                        ? Mono.just(false)
+                        : tryLock(rest, ownerId)
+                                .onErrorResume(e -> unlock(lockNames.subList(0, 1), ownerId).then(Mono.error(e)))
+                                .flatMap(all -> all
+                                        ? Mono.just(true)
+                                        : unlock(lockNames.subList(0, 1), ownerId).thenReturn(false)));
+    }
+
+    private Mono<Void> unlock(List<String> lockNames, long ownerId) {
+        return Flux.fromIterable(lockNames.reversed())
+                .concatMap(lockName -> redissonReactiveClient.getLock(lockName)
+                        .unlock(ownerId)
+                        .onErrorResume(e -> {
+                            log.warn("Error releasing lock: {}. Error: {}", lockName, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+}
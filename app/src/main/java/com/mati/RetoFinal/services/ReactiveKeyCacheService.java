@@ -0,0 +1,243 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.KeyCacheDto;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Non-blocking counterpart of KeyCacheService for the reactive stack.
+ * Reads and writes the same Redis entries (same keys, codecs and storage mode)
+ * and shares the near cache and hit/miss counters, so both stacks can run side by side.
+ * Like KeyCacheService it never fails on Redis errors, a failed lookup is a miss.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveKeyCacheService {
+
+    private static final byte[] TOMBSTONE = "1".getBytes(StandardCharsets.UTF_8);
+
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisTemplate;
+    private final KeyCacheService keyCacheService;
+    private final NearCacheService nearCache;
+    private final RedisKeyNames keyNames;
+
+    /**
+     * Get a KeyCacheDto from cache (near cache, then Redis)
+     */
+    public Mono<KeyCacheDto> getKeyDto(String key) {
+        Optional<KeyCacheDto> nearHit = nearCache.get(key);
+        if (nearHit.isPresent()) {
+            log.debug("Near cache hit for key: {}", key);
+            return Mono.just(nearHit.get());
+        }
+
+        return readEntry(key)
+                .doOnNext(dto -> {
+                    keyCacheService.recordRedisLookups(1, 0);
+                    nearCache.put(key, dto);
+                })
+                .switchIfEmpty(Mono.fromRunnable(() -> keyCacheService.recordRedisLookups(0, 1)))
+                .onErrorResume(e -> {
+                    log.error("Error getting KeyCacheDto from cache for key: {}. Error: {}", key, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Get several KeyCacheDtos at once: near cache first, then one MGET
+     * (or concurrent HGETALLs in hash storage mode, pipelined by Lettuce)
+     * @return the cached entries, keyed by key value (misses are absent)
+     */
+    public Mono<Map<String, KeyCacheDto>> getKeyDtos(Collection<String> keys) {
+        Map<String, KeyCacheDto> found = new HashMap<>();
+        List<String> remaining = new ArrayList<>();
+        for (String key : keys) {
+            Optional<KeyCacheDto> nearHit = nearCache.get(key);
+            if (nearHit.isPresent()) {
+                found.put(key, nearHit.get());
+            } else {
+                remaining.add(key);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return Mono.just(found);
+        }
+
+        Flux<Map.Entry<String, KeyCacheDto>> entries = keyCacheService.isHashStorage()
+                ? Flux.fromIterable(remaining).flatMap(key -> readEntry(key).map(dto -> Map.entry(key, dto)))
+                : reactiveRedisTemplate.opsForValue()
+                        .multiGet(remaining.stream().map(keyNames::cacheKey).toList())
+                        .flatMapIterable(values -> {
+                            List<Map.Entry<String, KeyCacheDto>> decoded = new ArrayList<>();
+                            for (int i = 0; i < remaining.size(); i++) {
+                                KeyCacheDto dto = keyCacheService.decode(values.get(i));
+                                if (dto != null) {
+                                    decoded.add(Map.entry(remaining.get(i), dto));
+                                }
+                            }
+                            return decoded;
+                        });
+
+        return entries
+                .collectList()
+                .map(hits -> {
+                    keyCacheService.recordRedisLookups(hits.size(), remaining.size() - hits.size());
+                    for (Map.Entry<String, KeyCacheDto> hit : hits) {
+                        nearCache.put(hit.getKey(), hit.getValue());
+                        found.put(hit.getKey(), hit.getValue());
+                    }
+                    return found;
+                })
+                .onErrorResume(e -> {
+                    log.error("Error getting {} values from cache. Error: {}", remaining.size(), e.getMessage());
+                    return Mono.just(found);
+                });
+    }
+
+    /**
+     * Put a KeyCacheDto into cache (encoded with the configured codec/storage)
+     */
+    public Mono<Void> putKeyDto(String key, KeyCacheDto dto) {
+        nearCache.put(key, dto);
+        String cacheKey = keyNames.cacheKey(key);
+
+        Mono<?> write = keyCacheService.isHashStorage()
+                ? reactiveRedisTemplate.execute(KeyCacheService.PUT_HASH, List.of(cacheKey),
+                        Arrays.asList(keyCacheService.hashArgs(dto))).then()
+                : reactiveRedisTemplate.opsForValue().set(cacheKey, keyCacheService.encode(dto), KeyCacheService.entryTtl());
+
+        return write
+                .doOnSuccess(ignored -> log.debug("Cached KeyCacheDto for key: {}", key))
+                .onErrorResume(e -> {
+                    log.error("Error putting KeyCacheDto into cache for key: {}. Error: {}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Put several KeyCacheDtos into cache concurrently
+     */
+    public Mono<Void> putKeyDtos(Map<String, KeyCacheDto> dtos) {
+        return Flux.fromIterable(dtos.entrySet())
+                .flatMap(entry -> putKeyDto(entry.getKey(), entry.getValue()))
+                .then();
+    }
+
+    /**
+     * Evict a key from cache, including the near cache of every pod
+     */
+    public Mono<Void> evict(String key) {
+        Mono<Long> broadcast = nearCache.isEnabled()
+                ? reactiveRedisTemplate.convertAndSend(NearCacheService.INVALIDATION_CHANNEL, key.getBytes(StandardCharsets.UTF_8))
+                : Mono.empty();
+
+        // Redis first, so pods reloading on the broadcast cannot find the stale entry there
+        return reactiveRedisTemplate.delete(keyNames.cacheKeys(key).toArray(String[]::new))
+                .doOnNext(deleted -> log.debug("Evicted key from cache: {} ({} entries)", key, deleted))
+                .onErrorResume(e -> {
+                    log.error("Error evicting key from cache: {}. Error: {}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .then(Mono.fromRunnable(() -> nearCache.invalidateLocally(key)))
+                .then(broadcast)
+                .onErrorResume(e -> {
+                    log.error("Error publishing near cache invalidation for key: {}. Error: {}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Record that a key value is known not to exist (short-lived tombstone)
+     */
+    public Mono<Void> putTombstone(String key) {
+        return reactiveRedisTemplate.opsForValue()
+                .set(keyNames.tombstoneKey(key), TOMBSTONE, keyCacheService.negativeTtl())
+                .onErrorResume(e -> {
+                    log.error("Error putting tombstone into cache for key: {}. Error: {}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Check whether a tombstone exists for a key value
+     */
+    public Mono<Boolean> hasTombstone(String key) {
+        return reactiveRedisTemplate.opsForValue()
+                .get(keyNames.tombstoneKey(key))
+                .hasElement()
+                .onErrorResume(e -> {
+                    log.error("Error reading tombstone from cache for key: {}. Error: {}", key, e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Remove the tombstone of a key value (e.g. once it has been created)
+     */
+    public Mono<Void> evictTombstone(String key) {
+        return reactiveRedisTemplate.delete(keyNames.tombstoneKeys(key).toArray(String[]::new))
+                .onErrorResume(e -> {
+                    log.error("Error evicting tombstone from cache for key: {}. Error: {}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Check if cache is available
+     */
+    public Mono<Boolean> isAvailable() {
+        return reactiveRedisTemplate.execute(connection -> connection.ping())
+                .next()
+                .map(pong -> true)
+                .onErrorResume(e -> {
+                    log.warn("Redis cache is not available: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Read an entry in the configured storage mode, or with the other command if it
+     * was written in the other mode (WRONGTYPE)
+     */
+    private Mono<KeyCacheDto> readEntry(String key) {
+        String cacheKey = keyNames.cacheKey(key);
+        boolean hash = keyCacheService.isHashStorage();
+        return readEntry(cacheKey, hash)
+                .onErrorResume(KeyCacheService::isWrongType, e -> readEntry(cacheKey, !hash));
+    }
+
+    private Mono<KeyCacheDto> readEntry(String cacheKey, boolean hash) {
+        if (hash) {
+            return hashOps().entries(cacheKey)
+                    .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                    .mapNotNull(keyCacheService::fromHash);
+        }
+        return reactiveRedisTemplate.opsForValue().get(cacheKey).mapNotNull(keyCacheService::decode);
+    }
+
+    private ReactiveHashOperations<String, byte[], byte[]> hashOps() {
+        return reactiveRedisTemplate.opsForHash();
+    }
+}
@@ -0,0 +1,458 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.BatchCreateKeyResponse;
+import com.mati.RetoFinal.dto.CreateKeyOutcome;
+import com.mati.RetoFinal.dto.CreateKeyRequest;
+import com.mati.RetoFinal.dto.CreateKeyResponse;
+import com.mati.RetoFinal.dto.EntityKeyResponse;
+import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.dto.KeyCursor;
+import com.mati.RetoFinal.dto.KeyEvent;
+import com.mati.RetoFinal.dto.KeyListFilter;
+import com.mati.RetoFinal.dto.KeyPageResponse;
+import com.mati.RetoFinal.dto.UpdateKeyRequest;
+import com.mati.RetoFinal.models.FinancialEntity;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.models.KeyStatus;
+import com.mati.RetoFinal.repositories.ReactiveKeyRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reactive counterpart of KeyService, active with the "reactive" profile.
+ * Same flows and responses, built on R2DBC, the reactive Redis client and
+ * Redisson reactive locks so no request ever blocks an event-loop thread.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveKeyService {
+
+    private static final String CREATE_STRATEGY_INSERT = "insert";
+    private static final int BATCH_INSERT_CONCURRENCY = 16;
+
+    private final ReactiveKeyRepository keyRepository;
+    private final ReactiveKeyCacheService keyCacheService;
+    private final ReactiveDistributedLockService lockService;
+    private final ReactiveNegativeLookupService negativeLookupService;
+    private final KeyValidator keyValidator;
+    private final RequestCoalescer requestCoalescer;
+    private final KeyListingService keyListingService;
+    private final FinancialEntityRegistry entityRegistry;
+    private final KeyOutboxService keyOutbox;
+    private final KeyEventPublisher eventPublisher;
+
+    @Value("${keys.create.strategy:lock}")
+    private String createStrategy;
+
+    @Value("${keys.batch.max-size:500}")
+    private int maxBatchSize;
+
+    @Value("${keys.create.retry-after.lock-timeout:1s}")
+    private Duration lockTimeoutRetryAfter;
+
+    @Value("${keys.create.retry-after.unavailable:5s}")
+    private Duration unavailableRetryAfter;
+
+    /**
+     * Create a key or return existing one (same flow as KeyService.createKey)
+     */
+    public Mono<CreateKeyResponse> createKey(CreateKeyRequest request) {
+        long startTime = System.nanoTime();
+
+        if (!keyValidator.validateKeyFormat(request.getKeyValue())) {
+            return Mono.just(CreateKeyResponse.rejected(
+                CreateKeyOutcome.INVALID, "Invalid key format", calculateLatencyMs(startTime)));
+        }
+
+        return keyCacheService.getKeyDto(request.getKeyValue())
+            .map(dto -> {
+                double latencyMs = calculateLatencyMs(startTime);
+                log.info("Key found in cache: {} (latency: {}ms)", request.getKeyValue(), latencyMs);
+                return CreateKeyResponse.exists(dto.getKeyId(), dto.getKeyValue(), latencyMs, "cache");
+            })
+            .switchIfEmpty(Mono.defer(() -> requestCoalescer.executeReactive(
+                "create",
+                coalescingKey(request),
+                () -> CREATE_STRATEGY_INSERT.equalsIgnoreCase(createStrategy)
+                    ? createWithInsert(request, startTime)
+                    : createWithLock(request, startTime),
+                leaderResponse -> asCoalescedResponse(leaderResponse, startTime)
+            )))
+            .onErrorResume(e -> Mono.just(failed(e, request.getKeyValue(), startTime)));
+    }
+
+    /**
+     * Response for a pipeline that failed: Redis or the database unreachable is
+     * answered with 503 and logged without a stack trace
+     */
+    private CreateKeyResponse failed(Throwable e, String keyValue, long startTime) {
+        double latencyMs = calculateLatencyMs(startTime);
+        if (e instanceof IllegalArgumentException) {
+            log.warn("Validation error creating key: {}", e.getMessage());
+            return CreateKeyResponse.rejected(CreateKeyOutcome.INVALID, e.getMessage(), latencyMs);
+        }
+        if (BackendFailures.isBackendDown(e)) {
+            log.warn("Backend unavailable creating key: {}. Error: {}", keyValue, e.getMessage());
+            return CreateKeyResponse.rejected(CreateKeyOutcome.BACKEND_DOWN,
+                "Service temporarily unavailable, please retry", latencyMs, unavailableRetryAfter);
+        }
+        log.error("Error creating key: {}", e.getMessage(), e);
+        return CreateKeyResponse.rejected(CreateKeyOutcome.ERROR, "Internal error", latencyMs);
+    }
+
+    /**
+     * Lock strategy: distributed lock per key value, released once the pipeline
+     * completes, fails or is cancelled
+     */
+    private Mono<CreateKeyResponse> createWithLock(CreateKeyRequest request, long startTime) {
+        String keyValue = request.getKeyValue();
+        long ownerId = lockService.newOwnerId();
+
+        return Mono.usingWhen(
+            lockService.acquireLock(keyValue, ownerId),
+            acquisition -> switch (acquisition) {
+                case ACQUIRED -> createLocked(request, startTime);
+                case TIMED_OUT -> Mono.just(CreateKeyResponse.rejected(CreateKeyOutcome.LOCK_TIMEOUT,
+                    "Key is being registered by another request, please retry", calculateLatencyMs(startTime), lockTimeoutRetryAfter));
+                // No lock without Redis: the unique index on key_value arbitrates instead
+                case UNAVAILABLE -> createWithInsert(request, startTime);
+            },
+            acquisition -> release(acquisition, keyValue, ownerId),
+            (acquisition, e) -> release(acquisition, keyValue, ownerId),
+            acquisition -> release(acquisition, keyValue, ownerId)
+        );
+    }
+
+    private Mono<Void> release(DistributedLockService.Acquisition acquisition, String keyValue, long ownerId) {
+        return acquisition == DistributedLockService.Acquisition.ACQUIRED
+            ? lockService.releaseLock(keyValue, ownerId)
+            : Mono.empty();
+    }
+
+    /**
+     * Double-check in database while holding the lock, then insert
+     */
+    private Mono<CreateKeyResponse> createLocked(CreateKeyRequest request, long startTime) {
+        return keyRepository.findWithEntityByKeyValue(request.getKeyValue())
+            .filter(Key::isActive)
+            .flatMap(key -> keyCacheService.putKeyDto(request.getKeyValue(), KeyCacheDto.fromEntity(key))
+                .then(Mono.fromSupplier(() -> {
+                    double latencyMs = calculateLatencyMs(startTime);
+                    log.info("Key found in database: {} (latency: {}ms)", request.getKeyValue(), latencyMs);
+                    return CreateKeyResponse.exists(key.getKeyId(), key.getKeyValue(), latencyMs, "database");
+                })))
+            .switchIfEmpty(Mono.defer(() -> createWithInsert(request, startTime)));
+    }
+
+    /**
+     * Insert strategy: INSERT ... ON CONFLICT DO NOTHING, reading the existing row back only on conflict
+     */
+    private Mono<CreateKeyResponse> createWithInsert(CreateKeyRequest request, long startTime) {
+        String keyValue = request.getKeyValue();
+
+        return findActiveEntity(request.getEntityCode()).flatMap(entity -> {
+            UUID keyId = UUID.randomUUID();
+            LocalDateTime createdAt = LocalDateTime.now();
+
+            return keyRepository.insertIfAbsent(keyId, keyValue, request.getAccountNumber(),
+                    request.getOwnerDocument(), entity.getEntityId(), createdAt)
+                .flatMap(inserted -> {
+                    if (inserted == 1) {
+                        KeyCacheDto dto = KeyCacheDto.builder()
+                            .keyId(keyId)
+                            .keyValue(keyValue)
+                            .accountNumber(request.getAccountNumber())
+                            .ownerDocument(request.getOwnerDocument())
+                            .status(KeyStatus.ACTIVE)
+                            .entityCode(entity.getEntityCode())
+                            .createdAt(createdAt)
+                            .build();
+                        return onKeyCreated(dto).then(Mono.fromSupplier(() -> {
+                            double latencyMs = calculateLatencyMs(startTime);
+                            log.info("New key created: {} (latency: {}ms)", keyValue, latencyMs);
+                            return CreateKeyResponse.created(keyId, keyValue, latencyMs);
+                        }));
+                    }
+
+                    // Conflict: the key value is already registered
+                    return keyRepository.findWithEntityByKeyValue(keyValue)
+                        .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                            "Key conflicted on insert but was not found: " + keyValue)))
+                        .flatMap(key -> {
+                            if (!key.isActive()) {
+                                return Mono.just(CreateKeyResponse.rejected(CreateKeyOutcome.CONFLICT,
+                                    "Key already registered with status " + key.getStatus(), calculateLatencyMs(startTime)));
+                            }
+                            return keyCacheService.putKeyDto(keyValue, KeyCacheDto.fromEntity(key))
+                                .then(Mono.fromSupplier(() -> {
+                                    double latencyMs = calculateLatencyMs(startTime);
+                                    log.info("Key found in database: {} (latency: {}ms)", keyValue, latencyMs);
+                                    return CreateKeyResponse.exists(key.getKeyId(), key.getKeyValue(), latencyMs, "database");
+                                }));
+                        });
+                });
+        }).switchIfEmpty(Mono.fromSupplier(() -> CreateKeyResponse.rejected(CreateKeyOutcome.ENTITY_MISSING,
+            "Financial entity not found or inactive: " + request.getEntityCode(), calculateLatencyMs(startTime))));
+    }
+
+    /**
+     * Get an active financial entity by code (registry snapshot, then database), empty if unknown or inactive
+     */
+    private Mono<FinancialEntity> findActiveEntity(String entityCode) {
+        return Mono.justOrEmpty(entityRegistry.findActiveCached(entityCode))
+            .switchIfEmpty(Mono.defer(() -> keyRepository.findActiveEntityByCode(entityCode)));
+    }
+
+    private String coalescingKey(CreateKeyRequest request) {
+        return String.join("|",
+            request.getKeyValue(),
+            String.valueOf(request.getAccountNumber()),
+            String.valueOf(request.getOwnerDocument()),
+            request.getEntityCode());
+    }
+
+    private CreateKeyResponse asCoalescedResponse(CreateKeyResponse leaderResponse, long startTime) {
+        double latencyMs = calculateLatencyMs(startTime);
+        if (leaderResponse.isCreated()) {
+            return CreateKeyResponse.exists(leaderResponse.getKeyId(), leaderResponse.getKeyValue(), latencyMs, "database");
+        }
+        if (leaderResponse.isExists()) {
+            return CreateKeyResponse.exists(leaderResponse.getKeyId(), leaderResponse.getKeyValue(), latencyMs, leaderResponse.getSource());
+        }
+        return CreateKeyResponse.rejected(leaderResponse.getOutcome(), leaderResponse.getMessage(), latencyMs,
+            leaderResponse.getRetryAfter());
+    }
+
+    private Mono<Void> onKeyCreated(KeyCacheDto dto) {
+        return negativeLookupService.recordCreated(dto.getKeyValue())
+            .then(keyCacheService.putKeyDto(dto.getKeyValue(), dto))
+            .then(Mono.fromRunnable(() -> eventPublisher.publishKeyRegistered(dto))
+                .subscribeOn(Schedulers.boundedElastic()))
+            .then();
+    }
+
+    /**
+     * Check or create several keys at once.
+     * 1. Validate format
+     * 2. Resolve cached keys with a single multi-get
+     * 3. Resolve the rest with a single ANY(...) query
+     * 4. Insert the missing ones with concurrent INSERT ... ON CONFLICT DO NOTHING
+     * 5. Cache everything resolved from the database
+     */
+    public Mono<BatchCreateKeyResponse> createKeys(List<CreateKeyRequest> requests) {
+        long startTime = System.nanoTime();
+
+        if (requests.size() > maxBatchSize) {
+            return Mono.error(new IllegalArgumentException(
+                "Batch size " + requests.size() + " exceeds maximum " + maxBatchSize));
+        }
+
+        Map<String, CreateKeyResponse> resolved = new ConcurrentHashMap<>();
+        Map<String, CreateKeyRequest> pending = new LinkedHashMap<>();
+        Map<String, KeyCacheDto> toCache = new ConcurrentHashMap<>();
+        for (CreateKeyRequest request : requests) {
+            if (keyValidator.validateKeyFormat(request.getKeyValue())) {
+                pending.putIfAbsent(request.getKeyValue(), request);
+            }
+        }
+
+        // Step 2: Cache
+        return keyCacheService.getKeyDtos(pending.keySet())
+            .doOnNext(cached -> cached.forEach((keyValue, dto) -> {
+                resolved.put(keyValue, CreateKeyResponse.exists(dto.getKeyId(), keyValue, calculateLatencyMs(startTime), "cache"));
+                pending.remove(keyValue);
+            }))
+            // Step 3: Database
+            .thenMany(Flux.defer(() -> pending.isEmpty()
+                ? Flux.<Key>empty()
+                : keyRepository.findWithEntityByKeyValueIn(List.copyOf(pending.keySet()))))
+            .doOnNext(key -> {
+                pending.remove(key.getKeyValue());
+                if (key.isActive()) {
+                    toCache.put(key.getKeyValue(), KeyCacheDto.fromEntity(key));
+                    resolved.put(key.getKeyValue(), CreateKeyResponse.exists(
+                        key.getKeyId(), key.getKeyValue(), calculateLatencyMs(startTime), "database"));
+                } else {
+                    resolved.put(key.getKeyValue(), CreateKeyResponse.rejected(CreateKeyOutcome.CONFLICT,
+                        "Key already registered with status " + key.getStatus(), calculateLatencyMs(startTime)));
+                }
+            })
+            // Step 4: Insert the missing keys
+            .thenMany(Flux.defer(() -> Flux.fromIterable(new ArrayList<>(pending.values()))))
+            .flatMap(request -> createWithInsert(request, startTime)
+                .onErrorResume(e -> Mono.just(failed(e, request.getKeyValue(), startTime)))
+                .doOnNext(response -> resolved.put(request.getKeyValue(), response)),
+                BATCH_INSERT_CONCURRENCY)
+            // Step 5: Cache
+            .then(Mono.defer(() -> keyCacheService.putKeyDtos(toCache)))
+            .then(Mono.fromSupplier(() -> {
+                List<CreateKeyResponse> results = new ArrayList<>(requests.size());
+                for (CreateKeyRequest request : requests) {
+                    CreateKeyResponse result = resolved.get(request.getKeyValue());
+                    results.add(result != null ? result : CreateKeyResponse.rejected(
+                        CreateKeyOutcome.INVALID, "Invalid key format", calculateLatencyMs(startTime)));
+                }
+                double latencyMs = calculateLatencyMs(startTime);
+                log.info("Batch check-or-create for {} keys completed (latency: {}ms)", requests.size(), latencyMs);
+                return BatchCreateKeyResponse.of(results, latencyMs);
+            }));
+    }
+
+    /**
+     * Find a key by its value (cache, negative lookup, then database)
+     */
+    public Mono<EntityKeyResponse> findByValue(String keyValue) {
+        return keyCacheService.getKeyDto(keyValue)
+            .map(dto -> {
+                log.info("Key found in cache: {}", keyValue);
+                return EntityKeyResponse.fromCache(dto);
+            })
+            .switchIfEmpty(Mono.defer(() -> negativeLookupService.isKnownAbsent(keyValue)
+                .flatMap(absent -> {
+                    if (absent) {
+                        log.info("Key not found (negative lookup): {}", keyValue);
+                        return Mono.empty();
+                    }
+                    return requestCoalescer.executeReactive("lookup", keyValue,
+                        () -> loadFromDatabase(keyValue), UnaryOperator.identity());
+                })));
+    }
+
+    private Mono<EntityKeyResponse> loadFromDatabase(String keyValue) {
+        return keyRepository.findWithEntityByKeyValue(keyValue)
+            .flatMap(key -> keyCacheService.putKeyDto(keyValue, KeyCacheDto.fromEntity(key))
+                .then(Mono.fromSupplier(() -> {
+                    log.info("Key found in database and cached: {}", keyValue);
+                    return EntityKeyResponse.fromEntity(key, "database");
+                })))
+            .switchIfEmpty(Mono.defer(() -> {
+                log.info("Key not found: {}", keyValue);
+                return negativeLookupService.recordMiss(keyValue).then(Mono.empty());
+            }));
+    }
+
+    /**
+     * List one page of keys (same filters, limits and cursors as KeyListingService.listKeys)
+     */
+    public Mono<KeyPageResponse> listKeys(KeyListFilter filter, String cursor, Integer limit) {
+        int pageSize;
+        KeyCursor after;
+        try {
+            keyListingService.validate(filter);
+            pageSize = keyListingService.pageSize(limit);
+            after = cursor == null || cursor.isBlank() ? null : KeyCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+
+        // One extra row tells whether there is a next page
+        return keyRepository.findByFilter(filter, after, pageSize + 1)
+            .collectList()
+            .map(keys -> {
+                boolean hasNext = keys.size() > pageSize;
+                List<Key> page = hasNext ? keys.subList(0, pageSize) : keys;
+                Key last = page.isEmpty() ? null : page.get(page.size() - 1);
+                return KeyPageResponse.of(
+                    page.stream().map(key -> EntityKeyResponse.fromEntity(key, "database")).toList(),
+                    hasNext && last != null ? new KeyCursor(last.getCreatedAt(), last.getKeyId()) : null);
+            });
+    }
+
+    /**
+     * Every key matching the filter, emitted as rows arrive from the database
+     * @throws IllegalArgumentException unless the filter is one of the supported combinations,
+     *         so callers can reject it before the response is committed
+     */
+    public Flux<EntityKeyResponse> exportKeys(KeyListFilter filter) {
+        keyListingService.validate(filter);
+        return keyRepository.findByFilter(filter, null, 0)
+            .map(key -> EntityKeyResponse.fromEntity(key, "database"));
+    }
+
+    /**
+     * Update a key by its ID
+     */
+    public Mono<EntityKeyResponse> updateKeyByKeyId(UUID keyId, UpdateKeyRequest request) {
+        return keyRepository.findWithEntityById(keyId).flatMap(key -> {
+            KeyStatus previousStatus = key.getStatus();
+            if (request.getAccountNumber() != null) {
+                key.setAccountNumber(request.getAccountNumber());
+            }
+            if (request.getOwnerDocument() != null) {
+                key.setOwnerDocument(request.getOwnerDocument());
+            }
+            if (request.getStatus() != null) {
+                try {
+                    key.setStatus(KeyStatus.valueOf(request.getStatus().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Invalid status provided: {}", request.getStatus());
+                }
+            }
+            key.setUpdatedAt(LocalDateTime.now());
+
+            String eventType = key.getStatus() == KeyStatus.SUSPENDED && previousStatus != KeyStatus.SUSPENDED
+                ? KeyEvent.KEY_SUSPENDED
+                : KeyEvent.KEY_UPDATED;
+            return update(key, eventType)
+                .then(Mono.fromSupplier(() -> {
+                    log.info("Key updated: {}", keyId);
+                    return EntityKeyResponse.fromEntity(key, "database");
+                }));
+        });
+    }
+
+    /**
+     * Soft delete a key by its ID
+     */
+    public Mono<Boolean> deleteKeyById(UUID keyId) {
+        return keyRepository.findWithEntityById(keyId)
+            .flatMap(key -> {
+                key.delete();
+                key.setUpdatedAt(LocalDateTime.now());
+                return update(key, KeyEvent.KEY_DELETED)
+                    .then(Mono.fromSupplier(() -> {
+                        log.info("Key soft deleted: {}", keyId);
+                        return true;
+                    }));
+            })
+            .defaultIfEmpty(false);
+    }
+
+    /**
+     * Write back a key with its outbox entry, the relay evicts it and publishes the event.
+     * With the outbox disabled the key is evicted right after the update instead.
+     */
+    private Mono<Void> update(Key key, String eventType) {
+        if (!keyOutbox.isEnabled()) {
+            return keyRepository.update(key)
+                .then(keyCacheService.evict(key.getKeyValue()));
+        }
+        String payload = keyOutbox.toPayload(KeyEvent.of(eventType, KeyCacheDto.fromEntity(key)));
+        return keyRepository.updateWithOutbox(key, eventType, payload)
+            .doOnSuccess(written -> keyOutbox.wakeUp())
+            .then();
+    }
+
+    private double calculateLatencyMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,64 @@
+package com.mati.RetoFinal.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Negative lookups for the reactive stack, on the same Bloom filter generations,
+ * tombstones and counters as NegativeLookupService.
+ * Redisson has no reactive Bloom filter API, so filter calls run on the
+ * bounded elastic scheduler; tombstones use the reactive Redis client.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveNegativeLookupService {
+
+    private final NegativeLookupService negativeLookupService;
+    private final ReactiveKeyCacheService reactiveKeyCacheService;
+
+    /**
+     * Emits true if the key value is known not to exist, fails open like the blocking variant
+     */
+    public Mono<Boolean> isKnownAbsent(String keyValue) {
+        if (!negativeLookupService.isEnabled()) {
+            return Mono.just(false);
+        }
+        return Mono.fromCallable(() -> negativeLookupService.bloomRejects(keyValue))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(rejected -> rejected
+                        ? Mono.just(true)
+                        : reactiveKeyCacheService.hasTombstone(keyValue)
+                                .doOnNext(tombstone -> {
+                                    if (tombstone) {
+                                        negativeLookupService.countTombstoneHit();
+                                    }
+                                }));
+    }
+
+    /**
+     * Record that the database confirmed the key value does not exist
+     */
+    public Mono<Void> recordMiss(String keyValue) {
+        if (!negativeLookupService.isEnabled()) {
+            return Mono.empty();
+        }
+        negativeLookupService.countFalsePositive();
+        return reactiveKeyCacheService.putTombstone(keyValue);
+    }
+
+    /**
+     * Register a newly created key value in the filters and drop its tombstone
+     */
+    public Mono<Void> recordCreated(String keyValue) {
+        if (!negativeLookupService.isEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> negativeLookupService.addToFilters(keyValue))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(reactiveKeyCacheService.evictTombstone(keyValue));
+    }
+}
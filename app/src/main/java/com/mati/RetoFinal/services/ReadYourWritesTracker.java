@@ -0,0 +1,50 @@
+package com.mati.RetoFinal.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Remembers key values written by this pod for the replica lag window,
+ * so follow-up reads can be pinned to the Aurora writer.
+ */
+@Service
+@Slf4j
+public class ReadYourWritesTracker {
+
+    @Value("${datasource.routing.read-your-writes-window:2s}")
+    private Duration window;
+
+    @Value("${datasource.routing.read-your-writes-max-size:100000}")
+    private long maximumSize;
+
+    private Cache<String, Boolean> recentWrites;
+
+    @PostConstruct
+    void init() {
+        recentWrites = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    /**
+     * Record a write to a key value
+     */
+    public void recordWrite(String keyValue) {
+        recentWrites.put(keyValue, Boolean.TRUE);
+    }
+
+    /**
+     * Check whether a key value was written within the replica lag window
+     */
+    public boolean isRecentlyWritten(String keyValue) {
+        return recentWrites.getIfPresent(keyValue) != null;
+    }
+}
@@ -0,0 +1,343 @@
+package com.mati.RetoFinal.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around the cache and lock calls to Redis.
+ *
+ * Each call is recorded in a sliding window of the last calls: once the share of
+ * failed or slow calls crosses its threshold the circuit opens and callers skip
+ * Redis (cache miss, no lock) instead of waiting for the client timeout. After
+ * open-duration a few probe calls are let through (half-open) and their outcome
+ * closes the circuit or opens it again.
+ *
+ * While the circuit is not closed every request falls through to PostgreSQL, so
+ * that work is limited to db-max-concurrency requests per pod.
+ *
+ * Every Redis call goes through here, so nothing is locked: the state and its window
+ * are one immutable Circuit replaced by compare-and-set on each transition, and
+ * outcomes are recorded in the window with atomic updates. Calls recorded into a
+ * window that was just replaced are dropped, like calls completing while open.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RedisCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${redis.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${redis.circuit-breaker.window-size:100}")
+    private int windowSize;
+
+    @Value("${redis.circuit-breaker.minimum-calls:20}")
+    private int minimumCalls;
+
+    @Value("${redis.circuit-breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${redis.circuit-breaker.slow-call-duration:250ms}")
+    private Duration slowCallDuration;
+
+    @Value("${redis.circuit-breaker.slow-call-rate-threshold:80}")
+    private int slowCallRateThreshold;
+
+    @Value("${redis.circuit-breaker.open-duration:5s}")
+    private Duration openDuration;
+
+    @Value("${redis.circuit-breaker.half-open-calls:10}")
+    private int halfOpenCalls;
+
+    @Value("${redis.circuit-breaker.db-max-concurrency:32}")
+    private int dbMaxConcurrency;
+
+    @Value("${redis.circuit-breaker.db-max-wait:100ms}")
+    private Duration dbMaxWait;
+
+    private final AtomicReference<Circuit> circuit = new AtomicReference<>();
+
+    private Semaphore dbPermits;
+
+    private Counter successes;
+    private Counter errors;
+    private Counter slowSuccesses;
+    private Counter notPermitted;
+    private Counter dbRejected;
+
+    @PostConstruct
+    void init() {
+        circuit.set(new Circuit(State.CLOSED, System.nanoTime(), windowSize));
+        dbPermits = new Semaphore(dbMaxConcurrency);
+
+        successes = Counter.builder("keys.redis.breaker.calls").tag("result", "success").register(meterRegistry);
+        slowSuccesses = Counter.builder("keys.redis.breaker.calls").tag("result", "slow").register(meterRegistry);
+        errors = Counter.builder("keys.redis.breaker.calls").tag("result", "error").register(meterRegistry);
+        notPermitted = Counter.builder("keys.redis.breaker.calls").tag("result", "not_permitted").register(meterRegistry);
+        dbRejected = Counter.builder("keys.redis.breaker.db.rejected").register(meterRegistry);
+        for (State candidate : State.values()) {
+            Gauge.builder("keys.redis.breaker.state", this, breaker -> breaker.getState() == candidate ? 1 : 0)
+                    .tag("state", candidate.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("keys.redis.breaker.db.in.use", this, breaker -> dbMaxConcurrency - breaker.dbPermits.availablePermits())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether a Redis call may be attempted now. Every permitted call must be
+     * followed by onSuccess or onError (or go through call).
+     */
+    public boolean tryAcquirePermission() {
+        Circuit current = circuit.get();
+        if (!enabled || current.state == State.CLOSED) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (current.state == State.OPEN && now - current.since >= openDuration.toNanos()) {
+            current = transitionTo(current, State.HALF_OPEN, now);
+        }
+        if (current.state == State.HALF_OPEN) {
+            // Probes whose outcome never came back would otherwise keep the circuit half-open
+            if (current.probesIssued.get() >= halfOpenCalls && now - current.since >= openDuration.toNanos()) {
+                current = transitionTo(current, State.HALF_OPEN, now);
+            }
+            if (current.state == State.HALF_OPEN && current.tryIssueProbe(halfOpenCalls)) {
+                return true;
+            }
+        }
+        if (current.state == State.CLOSED) {
+            return true;
+        }
+        notPermitted.increment();
+        return false;
+    }
+
+    /**
+     * Run a permitted Redis call and record its outcome, exceptions are rethrown
+     */
+    public <T> T call(Supplier<T> redisCall) {
+        long start = System.nanoTime();
+        try {
+            T result = redisCall.get();
+            onSuccess(start);
+            return result;
+        } catch (RuntimeException e) {
+            onError(start);
+            throw e;
+        }
+    }
+
+    public void run(Runnable redisCall) {
+        call(() -> {
+            redisCall.run();
+            return null;
+        });
+    }
+
+    /**
+     * Record a Redis call started at startNanos that completed
+     */
+    public void onSuccess(long startNanos) {
+        boolean isSlow = System.nanoTime() - startNanos >= slowCallDuration.toNanos();
+        (isSlow ? slowSuccesses : successes).increment();
+        record(false, isSlow);
+    }
+
+    /**
+     * Record a Redis call started at startNanos that failed
+     */
+    public void onError(long startNanos) {
+        errors.increment();
+        record(true, System.nanoTime() - startNanos >= slowCallDuration.toNanos());
+    }
+
+    /**
+     * Run database work that replaces a Redis answer. While the circuit is not closed
+     * at most db-max-concurrency such calls run at once, the others wait up to
+     * db-max-wait and are then rejected as if the database were unavailable.
+     */
+    public <T> T limitDatabaseFallback(Supplier<T> dbWork) {
+        if (!enabled || getState() == State.CLOSED) {
+            return dbWork.get();
+        }
+        boolean acquired;
+        try {
+            acquired = dbPermits.tryAcquire(dbMaxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            dbRejected.increment();
+            throw new DataAccessResourceFailureException(
+                    "Redis circuit is " + getState() + " and the database fallback is saturated");
+        }
+        try {
+            return dbWork.get();
+        } finally {
+            dbPermits.release();
+        }
+    }
+
+    public State getState() {
+        return circuit.get().state;
+    }
+
+    public Map<String, Object> getStats() {
+        Circuit current = circuit.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("state", current.state);
+        stats.put("windowCalls", current.recorded());
+        stats.put("failureRate", current.failureRate());
+        stats.put("slowCallRate", current.slowCallRate());
+        stats.put("notPermitted", (long) notPermitted.count());
+        stats.put("dbFallbackInUse", dbMaxConcurrency - dbPermits.availablePermits());
+        stats.put("dbFallbackRejected", (long) dbRejected.count());
+        return stats;
+    }
+
+    private void record(boolean isFailure, boolean isSlow) {
+        Circuit current = circuit.get();
+        if (!enabled || current.state == State.OPEN) {
+            return;
+        }
+        current.record(isFailure, isSlow);
+
+        int required = current.state == State.HALF_OPEN ? Math.min(halfOpenCalls, windowSize) : minimumCalls;
+        if (current.recorded() < required) {
+            return;
+        }
+        boolean tripped = current.failureRate() >= failureRateThreshold
+                || current.slowCallRate() >= slowCallRateThreshold;
+        if (tripped) {
+            transitionTo(current, State.OPEN, System.nanoTime());
+        } else if (current.state == State.HALF_OPEN) {
+            transitionTo(current, State.CLOSED, System.nanoTime());
+        }
+    }
+
+    /**
+     * Replace expected with a fresh circuit in the target state, unless another
+     * thread replaced it first
+     * @return the circuit in effect afterwards
+     */
+    private Circuit transitionTo(Circuit expected, State target, long now) {
+        Circuit next = new Circuit(target, now, windowSize);
+        if (!circuit.compareAndSet(expected, next)) {
+            return circuit.get();
+        }
+        State previous = expected.state;
+        if (previous != target) {
+            if (target == State.OPEN) {
+                log.warn("Redis circuit {} -> OPEN (failure rate {}%, slow call rate {}% over {} calls)",
+                        previous, expected.failureRate(), expected.slowCallRate(), expected.recorded());
+            } else {
+                log.info("Redis circuit {} -> {}", previous, target);
+            }
+            Counter.builder("keys.redis.breaker.transitions")
+                    .tag("from", previous.name().toLowerCase())
+                    .tag("to", target.name().toLowerCase())
+                    .register(meterRegistry)
+                    .increment();
+        }
+        return next;
+    }
+
+    /**
+     * One state of the circuit with the sliding window of the calls made in it:
+     * a ring of outcomes, with running totals adjusted by what each call displaces
+     */
+    private static final class Circuit {
+
+        private static final int RECORDED = 1;
+        private static final int FAILED = 2;
+        private static final int SLOW = 4;
+
+        private final State state;
+        private final long since;
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong next = new AtomicLong();
+        private final LongAdder recorded = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+        private final AtomicInteger probesIssued = new AtomicInteger();
+
+        Circuit(State state, long since, int windowSize) {
+            this.state = state;
+            this.since = since;
+            this.outcomes = new AtomicIntegerArray(windowSize);
+        }
+
+        void record(boolean isFailure, boolean isSlow) {
+            int outcome = RECORDED | (isFailure ? FAILED : 0) | (isSlow ? SLOW : 0);
+            int slot = (int) (next.getAndIncrement() % outcomes.length());
+            int displaced = outcomes.getAndSet(slot, outcome);
+            if (displaced == 0) {
+                recorded.increment();
+            }
+            failures.add(count(outcome, FAILED) - count(displaced, FAILED));
+            slowCalls.add(count(outcome, SLOW) - count(displaced, SLOW));
+        }
+
+        boolean tryIssueProbe(int halfOpenCalls) {
+            int issued;
+            do {
+                issued = probesIssued.get();
+                if (issued >= halfOpenCalls) {
+                    return false;
+                }
+            } while (!probesIssued.compareAndSet(issued, issued + 1));
+            return true;
+        }
+
+        int recorded() {
+            return recorded.intValue();
+        }
+
+        float failureRate() {
+            return rate(failures);
+        }
+
+        float slowCallRate() {
+            return rate(slowCalls);
+        }
+
+        private float rate(LongAdder count) {
+            int calls = recorded();
+            return calls == 0 ? 0.0f : count.sum() * 100.0f / calls;
+        }
+
+        private static int count(int outcome, int flag) {
+            return (outcome & flag) != 0 ? 1 : 0;
+        }
+    }
+}
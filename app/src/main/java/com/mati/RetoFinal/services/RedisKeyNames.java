@@ -0,0 +1,85 @@
+package com.mati.RetoFinal.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Redis names of everything kept per key value: cache entry, tombstone, lock and
+ * write-behind claim.
+ *
+ * Hash-tagged names (key:{v}) put all of them on one cluster slot. Pods from before
+ * the hash tags only know the plain names (key:v), so new names are only used once
+ * redis.hash-tagged-keys is switched on, after the last of those pods is gone.
+ * In both modes cache entries and tombstones are evicted, and locks taken, under both
+ * names, so pods on either side of a switch still evict each other's entries and
+ * exclude each other.
+ */
+@Component
+public class RedisKeyNames {
+
+    private static final String KEY_PREFIX = "key:";
+    private static final String NEGATIVE_PREFIX = "neg:key:";
+    private static final String LOCK_PREFIX = "lock:key:";
+    private static final String CLAIM_PREFIX = "claim:key:";
+
+    private final boolean hashTagged;
+
+    public RedisKeyNames(@Value("${redis.hash-tagged-keys:false}") boolean hashTagged) {
+        this.hashTagged = hashTagged;
+    }
+
+    public String cacheKey(String key) {
+        return name(KEY_PREFIX, key);
+    }
+
+    /**
+     * Cache entry names to delete on eviction, the one in use first
+     */
+    public List<String> cacheKeys(String key) {
+        return both(KEY_PREFIX, key);
+    }
+
+    public String tombstoneKey(String key) {
+        return name(NEGATIVE_PREFIX, key);
+    }
+
+    public List<String> tombstoneKeys(String key) {
+        return both(NEGATIVE_PREFIX, key);
+    }
+
+    /**
+     * Lock names to hold together, always in the same order so pods in either mode
+     * cannot deadlock on them
+     */
+    public List<String> lockNames(String key) {
+        return List.of(LOCK_PREFIX + key, LOCK_PREFIX + hashTag(key));
+    }
+
+    public String claimKey(String key) {
+        return name(CLAIM_PREFIX, key);
+    }
+
+    public boolean isHashTagged() {
+        return hashTagged;
+    }
+
+    private String name(String prefix, String key) {
+        return prefix + (hashTagged ? hashTag(key) : key);
+    }
+
+    private List<String> both(String prefix, String key) {
+        return hashTagged
+                ? List.of(prefix + hashTag(key), prefix + key)
+                : List.of(prefix + key, prefix + hashTag(key));
+    }
+
+    /**
+     * Wrap a key value in a cluster hash tag: only the part between braces is hashed,
+     * so the cache entry, tombstone and lock of a key value share one slot
+     */
+    static String hashTag(String key) {
+        return "{" + key + "}";
+    }
+}
@@ -0,0 +1,147 @@
+package com.mati.RetoFinal.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-process single-flight: concurrent calls with the same group and key share
+ * the result of the first caller (the leader) instead of each running the loader.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RequestCoalescer {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${coalescing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${coalescing.max-wait:10s}")
+    private Duration maxWait;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("keys.coalescing.in.flight", inFlight, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the loader once per group/key among concurrent callers
+     */
+    public <T> T execute(String group, String key, Supplier<T> loader) {
+        return execute(group, key, loader, UnaryOperator.identity());
+    }
+
+    /**
+     * Run the loader once per group/key among concurrent callers
+     * @param waiterView maps the leader's result to what coalesced waiters receive
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String group, String key, Supplier<T> loader, UnaryOperator<T> waiterView) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        String flightKey = group + ":" + key;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+
+        if (existing != null) {
+            counter(group, "waiter").increment();
+            try {
+                return waiterView.apply((T) existing.get(maxWait.toMillis(), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                log.warn("Coalesced {} call for key: {} timed out after {}, loading directly", group, key, maxWait);
+                return loader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for coalesced " + group + " call", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        counter(group, "leader").increment();
+        try {
+            T result = loader.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    /**
+     * Non-blocking variant for the reactive stack: waiters subscribe to the leader's
+     * result instead of parking a thread. An empty leader result is empty for waiters too.
+     * @param waiterView maps the leader's result to what coalesced waiters receive
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> executeReactive(String group, String key, Supplier<Mono<T>> loader, UnaryOperator<T> waiterView) {
+        if (!enabled) {
+            return Mono.defer(loader);
+        }
+
+        return Mono.defer(() -> {
+            String flightKey = group + ":" + key;
+            CompletableFuture<Object> flight = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+
+            if (existing != null) {
+                counter(group, "waiter").increment();
+                return Mono.fromFuture(existing, true)
+                        .map(result -> waiterView.apply((T) result))
+                        .timeout(maxWait, Mono.defer(() -> {
+                            log.warn("Coalesced {} call for key: {} timed out after {}, loading directly", group, key, maxWait);
+                            return loader.get();
+                        }))
+                        .onErrorResume(CancellationException.class, e -> loader.get());
+            }
+
+            counter(group, "leader").increment();
+            return loader.get()
+                    .doOnSuccess(flight::complete)
+                    .doOnError(flight::completeExceptionally)
+                    .doFinally(signal -> {
+                        inFlight.remove(flightKey, flight);
+                        // Leader cancelled: let waiters load on their own
+                        flight.completeExceptionally(new CancellationException());
+                    });
+        });
+    }
+
+    private Counter counter(String group, String role) {
+        return counters.computeIfAbsent(group + ":" + role, k -> Counter.builder("keys.coalescing.calls")
+                .tag("group", group)
+                .tag("role", role)
+                .register(meterRegistry));
+    }
+}
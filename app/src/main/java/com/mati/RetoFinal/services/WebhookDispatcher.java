@@ -0,0 +1,410 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mati.RetoFinal.dto.KeyEvent;
+import com.mati.RetoFinal.models.FinancialEntity;
+import com.mati.RetoFinal.models.WebhookDelivery;
+import com.mati.RetoFinal.models.WebhookDeliveryStatus;
+import com.mati.RetoFinal.repositories.WebhookDeliveryRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers key events to the webhook of their financial entity, off the request path.
+ *
+ * A single dispatcher thread consumes the key event log as the "webhooks" consumer
+ * group and writes each event to webhook_deliveries before acknowledging it and
+ * before any attempt is made, so neither a restart nor a crash loses it.
+ * The same thread claims due deliveries, groups them per entity into batches posted
+ * as one JSON array, and hands each batch to a per-entity bulkhead so a slow bank
+ * only ties up its own permits. Failed batches are retried with exponential backoff
+ * until the entity's maxRetries is spent, each attempt bounded by its timeoutMs.
+ *
+ * webhookAuthConfig, if set, is a JSON object of headers added to every request,
+ * e.g. {"Authorization": "Bearer ..."}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookDispatcher {
+
+    private static final String GROUP = "webhooks";
+    private static final int READ_BATCH_SIZE = 500;
+    private static final int DEFAULT_TIMEOUT_MS = 5000;
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final WebhookDeliveryRepository deliveryRepository;
+    private final KeyEventLog keyEventLog;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final FinancialEntityRegistry entityRegistry;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${webhooks.enabled:true}")
+    private boolean enabled;
+
+    @Value("${webhooks.batch-size:100}")
+    private int batchSize;
+
+    @Value("${webhooks.poll-interval:1s}")
+    private Duration pollInterval;
+
+    @Value("${webhooks.bulkhead.max-concurrent:4}")
+    private int maxConcurrentPerEntity;
+
+    @Value("${webhooks.backoff.initial:1s}")
+    private Duration initialBackoff;
+
+    @Value("${webhooks.backoff.max:5m}")
+    private Duration maxBackoff;
+
+    @Value("${webhooks.lease:2m}")
+    private Duration lease;
+
+    @Value("${HOSTNAME:}")
+    private String hostname;
+
+    private final ExecutorService dispatcherExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "webhook-dispatcher"));
+    private final ExecutorService deliveryExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("webhook-delivery-", 0).factory());
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(DEFAULT_TIMEOUT_MS))
+            .build();
+    private final Map<UUID, Semaphore> bulkheads = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+    private Consumer consumer;
+    private long nextPendingScan;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        consumer = Consumer.from(GROUP, hostname.isBlank() ? UUID.randomUUID().toString() : hostname);
+
+        Gauge.builder("keys.webhooks.saturated.entities", bulkheads, WebhookDispatcher::saturated)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            dispatcherExecutor.submit(this::run);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Unacknowledged events and in-flight claims are picked up again after the lease
+        dispatcherExecutor.shutdownNow();
+        deliveryExecutor.shutdownNow();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        try {
+            stats.put("pending", deliveryRepository.countByStatus(WebhookDeliveryStatus.PENDING));
+            stats.put("failed", deliveryRepository.countByStatus(WebhookDeliveryStatus.FAILED));
+        } catch (Exception e) {
+            log.error("Error counting webhook deliveries. Error: {}", e.getMessage());
+        }
+        stats.put("saturatedEntities", saturated(bulkheads));
+        counters.forEach((name, counter) -> stats.put(name, (long) counter.count()));
+        return stats;
+    }
+
+    private void run() {
+        if (keyEventLog.isEnabled()) {
+            keyEventLog.createGroup(GROUP);
+        } else {
+            log.warn("Key event log disabled, only deliveries already persisted will be dispatched");
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (keyEventLog.isEnabled()) {
+                    List<MapRecord<String, Object, Object>> records = readEvents();
+                    if (!records.isEmpty()) {
+                        persist(records);
+                    }
+                } else {
+                    Thread.sleep(pollInterval.toMillis());
+                }
+                dispatchDue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // Events not acknowledged yet are read again once their lease expires
+                log.error("Error dispatching webhooks. Error: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollInterval.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Next events of the consumer group: entries left unacknowledged for longer than the
+     * lease (by this pod before a restart, or by a dead one) first, then new entries
+     */
+    private List<MapRecord<String, Object, Object>> readEvents() {
+        long now = System.currentTimeMillis();
+        if (now >= nextPendingScan) {
+            nextPendingScan = now + lease.toMillis() / 2;
+            List<RecordId> stale = new ArrayList<>();
+            for (PendingMessage pending : redisTemplate.opsForStream()
+                    .pending(KeyEventLog.STREAM, GROUP, Range.unbounded(), READ_BATCH_SIZE)) {
+                if (pending.getElapsedTimeSinceLastDelivery().compareTo(lease) >= 0) {
+                    stale.add(pending.getId());
+                }
+            }
+            if (!stale.isEmpty()) {
+                return redisTemplate.opsForStream().claim(KeyEventLog.STREAM, GROUP, consumer.getName(),
+                        XClaimOptions.minIdle(lease).ids(stale.toArray(RecordId[]::new)));
+            }
+        }
+
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
+                consumer,
+                StreamReadOptions.empty().count(READ_BATCH_SIZE).block(pollInterval),
+                StreamOffset.create(KeyEventLog.STREAM, ReadOffset.lastConsumed()));
+        return records != null ? records : List.of();
+    }
+
+    /**
+     * Write deliveries for the events whose entity has a webhook, then acknowledge the entries
+     */
+    private void persist(List<MapRecord<String, Object, Object>> records) {
+        LocalDateTime now = LocalDateTime.now();
+        List<WebhookDelivery> deliveries = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            KeyEvent event;
+            try {
+                event = keyEventLog.toEvent(record);
+            } catch (JsonProcessingException e) {
+                log.error("Skipping unreadable key event {}. Error: {}", record.getId(), e.getMessage());
+                continue;
+            }
+            Optional<FinancialEntity> entity = entityRegistry.findActive(event.getEntityCode());
+            if (entity.isEmpty() || !hasWebhook(entity.get())) {
+                continue;
+            }
+            try {
+                deliveries.add(WebhookDelivery.builder()
+                        .entityId(entity.get().getEntityId())
+                        .eventType(event.getEventType())
+                        .payload(objectMapper.writeValueAsString(event))
+                        .nextAttemptAt(now)
+                        .build());
+            } catch (JsonProcessingException e) {
+                log.error("Error serializing webhook event for key: {}. Error: {}", event.getKeyValue(), e.getMessage());
+            }
+        }
+        if (!deliveries.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> deliveryRepository.saveAll(deliveries));
+        }
+        redisTemplate.opsForStream().acknowledge(KeyEventLog.STREAM, GROUP,
+                records.stream().map(MapRecord::getId).toArray(RecordId[]::new));
+    }
+
+    /**
+     * Claim due deliveries and send them to the bulkhead of their entity in batches
+     */
+    private void dispatchDue() {
+        LocalDateTime now = LocalDateTime.now();
+        List<WebhookDelivery> due = transactionTemplate.execute(
+                status -> deliveryRepository.claimDue(now, now.plus(lease), batchSize * maxConcurrentPerEntity * 4));
+        if (due == null || due.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, List<WebhookDelivery>> byEntity = due.stream()
+                .collect(Collectors.groupingBy(WebhookDelivery::getEntityId, LinkedHashMap::new, Collectors.toList()));
+        byEntity.forEach((entityId, deliveries) -> {
+            for (int from = 0; from < deliveries.size(); from += batchSize) {
+                submit(entityId, deliveries.subList(from, Math.min(from + batchSize, deliveries.size())));
+            }
+        });
+    }
+
+    private void submit(UUID entityId, List<WebhookDelivery> batch) {
+        Semaphore bulkhead = bulkheads.computeIfAbsent(entityId, id -> new Semaphore(maxConcurrentPerEntity));
+        if (!bulkhead.tryAcquire()) {
+            // Entity saturated: hand the claim back instead of queuing behind it
+            counter("rejected").increment(batch.size());
+            transactionTemplate.executeWithoutResult(status ->
+                    deliveryRepository.reschedule(ids(batch), LocalDateTime.now().plus(pollInterval)));
+            return;
+        }
+
+        deliveryExecutor.submit(() -> {
+            try {
+                deliver(entityId, batch);
+            } catch (Exception e) {
+                log.error("Error delivering webhook batch to entity: {}. Error: {}", entityId, e.getMessage());
+            } finally {
+                bulkhead.release();
+            }
+        });
+    }
+
+    private void deliver(UUID entityId, List<WebhookDelivery> batch) {
+        Optional<FinancialEntity> entity = entityRegistry.findById(entityId);
+        if (entity.isEmpty() || !hasWebhook(entity.get()) || !Boolean.TRUE.equals(entity.get().getIsActive())) {
+            counter("failed").increment(batch.size());
+            transactionTemplate.executeWithoutResult(status -> deliveryRepository.markFailed(
+                    ids(batch), WebhookDeliveryStatus.FAILED, "Financial entity inactive or without webhook"));
+            return;
+        }
+
+        String error;
+        try {
+            HttpResponse<Void> response = httpClient.send(request(entity.get(), batch), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 == 2) {
+                transactionTemplate.executeWithoutResult(status -> deliveryRepository.deleteAllByIdInBatch(ids(batch)));
+                counter("delivered").increment(batch.size());
+                log.debug("Delivered {} webhook events to entity: {}", batch.size(), entity.get().getEntityCode());
+                return;
+            }
+            error = "HTTP " + response.statusCode();
+        } catch (InterruptedException e) {
+            // Shutting down: the claim expires and another attempt is made after restart
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+
+        log.warn("Webhook delivery of {} events to entity: {} failed. Error: {}",
+                batch.size(), entity.get().getEntityCode(), error);
+        onFailure(entity.get(), batch, error);
+    }
+
+    /**
+     * Schedule the next attempt of each delivery, or give up once the entity's retry budget is spent
+     */
+    private void onFailure(FinancialEntity entity, List<WebhookDelivery> batch, String error) {
+        int maxRetries = entity.getMaxRetries() != null ? entity.getMaxRetries() : DEFAULT_MAX_RETRIES;
+        String lastError = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+
+        List<UUID> exhausted = new ArrayList<>();
+        Map<Integer, List<UUID>> retriesByAttempt = new LinkedHashMap<>();
+        for (WebhookDelivery delivery : batch) {
+            int attempts = delivery.getAttempts() + 1;
+            if (attempts > maxRetries) {
+                exhausted.add(delivery.getDeliveryId());
+            } else {
+                retriesByAttempt.computeIfAbsent(attempts, a -> new ArrayList<>()).add(delivery.getDeliveryId());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!exhausted.isEmpty()) {
+                deliveryRepository.markFailed(exhausted, WebhookDeliveryStatus.FAILED, lastError);
+            }
+            retriesByAttempt.forEach((attempts, ids) ->
+                    deliveryRepository.retryLater(ids, LocalDateTime.now().plus(backoff(attempts)), lastError));
+        });
+
+        counter("failed").increment(exhausted.size());
+        counter("retried").increment(batch.size() - exhausted.size());
+    }
+
+    /**
+     * initial * 2^(attempts - 1), capped at max, plus up to 10% jitter
+     */
+    private Duration backoff(int attempts) {
+        long millis = initialBackoff.toMillis() << Math.min(attempts - 1, 30);
+        millis = Math.min(millis, maxBackoff.toMillis());
+        return Duration.ofMillis(millis + ThreadLocalRandom.current().nextLong(millis / 10 + 1));
+    }
+
+    private HttpRequest request(FinancialEntity entity, List<WebhookDelivery> batch) {
+        String body = batch.stream().map(WebhookDelivery::getPayload).collect(Collectors.joining(",", "[", "]"));
+        int timeoutMs = entity.getTimeoutMs() != null ? entity.getTimeoutMs() : DEFAULT_TIMEOUT_MS;
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(entity.getWebhookUrl()))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+
+        String authConfig = entity.getWebhookAuthConfig();
+        if (authConfig != null && !authConfig.isBlank()) {
+            try {
+                objectMapper.readValue(authConfig, new TypeReference<Map<String, String>>() {})
+                        .forEach(builder::header);
+            } catch (JsonProcessingException e) {
+                log.error("Invalid webhookAuthConfig for entity: {}. Error: {}", entity.getEntityCode(), e.getMessage());
+            }
+        }
+        return builder.build();
+    }
+
+    private static long saturated(Map<UUID, Semaphore> bulkheads) {
+        return bulkheads.values().stream()
+                .filter(bulkhead -> bulkhead.availablePermits() == 0)
+                .count();
+    }
+
+    private static boolean hasWebhook(FinancialEntity entity) {
+        return entity.getWebhookUrl() != null && !entity.getWebhookUrl().isBlank();
+    }
+
+    private static List<UUID> ids(List<WebhookDelivery> deliveries) {
+        return deliveries.stream().map(WebhookDelivery::getDeliveryId).toList();
+    }
+
+    private Counter counter(String result) {
+        return counters.computeIfAbsent(result, r -> Counter.builder("keys.webhooks.events")
+                .tag("result", r)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,445 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.models.KeyStatus;
+import com.mati.RetoFinal.repositories.KeyRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for keys.create.strategy=write-behind.
+ * New keys are made durable in a Redis Stream and acknowledged to the caller;
+ * a background consumer drains the stream into PostgreSQL in batches.
+ *
+ * Uniqueness is arbitrated in Redis by a claim per key value (SET NX) until the
+ * row is persisted. Inserts are idempotent (INSERT ... ON CONFLICT DO NOTHING),
+ * so entries left pending by a failed batch or a dead pod are simply replayed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WriteBehindService {
+
+    static final String STRATEGY = "write-behind";
+    private static final String STREAM = "keys:write-behind";
+    private static final String DEAD_LETTER_STREAM = "keys:write-behind:dead";
+    private static final String GROUP = "key-writers";
+    private static final Duration CLAIM_TTL = Duration.ofHours(1);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final KeyRepository keyRepository;
+    private final KeyCacheService keyCacheService;
+    private final KeyEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+    private final RedisKeyNames keyNames;
+
+    @Value("${keys.create.strategy:lock}")
+    private String createStrategy;
+
+    @Value("${keys.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${keys.write-behind.poll-timeout:1s}")
+    private Duration pollTimeout;
+
+    @Value("${keys.write-behind.max-backlog:100000}")
+    private long maxBacklog;
+
+    @Value("${keys.write-behind.retry-after:30s}")
+    private Duration retryAfter;
+
+    @Value("${keys.write-behind.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${HOSTNAME:}")
+    private String hostname;
+
+    private final ExecutorService drainExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "write-behind-drain"));
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    private TransactionTemplate transactionTemplate;
+    private Consumer consumer;
+    private volatile boolean running;
+    private long nextRetryScan;
+
+    private Counter enqueued;
+    private Counter fallbacks;
+    private Counter persisted;
+    private Counter conflicts;
+    private Counter retried;
+    private Counter deadLettered;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        consumer = Consumer.from(GROUP, hostname.isBlank() ? UUID.randomUUID().toString() : hostname);
+
+        enqueued = Counter.builder("keys.write.behind.records").tag("result", "enqueued").register(meterRegistry);
+        fallbacks = Counter.builder("keys.write.behind.records").tag("result", "fallback").register(meterRegistry);
+        persisted = Counter.builder("keys.write.behind.records").tag("result", "persisted").register(meterRegistry);
+        conflicts = Counter.builder("keys.write.behind.records").tag("result", "conflict").register(meterRegistry);
+        retried = Counter.builder("keys.write.behind.records").tag("result", "retried").register(meterRegistry);
+        deadLettered = Counter.builder("keys.write.behind.records").tag("result", "dead_lettered").register(meterRegistry);
+        Gauge.builder("keys.write.behind.backlog", backlog, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("keys.write.behind.lag.seconds", lagMillis, lag -> lag.get() / 1000.0)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        drainExecutor.submit(this::drainLoop);
+        log.info("Write-behind consumer {} started on stream {}", consumer.getName(), STREAM);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        drainExecutor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return STRATEGY.equalsIgnoreCase(createStrategy);
+    }
+
+    /**
+     * Back-pressure: once the backlog is over keys.write-behind.max-backlog,
+     * callers should fall back to a synchronous insert
+     */
+    public boolean acceptsWrites() {
+        if (backlog.get() < maxBacklog) {
+            return true;
+        }
+        fallbacks.increment();
+        return false;
+    }
+
+    /**
+     * Claim a key value for a new key until the write-behind consumer persists it
+     * @return the key ID that owns the value (keyId itself if the claim was won),
+     * or null if the owner's claim was released meanwhile, i.e. its key was just persisted
+     */
+    public UUID claim(String keyValue, UUID keyId) {
+        String claimKey = claimKey(keyValue);
+        Boolean won = redisTemplate.opsForValue().setIfAbsent(claimKey, keyId.toString(), claimTtl());
+        if (Boolean.TRUE.equals(won)) {
+            return keyId;
+        }
+        String owner = redisTemplate.opsForValue().get(claimKey);
+        return owner != null ? UUID.fromString(owner) : null;
+    }
+
+    private String claimKey(String keyValue) {
+        return keyNames.claimKey(keyValue);
+    }
+
+    /**
+     * A claim outlives the worst case of its entry: the current backlog drained first,
+     * then every attempt retried after keys.write-behind.retry-after
+     */
+    private Duration claimTtl() {
+        return CLAIM_TTL.plusMillis(lagMillis.get()).plus(retryAfter.multipliedBy(maxAttempts));
+    }
+
+    /**
+     * Drop a claim that was won but could not be enqueued
+     */
+    public void releaseClaim(String keyValue) {
+        try {
+            redisTemplate.delete(claimKey(keyValue));
+        } catch (Exception e) {
+            log.error("Error releasing write-behind claim for key: {}. Error: {}", keyValue, e.getMessage());
+        }
+    }
+
+    /**
+     * Append a new key to the stream, the key is durable once this returns
+     */
+    public void enqueue(KeyCacheDto dto, UUID entityId) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("keyId", dto.getKeyId().toString());
+        fields.put("keyValue", dto.getKeyValue());
+        fields.put("entityId", entityId.toString());
+        fields.put("entityCode", dto.getEntityCode());
+        fields.put("createdAt", dto.getCreatedAt().toString());
+        if (dto.getAccountNumber() != null) {
+            fields.put("accountNumber", dto.getAccountNumber());
+        }
+        if (dto.getOwnerDocument() != null) {
+            fields.put("ownerDocument", dto.getOwnerDocument());
+        }
+
+        redisTemplate.opsForStream().add(StreamRecords.string(fields).withStreamKey(STREAM));
+        enqueued.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("backlog", backlog.get());
+        stats.put("lagSeconds", lagMillis.get() / 1000.0);
+        stats.put("persisted", (long) persisted.count());
+        stats.put("deadLettered", (long) deadLettered.count());
+        return stats;
+    }
+
+    private void drainLoop() {
+        createGroup();
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                drainOnce();
+            } catch (Exception e) {
+                log.error("Error draining write-behind stream. Error: {}", e.getMessage());
+                sleep(pollTimeout);
+            }
+        }
+    }
+
+    private void createGroup() {
+        byte[] rawStream = STREAM.getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(rawStream, GROUP, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            // BUSYGROUP: the group already exists
+            log.debug("Write-behind consumer group not created: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Persist one batch: stale pending entries first (retries and entries of dead
+     * consumers), then new entries
+     */
+    private void drainOnce() {
+        List<MapRecord<String, Object, Object>> records = List.of();
+
+        long now = System.currentTimeMillis();
+        if (now >= nextRetryScan) {
+            nextRetryScan = now + retryAfter.toMillis() / 2;
+            records = claimStalePending();
+        }
+        if (records.isEmpty()) {
+            records = redisTemplate.opsForStream().read(
+                    consumer,
+                    StreamReadOptions.empty().count(batchSize).block(pollTimeout),
+                    StreamOffset.create(STREAM, ReadOffset.lastConsumed()));
+        }
+
+        if (records != null && !records.isEmpty()) {
+            persist(records);
+        }
+        refreshLag();
+    }
+
+    private List<MapRecord<String, Object, Object>> claimStalePending() {
+        List<RecordId> retryIds = new ArrayList<>();
+        for (PendingMessage pending : redisTemplate.opsForStream().pending(STREAM, GROUP, Range.unbounded(), batchSize)) {
+            if (pending.getElapsedTimeSinceLastDelivery().compareTo(retryAfter) < 0) {
+                continue;
+            }
+            if (pending.getTotalDeliveryCount() >= maxAttempts) {
+                deadLetter(pending.getId());
+            } else {
+                retryIds.add(pending.getId());
+            }
+        }
+        if (retryIds.isEmpty()) {
+            return List.of();
+        }
+
+        retried.increment(retryIds.size());
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().claim(STREAM, GROUP,
+                consumer.getName(), XClaimOptions.minIdle(retryAfter).ids(retryIds.toArray(RecordId[]::new)));
+        // The backlog may have grown since the claims were taken
+        Duration claimTtl = claimTtl();
+        records.forEach(record -> redisTemplate.expire(claimKey((String) record.getValue().get("keyValue")), claimTtl));
+        return records;
+    }
+
+    /**
+     * Insert the batch in one transaction; if that fails, insert record by record
+     * so a single bad record does not hold back the others.
+     * Keys whose value turned out to be owned by another key are compensated once committed.
+     */
+    private void persist(List<MapRecord<String, Object, Object>> records) {
+        try {
+            List<MapRecord<String, Object, Object>> conflicting = transactionTemplate.execute(status ->
+                    records.stream().filter(record -> !insert(record)).toList());
+            complete(records);
+            conflicting.forEach(record -> compensate(record.getValue()));
+        } catch (RuntimeException batchError) {
+            log.warn("Write-behind batch of {} keys failed, persisting one by one. Error: {}",
+                    records.size(), batchError.getMessage());
+
+            List<MapRecord<String, Object, Object>> done = new ArrayList<>();
+            List<MapRecord<String, Object, Object>> conflicting = new ArrayList<>();
+            for (MapRecord<String, Object, Object> record : records) {
+                try {
+                    if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> insert(record)))) {
+                        conflicting.add(record);
+                    }
+                    done.add(record);
+                } catch (RuntimeException e) {
+                    // Left pending, retried after keys.write-behind.retry-after
+                    log.error("Error persisting write-behind key: {}. Error: {}",
+                            record.getValue().get("keyValue"), e.getMessage());
+                }
+            }
+            complete(done);
+            conflicting.forEach(record -> compensate(record.getValue()));
+        }
+    }
+
+    /**
+     * @return false if the value is already owned by another key, so this one was not persisted
+     */
+    private boolean insert(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> fields = record.getValue();
+        String keyValue = (String) fields.get("keyValue");
+
+        int inserted = keyRepository.insertIfAbsent(
+                UUID.fromString((String) fields.get("keyId")),
+                keyValue,
+                (String) fields.get("accountNumber"),
+                (String) fields.get("ownerDocument"),
+                UUID.fromString((String) fields.get("entityId")),
+                LocalDateTime.parse((String) fields.get("createdAt")));
+
+        if (inserted == 0 && !isReplay(record, keyValue)) {
+            // Registered through another path, or claimed again after this claim expired: the database wins
+            conflicts.increment();
+            log.warn("Write-behind key: {} was already registered by another key, dropping it", keyValue);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * A conflict on a replayed record is our own earlier insert
+     */
+    private boolean isReplay(MapRecord<String, Object, Object> record, String keyValue) {
+        return keyRepository.findByKeyValue(keyValue)
+                .map(key -> key.getKeyId().toString().equals(record.getValue().get("keyId")))
+                .orElse(false);
+    }
+
+    private void complete(List<MapRecord<String, Object, Object>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        RecordId[] ids = records.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+        redisTemplate.opsForStream().acknowledge(STREAM, GROUP, ids);
+        redisTemplate.opsForStream().delete(STREAM, ids);
+        // Persisted: PostgreSQL arbitrates uniqueness from now on
+        redisTemplate.delete(records.stream()
+                .map(record -> claimKey((String) record.getValue().get("keyValue")))
+                .toList());
+        persisted.increment(records.size());
+    }
+
+    private void deadLetter(RecordId id) {
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                .range(STREAM, Range.closed(id.getValue(), id.getValue()), Limit.limit().count(1));
+        if (!records.isEmpty()) {
+            redisTemplate.opsForStream().add(StreamRecords.mapBacked(records.get(0).getValue()).withStreamKey(DEAD_LETTER_STREAM));
+            log.error("Write-behind key: {} moved to {} after {} attempts",
+                    records.get(0).getValue().get("keyValue"), DEAD_LETTER_STREAM, maxAttempts);
+        }
+        redisTemplate.opsForStream().acknowledge(STREAM, GROUP, id);
+        redisTemplate.opsForStream().delete(STREAM, id);
+        deadLettered.increment();
+        if (!records.isEmpty()) {
+            releaseClaim((String) records.get(0).getValue().get("keyValue"));
+            compensate(records.get(0).getValue());
+        }
+    }
+
+    /**
+     * Undo what the caller was told for a key that will never be persisted: drop it
+     * from every cache tier and retract its KEY_REGISTERED event
+     */
+    private void compensate(Map<Object, Object> fields) {
+        String keyValue = (String) fields.get("keyValue");
+        keyCacheService.evict(keyValue);
+        if (fields.get("entityCode") == null) {
+            // Enqueued before records carried the entity code, no webhook receiver to address
+            return;
+        }
+        eventPublisher.publishKeyDropped(KeyCacheDto.builder()
+                .keyId(UUID.fromString((String) fields.get("keyId")))
+                .keyValue(keyValue)
+                .accountNumber((String) fields.get("accountNumber"))
+                .ownerDocument((String) fields.get("ownerDocument"))
+                .status(KeyStatus.DELETED)
+                .entityCode((String) fields.get("entityCode"))
+                .build());
+    }
+
+    /**
+     * Acknowledged entries are deleted, so the stream holds exactly the backlog
+     * and its first entry is the oldest key not yet persisted
+     */
+    private void refreshLag() {
+        Long size = redisTemplate.opsForStream().size(STREAM);
+        backlog.set(size != null ? size : 0);
+
+        List<MapRecord<String, Object, Object>> oldest = redisTemplate.opsForStream()
+                .range(STREAM, Range.unbounded(), Limit.limit().count(1));
+        lagMillis.set(oldest.isEmpty()
+                ? 0
+                : Math.max(0, System.currentTimeMillis() - oldest.get(0).getId().getTimestamp()));
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
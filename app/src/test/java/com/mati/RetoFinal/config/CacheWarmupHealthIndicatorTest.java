@@ -0,0 +1,36 @@
+package com.mati.RetoFinal.config;
+
+import com.mati.RetoFinal.services.CacheWarmupService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheWarmupHealthIndicatorTest {
+
+    private final CacheWarmupService cacheWarmupService = mock(CacheWarmupService.class);
+    private final CacheWarmupHealthIndicator healthIndicator = new CacheWarmupHealthIndicator(cacheWarmupService);
+
+    @Test
+    void outOfServiceUntilTheWarmupIsReady() {
+        when(cacheWarmupService.getStats()).thenReturn(Map.of("progress", 0.25));
+
+        Health health = healthIndicator.health();
+
+        assertThat(health.getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(health.getDetails()).containsEntry("progress", 0.25);
+    }
+
+    @Test
+    void upOnceTheWarmupIsReady() {
+        when(cacheWarmupService.isReady()).thenReturn(true);
+        when(cacheWarmupService.getStats()).thenReturn(Map.of("progress", 0.8));
+
+        assertThat(healthIndicator.health().getStatus()).isEqualTo(Status.UP);
+    }
+}
@@ -0,0 +1,90 @@
+package com.mati.RetoFinal.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private final DataSource writer = mock(DataSource.class);
+    private final DataSource reader = mock(DataSource.class);
+    private final Connection writerConnection = mock(Connection.class);
+    private final Connection readerConnection = mock(Connection.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReadWriteRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(writer.getConnection()).thenReturn(writerConnection);
+        when(reader.getConnection()).thenReturn(readerConnection);
+
+        dataSource = new ReadWriteRoutingDataSource(meterRegistry);
+        dataSource.setTargetDataSources(Map.of(
+                ReadWriteRoutingDataSource.WRITER, writer,
+                ReadWriteRoutingDataSource.READER, reader));
+        dataSource.setDefaultTargetDataSource(writer);
+        dataSource.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void readWriteTransactionsUseTheWriter() throws SQLException {
+        assertThat(dataSource.getConnection()).isSameAs(writerConnection);
+        assertThat(connections(ReadWriteRoutingDataSource.WRITER)).isEqualTo(1);
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReader() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(dataSource.getConnection()).isSameAs(readerConnection);
+        assertThat(connections(ReadWriteRoutingDataSource.READER)).isEqualTo(1);
+    }
+
+    @Test
+    void onWriterOverridesReadOnlyTransactions() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(ReadWriteRoutingDataSource.onWriter(this::connection)).isSameAs(writerConnection);
+        assertThat(connection()).isSameAs(readerConnection);
+    }
+
+    @Test
+    void nestedOnWriterKeepsTheOuterOverride() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        Connection afterNested = ReadWriteRoutingDataSource.onWriter(() -> {
+            ReadWriteRoutingDataSource.onWriter(this::connection);
+            return connection();
+        });
+
+        assertThat(afterNested).isSameAs(writerConnection);
+    }
+
+    private Connection connection() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double connections(String target) {
+        return meterRegistry.get("db.routing.connections").tag("target", target).counter().count();
+    }
+}
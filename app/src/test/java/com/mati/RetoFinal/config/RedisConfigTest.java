@@ -0,0 +1,44 @@
+package com.mati.RetoFinal.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(RedisConfig.class)
+            .withPropertyValues("redis.mode=standalone");
+
+    @Test
+    void masterReadsShareTheMainConnectionFactory() {
+        contextRunner.run(context -> {
+            assertThat(context).doesNotHaveBean("cacheReadConnectionFactory");
+            assertThat(context.getBeansOfType(RedisConnectionFactory.class)).hasSize(1);
+            assertThat(cacheReadTemplate(context.getBean("cacheReadRedisTemplate")).getConnectionFactory())
+                    .isSameAs(context.getBean("redisConnectionFactory"));
+        });
+    }
+
+    @Test
+    void replicaReadsGetTheirOwnConnectionFactory() {
+        contextRunner.withPropertyValues("redis.read-from=replica-preferred").run(context -> {
+            assertThat(context).hasBean("cacheReadConnectionFactory");
+            LettuceConnectionFactory cacheReadConnectionFactory =
+                    context.getBean("cacheReadConnectionFactory", LettuceConnectionFactory.class);
+            assertThat(cacheReadConnectionFactory).isNotSameAs(context.getBean("redisConnectionFactory"));
+            assertThat(cacheReadConnectionFactory.getClientConfiguration().getReadFrom()).isPresent();
+            assertThat(cacheReadTemplate(context.getBean("cacheReadRedisTemplate")).getConnectionFactory())
+                    .isSameAs(cacheReadConnectionFactory);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisTemplate<String, String> cacheReadTemplate(Object bean) {
+        return (RedisTemplate<String, String>) bean;
+    }
+}
@@ -0,0 +1,54 @@
+package com.mati.RetoFinal.controllers;
+
+import com.mati.RetoFinal.dto.CreateKeyOutcome;
+import com.mati.RetoFinal.dto.CreateKeyResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CreateKeyResponsesTest {
+
+    @Test
+    void answeredCallsAreOk() {
+        ResponseEntity<CreateKeyResponse> entity = CreateKeyResponses.toResponseEntity(
+                CreateKeyResponse.exists(UUID.randomUUID(), "user@example.com", 1.0, "cache"));
+
+        assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(entity.getHeaders().containsKey(HttpHeaders.RETRY_AFTER)).isFalse();
+    }
+
+    @Test
+    void rejectionsUseTheirOutcomeStatus() {
+        assertThat(status(CreateKeyOutcome.INVALID)).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(status(CreateKeyOutcome.ENTITY_MISSING)).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(status(CreateKeyOutcome.CONFLICT)).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(status(CreateKeyOutcome.LOCK_TIMEOUT)).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(status(CreateKeyOutcome.BACKEND_DOWN)).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(status(CreateKeyOutcome.ERROR)).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    @Test
+    void retryAfterIsRoundedUpToWholeSeconds() {
+        assertThat(retryAfter(Duration.ofSeconds(5))).isEqualTo("5");
+        assertThat(retryAfter(Duration.ofMillis(1_200))).isEqualTo("2");
+        assertThat(retryAfter(Duration.ofMillis(100))).isEqualTo("1");
+        assertThat(retryAfter(Duration.ZERO)).isEqualTo("1");
+    }
+
+    private static HttpStatus status(CreateKeyOutcome outcome) {
+        return (HttpStatus) CreateKeyResponses.toResponseEntity(
+                CreateKeyResponse.rejected(outcome, "rejected", 1.0)).getStatusCode();
+    }
+
+    private static String retryAfter(Duration retryAfter) {
+        return CreateKeyResponses.toResponseEntity(
+                        CreateKeyResponse.rejected(CreateKeyOutcome.LOCK_TIMEOUT, "retry", 1.0, retryAfter))
+                .getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+    }
+}
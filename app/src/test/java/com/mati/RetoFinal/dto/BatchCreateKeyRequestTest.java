@@ -0,0 +1,62 @@
+package com.mati.RetoFinal.dto;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchCreateKeyRequestTest {
+
+    private static ValidatorFactory validatorFactory;
+    private static Validator validator;
+
+    @BeforeAll
+    static void createValidator() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @AfterAll
+    static void closeValidator() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void acceptsUpToTheMaximumBatchSize() {
+        assertThat(validator.validate(batch(BatchCreateKeyRequest.MAX_KEYS))).isEmpty();
+    }
+
+    @Test
+    void rejectsOversizedBatchesWithAMessage() {
+        Set<ConstraintViolation<BatchCreateKeyRequest>> violations = validator.validate(batch(BatchCreateKeyRequest.MAX_KEYS + 1));
+
+        assertThat(violations).singleElement().satisfies(violation -> {
+            assertThat(violation.getPropertyPath()).hasToString("keys");
+            assertThat(violation.getMessage()).isEqualTo("At most 500 keys per batch");
+        });
+    }
+
+    @Test
+    void rejectsEmptyBatches() {
+        assertThat(validator.validate(new BatchCreateKeyRequest(List.of())))
+                .extracting(ConstraintViolation::getMessage)
+                .containsExactly("Keys cannot be empty");
+    }
+
+    private static BatchCreateKeyRequest batch(int size) {
+        CreateKeyRequest request = CreateKeyRequest.builder()
+                .keyValue("user@example.com")
+                .entityCode("E1")
+                .build();
+        return new BatchCreateKeyRequest(Collections.nCopies(size, request));
+    }
+}
@@ -0,0 +1,61 @@
+package com.mati.RetoFinal.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CreateKeyResponseTest {
+
+    @Test
+    void createdKeysHaveTheCreatedOutcome() {
+        CreateKeyResponse response = CreateKeyResponse.created(UUID.randomUUID(), "user@example.com", 1.234);
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.CREATED);
+        assertThat(response.isCreated()).isTrue();
+        assertThat(response.getLatencyMs()).isEqualTo(1.23);
+    }
+
+    @Test
+    void existingKeysAreTypedBySource() {
+        UUID keyId = UUID.randomUUID();
+
+        assertThat(CreateKeyResponse.exists(keyId, "user@example.com", 1.0, "cache").getOutcome())
+                .isEqualTo(CreateKeyOutcome.EXISTS_CACHE);
+        assertThat(CreateKeyResponse.exists(keyId, "user@example.com", 1.0, "database").getOutcome())
+                .isEqualTo(CreateKeyOutcome.EXISTS_DATABASE);
+        assertThat(CreateKeyResponse.exists(keyId, "user@example.com", 1.0, "write-behind").getOutcome())
+                .isEqualTo(CreateKeyOutcome.EXISTS_PENDING);
+    }
+
+    @Test
+    void rejectedKeysAreNeitherCreatedNorExisting() {
+        CreateKeyResponse response = CreateKeyResponse.rejected(CreateKeyOutcome.LOCK_TIMEOUT, "retry", 1.0,
+                Duration.ofSeconds(1));
+
+        assertThat(response.isCreated()).isFalse();
+        assertThat(response.isExists()).isFalse();
+        assertThat(response.getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void retryAfterIsOnlySentAsAHeader() throws Exception {
+        CreateKeyResponse response = CreateKeyResponse.rejected(CreateKeyOutcome.BACKEND_DOWN, "retry", 1.0,
+                Duration.ofSeconds(5));
+
+        String json = new ObjectMapper().findAndRegisterModules().writeValueAsString(response);
+
+        assertThat(json).contains("\"outcome\":\"BACKEND_DOWN\"").doesNotContain("retryAfter");
+    }
+
+    @Test
+    void everyRejectionMapsToAnErrorStatus() {
+        for (CreateKeyOutcome outcome : CreateKeyOutcome.values()) {
+            boolean answered = outcome.name().equals("CREATED") || outcome.name().startsWith("EXISTS_");
+            assertThat(outcome.getStatus().is2xxSuccessful()).as(outcome.name()).isEqualTo(answered);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.mati.RetoFinal.dto;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyCursorTest {
+
+    @Test
+    void roundTripsThroughItsToken() {
+        KeyCursor cursor = new KeyCursor(LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_456_789), UUID.randomUUID());
+
+        assertThat(KeyCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void encodesAsUrlSafeTokenWithoutPadding() {
+        KeyCursor cursor = new KeyCursor(LocalDateTime.of(2024, 5, 1, 10, 15), UUID.randomUUID());
+
+        assertThat(cursor.encode()).matches("[A-Za-z0-9_-]+");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "not base64!",
+            "2024-05-01T10:15:00",
+            "2024-05-01T10:15:00|not-a-uuid",
+            "yesterday|3f2504e0-4f89-11d3-9a0c-0305e82c3301",
+            ""
+    })
+    void rejectsMalformedTokens(String raw) {
+        String token = raw.equals("not base64!")
+                ? raw
+                : Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> KeyCursor.decode(token))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Invalid cursor");
+    }
+}
@@ -0,0 +1,146 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.models.KeyStatus;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryKeyCacheCodecTest {
+
+    private final BinaryKeyCacheCodec codec = new BinaryKeyCacheCodec();
+
+    @Test
+    void roundTripsAFullEntry() {
+        KeyCacheDto dto = fullDto();
+
+        assertThat(codec.decode(codec.encode(dto))).isEqualTo(dto);
+    }
+
+    @Test
+    void roundTripsAnEntryWithAbsentFields() {
+        KeyCacheDto dto = KeyCacheDto.builder()
+                .keyValue("ñandú@correo.com")
+                .status(KeyStatus.DELETED)
+                .build();
+
+        assertThat(codec.decode(codec.encode(dto))).isEqualTo(dto);
+    }
+
+    @Test
+    void truncatesCreatedAtToMillis() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_456_789);
+        KeyCacheDto dto = KeyCacheDto.builder().createdAt(createdAt).build();
+
+        assertThat(codec.decode(codec.encode(dto)).getCreatedAt())
+                .isEqualTo(LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_000_000));
+    }
+
+    @Test
+    void startsWithMagicAndVersion() {
+        byte[] bytes = codec.encode(fullDto());
+
+        assertThat(bytes[0]).isEqualTo((byte) 0xB7);
+        assertThat(bytes[1]).isEqualTo(BinaryKeyCacheCodec.VERSION);
+    }
+
+    @Test
+    void tellsBinaryAndJsonEntriesApart() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        JsonKeyCacheCodec jsonCodec = new JsonKeyCacheCodec(objectMapper);
+        byte[] binary = codec.encode(fullDto());
+        byte[] json = jsonCodec.encode(fullDto());
+
+        assertThat(codec.canDecode(binary)).isTrue();
+        assertThat(codec.canDecode(json)).isFalse();
+        assertThat(jsonCodec.canDecode(json)).isTrue();
+        assertThat(jsonCodec.canDecode(binary)).isFalse();
+        assertThat(codec.canDecode(new byte[] {BinaryKeyCacheCodec.MAGIC, 1})).isFalse();
+    }
+
+    @Test
+    void rejectsNonBinaryEntries() {
+        byte[] json = "{\"keyValue\":\"a\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> codec.decode(json))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Not a binary");
+    }
+
+    @Test
+    void rejectsUnsupportedVersion() {
+        byte[] bytes = codec.encode(fullDto());
+        bytes[1] = 2;
+
+        assertThatThrownBy(() -> codec.decode(bytes))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("version");
+    }
+
+    @Test
+    void rejectsTruncatedEntries() {
+        byte[] bytes = codec.encode(fullDto());
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 4);
+
+        assertThatThrownBy(() -> codec.decode(truncated))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Truncated");
+    }
+
+    @Test
+    void rejectsUnknownStatusOrdinal() {
+        byte[] bytes = codec.encode(KeyCacheDto.builder().status(KeyStatus.ACTIVE).build());
+        bytes[3] = (byte) KeyStatus.values().length;
+
+        assertThatThrownBy(() -> codec.decode(bytes))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("KeyStatus");
+    }
+
+    @Test
+    void roundTripsThroughHashFields() {
+        KeyCacheDto dto = fullDto();
+
+        assertThat(codec.fromHash(codec.toHash(dto))).isEqualTo(dto);
+    }
+
+    @Test
+    void treatsAnEmptyHashAsMissing() {
+        assertThat(codec.fromHash(Map.of())).isNull();
+        assertThat(codec.fromHash(null)).isNull();
+    }
+
+    @Test
+    void rejectsHashWithUnsupportedVersion() {
+        Map<byte[], byte[]> hash = new HashMap<>();
+        hash.put(BinaryKeyCacheCodec.FIELD_VERSION.getBytes(StandardCharsets.UTF_8), new byte[] {2});
+
+        assertThatThrownBy(() -> codec.fromHash(hash))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static KeyCacheDto fullDto() {
+        return KeyCacheDto.builder()
+                .keyId(UUID.randomUUID())
+                .keyValue("user@example.com")
+                .accountNumber("0011223344")
+                .ownerDocument("12345678")
+                .status(KeyStatus.ACTIVE)
+                .entityCode("BANK01")
+                .createdAt(LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_000_000))
+                .build();
+    }
+}
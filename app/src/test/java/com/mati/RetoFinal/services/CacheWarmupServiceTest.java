@@ -0,0 +1,182 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.models.KeyStatus;
+import com.mati.RetoFinal.repositories.KeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheWarmupServiceTest {
+
+    private final KeyRepository keyRepository = mock(KeyRepository.class);
+    private final KeyCacheService keyCacheService = mock(KeyCacheService.class);
+    private final CountDownLatch secondPageReached = new CountDownLatch(1);
+    private final CountDownLatch releaseSecondPage = new CountDownLatch(1);
+    private CacheWarmupService cacheWarmupService;
+
+    @BeforeEach
+    void setUp() {
+        when(keyRepository.countByStatus(KeyStatus.ACTIVE)).thenReturn(10L);
+        when(keyRepository.findByStatusOrderByCreatedAtDescKeyIdDesc(eq(KeyStatus.ACTIVE), any(), any()))
+                .thenReturn(page(true), page(false));
+
+        cacheWarmupService = new CacheWarmupService(
+                keyRepository,
+                keyCacheService,
+                mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cacheWarmupService, "enabled", true);
+        ReflectionTestUtils.setField(cacheWarmupService, "maxKeys", 1_000_000L);
+        ReflectionTestUtils.setField(cacheWarmupService, "pageSize", 5);
+        ReflectionTestUtils.setField(cacheWarmupService, "readyFraction", 0.8);
+        ReflectionTestUtils.setField(cacheWarmupService, "maxWait", Duration.ofMinutes(2));
+        cacheWarmupService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseSecondPage.countDown();
+        cacheWarmupService.shutdown();
+    }
+
+    @Test
+    void disabledWarmupIsReadyRightAway() {
+        ReflectionTestUtils.setField(cacheWarmupService, "enabled", false);
+
+        cacheWarmupService.onApplicationReady();
+
+        assertThat(cacheWarmupService.isReady()).isTrue();
+    }
+
+    @Test
+    void notReadyBelowTheReadyFraction() throws InterruptedException {
+        blockOnSecondPage(5);
+
+        cacheWarmupService.onApplicationReady();
+        awaitSecondPage();
+
+        assertThat(cacheWarmupService.isReady()).isFalse();
+        assertThat(cacheWarmupService.progress()).isEqualTo(0.5);
+    }
+
+    @Test
+    void readyOnceTheReadyFractionIsWarm() throws InterruptedException {
+        ReflectionTestUtils.setField(cacheWarmupService, "readyFraction", 0.5);
+        // Keys already in Redis count as warm too
+        blockOnSecondPage(2);
+
+        cacheWarmupService.onApplicationReady();
+        awaitSecondPage();
+
+        assertThat(cacheWarmupService.isReady()).isTrue();
+        assertThat(cacheWarmupService.getStats())
+                .containsEntry("loaded", 2L)
+                .containsEntry("alreadyCached", 3L);
+    }
+
+    @Test
+    void readyOnceTheWarmupFinishes() throws InterruptedException {
+        // Keys deleted while paging leave the warm-up short of its target
+        when(keyRepository.countByStatus(KeyStatus.ACTIVE)).thenReturn(20L);
+        when(keyCacheService.warmKeyDtos(anyMap())).thenReturn(5);
+
+        cacheWarmupService.onApplicationReady();
+        awaitFinished();
+
+        assertThat(cacheWarmupService.progress()).isEqualTo(0.5);
+        assertThat(cacheWarmupService.isReady()).isTrue();
+    }
+
+    @Test
+    void readyAfterTheMaximumWait() throws InterruptedException {
+        ReflectionTestUtils.setField(cacheWarmupService, "maxWait", Duration.ZERO);
+        blockOnSecondPage(5);
+
+        cacheWarmupService.onApplicationReady();
+        awaitSecondPage();
+
+        assertThat(cacheWarmupService.isReady()).isTrue();
+    }
+
+    @Test
+    void failedWarmupDoesNotKeepThePodOutOfRotation() throws InterruptedException {
+        when(keyRepository.countByStatus(KeyStatus.ACTIVE)).thenThrow(new QueryTimeoutException("reader timed out"));
+
+        cacheWarmupService.onApplicationReady();
+        awaitFinished();
+
+        assertThat(cacheWarmupService.isReady()).isTrue();
+    }
+
+    @Test
+    void laterWarmupsKeepAReadyPodInRotation() throws InterruptedException {
+        when(keyCacheService.warmKeyDtos(anyMap())).thenReturn(5);
+        cacheWarmupService.onApplicationReady();
+        awaitFinished();
+        assertThat(cacheWarmupService.isReady()).isTrue();
+
+        when(keyRepository.findByStatusOrderByCreatedAtDescKeyIdDesc(eq(KeyStatus.ACTIVE), any(), any()))
+                .thenReturn(page(true), page(false));
+        blockOnSecondPage(0);
+        assertThat(cacheWarmupService.start()).isTrue();
+        awaitSecondPage();
+
+        assertThat(cacheWarmupService.isReady()).isTrue();
+        assertThat(cacheWarmupService.start()).isFalse();
+    }
+
+    /**
+     * Warm the first page with the given number of new keys, then hold the warm-up on the second one
+     */
+    private void blockOnSecondPage(int written) {
+        when(keyCacheService.warmKeyDtos(anyMap())).thenReturn(written).thenAnswer(invocation -> {
+            secondPageReached.countDown();
+            releaseSecondPage.await();
+            return 5;
+        });
+    }
+
+    private void awaitSecondPage() throws InterruptedException {
+        assertThat(secondPageReached.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private void awaitFinished() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Boolean.TRUE.equals(cacheWarmupService.getStats().get("running")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(cacheWarmupService.getStats()).containsEntry("running", false);
+    }
+
+    private static Window<Key> page(boolean hasNext) {
+        List<Key> keys = IntStream.range(0, 5)
+                .mapToObj(i -> Key.builder()
+                        .keyId(UUID.randomUUID())
+                        .keyValue("user" + i + "@example.com")
+                        .status(KeyStatus.ACTIVE)
+                        .build())
+                .toList();
+        return Window.from(keys, ScrollPosition::offset, hasNext);
+    }
+}
@@ -0,0 +1,163 @@
+package com.mati.RetoFinal.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.misc.CompletableFutureWrapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DistributedLockServiceTest {
+
+    private static final String KEY = "user@example.com";
+
+    private final RedissonClient redissonClient = mock(RedissonClient.class);
+    private final RedisCircuitBreaker circuitBreaker = mock(RedisCircuitBreaker.class);
+    private final RLock plainLock = mock(RLock.class);
+    private final RLock hashTaggedLock = mock(RLock.class);
+    private DistributedLockService lockService;
+
+    @BeforeEach
+    void setUp() {
+        when(redissonClient.getLock("lock:key:" + KEY)).thenReturn(plainLock);
+        when(redissonClient.getLock("lock:key:{" + KEY + "}")).thenReturn(hashTaggedLock);
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(true);
+        when(circuitBreaker.getState()).thenReturn(RedisCircuitBreaker.State.CLOSED);
+        when(plainLock.unlockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>((Void) null));
+        when(hashTaggedLock.unlockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>((Void) null));
+
+        lockService = new DistributedLockService(redissonClient, new SimpleMeterRegistry(), circuitBreaker,
+                new RedisKeyNames(true));
+        ReflectionTestUtils.setField(lockService, "fallback", "advisory");
+        ReflectionTestUtils.setField(lockService, "localStripes", 16);
+        ReflectionTestUtils.setField(lockService, "adaptiveLease", false);
+        ReflectionTestUtils.setField(lockService, "leaseHoldMultiplier", 4.0);
+        ReflectionTestUtils.setField(lockService, "minLease", Duration.ofSeconds(2));
+        lockService.registerMetrics();
+    }
+
+    @Test
+    void takesThePlainAndHashTaggedLocksInOrder() {
+        lockable(plainLock, true);
+        lockable(hashTaggedLock, true);
+
+        assertThat(lockService.acquireLock(KEY)).isEqualTo(DistributedLockService.Acquisition.ACQUIRED);
+
+        InOrder order = inOrder(plainLock, hashTaggedLock);
+        order.verify(plainLock).tryLockAsync(anyLong(), anyLong(), eq(TimeUnit.MILLISECONDS), anyLong());
+        order.verify(hashTaggedLock).tryLockAsync(anyLong(), anyLong(), eq(TimeUnit.MILLISECONDS), anyLong());
+    }
+
+    @Test
+    void releasesTheFirstLockWhenTheSecondIsHeldElsewhere() {
+        lockable(plainLock, true);
+        lockable(hashTaggedLock, false);
+        when(plainLock.isHeldByThread(anyLong())).thenReturn(true);
+
+        DistributedLockService.Acquisition acquisition =
+                lockService.acquireLock(KEY, Duration.ofMillis(50), Duration.ofSeconds(1));
+
+        assertThat(acquisition).isEqualTo(DistributedLockService.Acquisition.TIMED_OUT);
+        verify(plainLock, atLeastOnce()).unlockAsync(anyLong());
+        verify(hashTaggedLock, never()).unlockAsync(anyLong());
+    }
+
+    @Test
+    void releasesBothLocksInReverseOrder() {
+        lockable(plainLock, true);
+        lockable(hashTaggedLock, true);
+        when(plainLock.isHeldByThread(anyLong())).thenReturn(true);
+        when(hashTaggedLock.isHeldByThread(anyLong())).thenReturn(true);
+        lockService.acquireLock(KEY);
+
+        lockService.releaseLock(KEY);
+
+        InOrder order = inOrder(hashTaggedLock, plainLock);
+        order.verify(hashTaggedLock).unlockAsync(anyLong());
+        order.verify(plainLock).unlockAsync(anyLong());
+    }
+
+    @Test
+    void openCircuitSwitchesToTheFallbackProvider() {
+        when(circuitBreaker.getState()).thenReturn(RedisCircuitBreaker.State.OPEN);
+
+        assertThat(lockService.activeProvider()).isEqualTo(DistributedLockService.PROVIDER_ADVISORY);
+
+        ReflectionTestUtils.setField(lockService, "fallback", "insert");
+        assertThat(lockService.activeProvider()).isEqualTo(DistributedLockService.PROVIDER_INSERT);
+    }
+
+    @Test
+    void unavailableRedisReleasesTheLocalStripe() throws Exception {
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(false);
+
+        assertThat(lockService.acquireLock(KEY)).isEqualTo(DistributedLockService.Acquisition.UNAVAILABLE);
+
+        verify(plainLock, never()).tryLockAsync(anyLong(), anyLong(), eq(TimeUnit.MILLISECONDS), anyLong());
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(true);
+        lockable(plainLock, true);
+        lockable(hashTaggedLock, true);
+        assertThat(onOtherThread(() -> lockService.acquireLock(KEY, Duration.ofMillis(50), Duration.ofSeconds(1))))
+                .isEqualTo(DistributedLockService.Acquisition.ACQUIRED);
+    }
+
+    @Test
+    void sameKeyQueuesOnTheLocalStripeBeforeRedis() throws Exception {
+        lockable(plainLock, true);
+        lockable(hashTaggedLock, true);
+        assertThat(lockService.acquireLock(KEY)).isEqualTo(DistributedLockService.Acquisition.ACQUIRED);
+
+        assertThat(onOtherThread(() -> lockService.acquireLock(KEY, Duration.ofMillis(50), Duration.ofSeconds(1))))
+                .isEqualTo(DistributedLockService.Acquisition.TIMED_OUT);
+
+        // Only the holder reached Redis
+        verify(plainLock).tryLockAsync(anyLong(), anyLong(), eq(TimeUnit.MILLISECONDS), anyLong());
+        assertThat(lockService.localContentionRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void releaseHandsTheStripeToTheNextRequest() throws Exception {
+        lockable(plainLock, true);
+        lockable(hashTaggedLock, true);
+        when(plainLock.isHeldByThread(anyLong())).thenReturn(true);
+        when(hashTaggedLock.isHeldByThread(anyLong())).thenReturn(true);
+        lockService.acquireLock(KEY);
+
+        lockService.releaseLock(KEY);
+
+        assertThat(onOtherThread(() -> lockService.acquireLock(KEY, Duration.ofMillis(50), Duration.ofSeconds(1))))
+                .isEqualTo(DistributedLockService.Acquisition.ACQUIRED);
+    }
+
+    private static <T> T onOtherThread(Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(task).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void lockable(RLock lock, boolean free) {
+        when(lock.tryLockAsync(anyLong(), anyLong(), eq(TimeUnit.MILLISECONDS), anyLong()))
+                .thenReturn(new CompletableFutureWrapper<>(free));
+    }
+}
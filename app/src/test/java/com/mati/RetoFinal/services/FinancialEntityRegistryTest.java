@@ -0,0 +1,140 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.models.FinancialEntity;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.repositories.FinancialEntityRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class FinancialEntityRegistryTest {
+
+    private final FinancialEntityRepository financialEntityRepository = mock(FinancialEntityRepository.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final FinancialEntity active = entity("E1", true);
+    private final FinancialEntity inactive = entity("E2", false);
+    private FinancialEntityRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        when(financialEntityRepository.findAll()).thenReturn(List.of(active, inactive));
+        when(financialEntityRepository.findByEntityCodeAndActive(anyString())).thenReturn(Optional.empty());
+
+        registry = new FinancialEntityRegistry(
+                financialEntityRepository,
+                redisTemplate,
+                mock(RedisMessageListenerContainer.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(registry, "enabled", true);
+        ReflectionTestUtils.setField(registry, "refreshInterval", Duration.ofSeconds(60));
+        registry.init();
+        ReflectionTestUtils.invokeMethod(registry, "reload", false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    void activeEntitiesAreResolvedFromTheSnapshot() {
+        assertThat(registry.findActive("E1")).containsSame(active);
+        verify(financialEntityRepository, never()).findByEntityCodeAndActive(anyString());
+        assertThat(registry.getStats()).containsEntry("hits", 1L).containsEntry("misses", 0L);
+    }
+
+    @Test
+    void inactiveEntitiesAreRejectedFromTheSnapshot() {
+        assertThat(registry.findActive("E2")).isEmpty();
+        assertThat(registry.findActiveCached("E2")).isEmpty();
+        verify(financialEntityRepository, never()).findByEntityCodeAndActive(anyString());
+    }
+
+    @Test
+    void unknownCodesFallBackToTheDatabaseOnce() {
+        FinancialEntity created = entity("E3", true);
+        when(financialEntityRepository.findByEntityCodeAndActive("E3")).thenReturn(Optional.of(created));
+
+        assertThat(registry.findActive("E3")).containsSame(created);
+        assertThat(registry.findActive("E3")).containsSame(created);
+
+        verify(financialEntityRepository, times(1)).findByEntityCodeAndActive("E3");
+        assertThat(registry.findActiveCached("E3")).containsSame(created);
+    }
+
+    @Test
+    void disabledRegistryAlwaysQueriesTheDatabase() {
+        ReflectionTestUtils.setField(registry, "enabled", false);
+        when(financialEntityRepository.findByEntityCodeAndActive("E1")).thenReturn(Optional.of(active));
+
+        assertThat(registry.findActive("E1")).containsSame(active);
+        assertThat(registry.findActiveCached("E1")).isEmpty();
+        verify(financialEntityRepository).findByEntityCodeAndActive("E1");
+    }
+
+    @Test
+    void findByIdIncludesInactiveEntities() {
+        assertThat(registry.findById(inactive.getEntityId())).containsSame(inactive);
+        verify(financialEntityRepository, never()).findById(inactive.getEntityId());
+    }
+
+    @Test
+    void lazyEntityCodeIsReadFromTheSnapshot() {
+        LazyInitializer initializer = mock(LazyInitializer.class);
+        when(initializer.isUninitialized()).thenReturn(true);
+        when(initializer.getIdentifier()).thenReturn(active.getEntityId());
+        FinancialEntity proxy = mock(FinancialEntity.class, withSettings().extraInterfaces(HibernateProxy.class));
+        when(((HibernateProxy) proxy).asHibernateProxy()).thenReturn((HibernateProxy) proxy);
+        when(((HibernateProxy) proxy).getHibernateLazyInitializer()).thenReturn(initializer);
+
+        assertThat(registry.entityCodeOf(Key.builder().financialEntity(proxy).build())).isEqualTo("E1");
+        verify(proxy, never()).getEntityCode();
+    }
+
+    @Test
+    void invalidationReloadsAndBroadcasts() throws InterruptedException {
+        FinancialEntity deactivated = entity("E1", false);
+        deactivated.setEntityId(active.getEntityId());
+        when(financialEntityRepository.findAll()).thenReturn(List.of(deactivated, inactive));
+
+        registry.invalidate("E1");
+
+        verify(redisTemplate).convertAndSend("entities:events", "E1");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.findActiveCached("E1").isPresent() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(registry.findActiveCached("E1")).isEmpty();
+        verify(financialEntityRepository, times(2)).findAll();
+    }
+
+    private static FinancialEntity entity(String entityCode, boolean isActive) {
+        return FinancialEntity.builder()
+                .entityId(UUID.randomUUID())
+                .entityCode(entityCode)
+                .isActive(isActive)
+                .build();
+    }
+}
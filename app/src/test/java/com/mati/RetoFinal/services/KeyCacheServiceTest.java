@@ -0,0 +1,196 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.models.KeyStatus;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.mockito.InOrder;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeyCacheServiceTest {
+
+    private static final RedisSystemException WRONGTYPE = new RedisSystemException("Error in execution",
+            new RedisCommandExecutionException("WRONGTYPE Operation against a key holding the wrong kind of value"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> replicaTemplate = mock(RedisTemplate.class);
+    private final RedisCircuitBreaker circuitBreaker = mock(RedisCircuitBreaker.class);
+    private final RedisConnection connection = mock(RedisConnection.class);
+    private final RedisStringCommands stringCommands = mock(RedisStringCommands.class);
+    private final RedisHashCommands hashCommands = mock(RedisHashCommands.class);
+    private final NearCacheService nearCache = mock(NearCacheService.class);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"json", "binary"})
+    void decodesEntriesWrittenWithEitherCodec(String configuredCodec) {
+        KeyCacheService service = service(configuredCodec, "string");
+        KeyCacheDto dto = dto();
+
+        assertThat(service.decode(new BinaryKeyCacheCodec().encode(dto))).isEqualTo(dto);
+        assertThat(service.decode(new JsonKeyCacheCodec(objectMapper).encode(dto))).isEqualTo(dto);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"json", "binary"})
+    void treatsUnknownEncodingsAsMissing(String configuredCodec) {
+        KeyCacheService service = service(configuredCodec, "string");
+
+        assertThat(service.decode("user@example.com".getBytes(StandardCharsets.UTF_8))).isNull();
+        assertThat(service.decode(new byte[0])).isNull();
+        assertThat(service.decode(null)).isNull();
+    }
+
+    @Test
+    void hashStorageReadsAStringEntryWrittenBeforeTheSwitch() {
+        KeyCacheService service = service("binary", "hash");
+        KeyCacheDto dto = dto();
+        when(hashCommands.hGetAll(any())).thenThrow(WRONGTYPE);
+        when(stringCommands.get(any())).thenReturn(new BinaryKeyCacheCodec().encode(dto));
+
+        assertThat(service.getKeyDto(dto.getKeyValue())).contains(dto);
+    }
+
+    @Test
+    void stringStorageReadsAHashEntryWrittenBeforeTheSwitch() {
+        KeyCacheService service = service("json", "string");
+        KeyCacheDto dto = dto();
+        when(stringCommands.get(any())).thenThrow(WRONGTYPE);
+        when(hashCommands.hGetAll(any())).thenReturn(new BinaryKeyCacheCodec().toHash(dto));
+
+        assertThat(service.getKeyDto(dto.getKeyValue())).contains(dto);
+    }
+
+    @Test
+    void otherRedisErrorsAreStillMisses() {
+        KeyCacheService service = service("json", "string");
+        when(stringCommands.get(any())).thenThrow(new RedisSystemException("Connection reset", null));
+
+        assertThat(service.getKeyDto("user@example.com")).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    void evictDeletesFromRedisBeforeInvalidatingNearCaches() {
+        KeyCacheService service = service("json", "string");
+
+        service.evict("user@example.com");
+
+        InOrder inOrder = inOrder(redisTemplate, nearCache);
+        inOrder.verify(redisTemplate).delete(List.of("key:{user@example.com}", "key:user@example.com"));
+        inOrder.verify(nearCache).invalidate("user@example.com");
+    }
+
+    @Test
+    void evictAllDeletesFromRedisBeforeInvalidatingNearCaches() {
+        KeyCacheService service = service("json", "string");
+
+        service.evictAll(List.of("user@example.com"));
+
+        InOrder inOrder = inOrder(redisTemplate, nearCache);
+        inOrder.verify(redisTemplate).delete(List.of("key:{user@example.com}", "key:user@example.com"));
+        inOrder.verify(nearCache).invalidate("user@example.com");
+    }
+
+    @Test
+    void replicaReadsGoToTheReadTemplate() {
+        KeyCacheService service = service("json", "string", "replica-preferred");
+
+        service.getKeyDto("user@example.com");
+
+        verify(replicaTemplate).execute(any(RedisCallback.class));
+        verify(redisTemplate, never()).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    void recentlyWrittenKeysAreReadFromMasters() {
+        KeyCacheService service = service("json", "string", "replica-preferred");
+
+        service.evict("user@example.com");
+        service.getKeyDto("user@example.com");
+
+        verify(redisTemplate).execute(any(RedisCallback.class));
+        verify(replicaTemplate, never()).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    void recognisesWrongTypeThroughWrappingExceptions() {
+        assertThat(KeyCacheService.isWrongType(new CompletionException(WRONGTYPE))).isTrue();
+        assertThat(KeyCacheService.isWrongType(new RedisSystemException("Connection reset", null))).isFalse();
+    }
+
+    private KeyCacheService service(String codecName, String storage) {
+        return service(codecName, storage, "master");
+    }
+
+    @SuppressWarnings("unchecked")
+    private KeyCacheService service(String codecName, String storage, String readFrom) {
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(true);
+        when(circuitBreaker.call(any())).thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(0)).get());
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        when(connection.hashCommands()).thenReturn(hashCommands);
+        for (RedisTemplate<String, String> template : List.of(redisTemplate, replicaTemplate)) {
+            when(template.execute(any(RedisCallback.class)))
+                    .thenAnswer(invocation -> ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection));
+        }
+
+        KeyCacheService service = new KeyCacheService(
+                redisTemplate,
+                "master".equals(readFrom) ? redisTemplate : replicaTemplate,
+                objectMapper,
+                nearCache,
+                new SimpleMeterRegistry(),
+                circuitBreaker,
+                new RedisKeyNames(true));
+        ReflectionTestUtils.setField(service, "codecName", codecName);
+        ReflectionTestUtils.setField(service, "storage", storage);
+        ReflectionTestUtils.setField(service, "pipelineBatchSize", 500);
+        ReflectionTestUtils.setField(service, "redisTimeoutMillis", 3000L);
+        ReflectionTestUtils.setField(service, "readFrom", readFrom);
+        ReflectionTestUtils.setField(service, "readYourWritesWindow", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(service, "readYourWritesMaxSize", 1000L);
+        service.init();
+        return service;
+    }
+
+    private static KeyCacheDto dto() {
+        return KeyCacheDto.builder()
+                .keyId(UUID.randomUUID())
+                .keyValue("user@example.com")
+                .status(KeyStatus.ACTIVE)
+                .createdAt(LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_000_000))
+                .build();
+    }
+}
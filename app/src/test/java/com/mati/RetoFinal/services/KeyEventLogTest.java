@@ -0,0 +1,195 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mati.RetoFinal.dto.KeyEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeyEventLogTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final StreamOperations<String, Object, Object> streamOperations = mock(StreamOperations.class);
+    private final RedisStreamCommands streamCommands = mock(RedisStreamCommands.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private KeyEventLog keyEventLog;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.streamCommands()).thenReturn(streamCommands);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenAnswer(invocation -> {
+                    ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection);
+                    return List.of();
+                });
+        when(redisTemplate.<Object, Object>opsForStream()).thenReturn(streamOperations);
+
+        keyEventLog = new KeyEventLog(redisTemplate, objectMapper, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(keyEventLog, "enabled", true);
+        ReflectionTestUtils.setField(keyEventLog, "maxLength", 1_000L);
+        ReflectionTestUtils.setField(keyEventLog, "batchSize", 500);
+        ReflectionTestUtils.setField(keyEventLog, "bufferCapacity", 1);
+        ReflectionTestUtils.setField(keyEventLog, "flushInterval", Duration.ofMillis(50));
+        keyEventLog.init();
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void eventsAreBufferedOnlyOnceTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        keyEventLog.append(event("user@example.com"));
+        assertThat(keyEventLog.getStats()).containsEntry("buffered", 0);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(keyEventLog.getStats()).containsEntry("buffered", 1);
+    }
+
+    @Test
+    void rolledBackEventsAreNeverAppended() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        keyEventLog.append(event("user@example.com"));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(keyEventLog.getStats()).containsEntry("buffered", 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void appendNowPipelinesOneTrimmedXaddPerEvent() throws Exception {
+        KeyEvent first = event("a@example.com");
+
+        keyEventLog.appendNow(List.of(first, event("b@example.com")));
+
+        ArgumentCaptor<MapRecord<byte[], byte[], byte[]>> records = ArgumentCaptor.forClass(MapRecord.class);
+        verify(redisTemplate).executePipelined(any(RedisCallback.class));
+        verify(streamCommands, times(2)).xAdd(records.capture(), eq(XAddOptions.maxlen(1_000).approximateTrimming(true)));
+        MapRecord<byte[], byte[], byte[]> record = records.getAllValues().get(0);
+        assertThat(new String(record.getStream(), StandardCharsets.UTF_8)).isEqualTo(KeyEventLog.STREAM);
+        assertThat(fields(record)).containsEntry("eventType", KeyEvent.KEY_REGISTERED).containsEntry("entityCode", "E1");
+        assertThat(keyEventLog.toEvent(StreamRecords.<String, Object, Object>mapBacked(Map.of("payload", fields(record).get("payload")))
+                .withStreamKey(KeyEventLog.STREAM))).isEqualTo(first);
+        assertThat(keyEventLog.getStats()).containsEntry("appended", 2L);
+    }
+
+    @Test
+    void fullBufferAppendsOnTheCallerThread() {
+        keyEventLog.append(event("a@example.com"));
+        keyEventLog.append(event("b@example.com"));
+
+        verify(streamCommands).xAdd(any(MapRecord.class), any(XAddOptions.class));
+        assertThat(keyEventLog.getStats())
+                .containsEntry("buffered", 1)
+                .containsEntry("overflowed", 1L)
+                .containsEntry("appended", 1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void overflowThatCannotReachRedisIsCountedAsDropped() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenThrow(new QueryTimeoutException("Redis timed out"));
+
+        keyEventLog.append(event("a@example.com"));
+        keyEventLog.append(event("b@example.com"));
+
+        assertThat(keyEventLog.getStats()).containsEntry("dropped", 1L).containsEntry("appended", 0L);
+    }
+
+    @Test
+    void disabledLogAppendsNothing() throws Exception {
+        ReflectionTestUtils.setField(keyEventLog, "enabled", false);
+
+        keyEventLog.append(event("a@example.com"));
+        keyEventLog.appendNow(List.of(event("b@example.com")));
+
+        assertThat(keyEventLog.getStats()).containsEntry("buffered", 0);
+        verify(streamCommands, never()).xAdd(any(MapRecord.class), any(XAddOptions.class));
+    }
+
+    @Test
+    void replayReturnsEntriesWithTheirIds() throws Exception {
+        KeyEvent event = event("user@example.com");
+        MapRecord<String, Object, Object> record = StreamRecords
+                .<String, Object, Object>mapBacked(Map.of("payload", objectMapper.writeValueAsString(event)))
+                .withStreamKey(KeyEventLog.STREAM)
+                .withId(RecordId.of("1714558530000-0"));
+        when(streamOperations.range(eq(KeyEventLog.STREAM), any(), any())).thenReturn(List.of(record));
+
+        assertThat(keyEventLog.replay("0", 10)).singleElement().satisfies(entry -> {
+            assertThat(entry).containsEntry("id", "1714558530000-0");
+            assertThat(entry).containsEntry("event", event);
+        });
+    }
+
+    @Test
+    void replayRejectsMalformedIdsAndCounts() {
+        assertThatThrownBy(() -> keyEventLog.replay("latest", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid event id: latest");
+        assertThatThrownBy(() -> keyEventLog.replay("0", 1001))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("count must be between 1 and 1000");
+    }
+
+    private static Map<String, String> fields(MapRecord<byte[], byte[], byte[]> record) {
+        return record.getValue().entrySet().stream().collect(Collectors.toMap(
+                entry -> new String(entry.getKey(), StandardCharsets.UTF_8),
+                entry -> new String(entry.getValue(), StandardCharsets.UTF_8)));
+    }
+
+    private static KeyEvent event(String keyValue) {
+        return KeyEvent.builder()
+                .eventId(UUID.randomUUID())
+                .eventType(KeyEvent.KEY_REGISTERED)
+                .keyId(UUID.randomUUID())
+                .keyValue(keyValue)
+                .entityCode("E1")
+                .timestamp(LocalDateTime.of(2024, 5, 1, 10, 15, 30))
+                .build();
+    }
+}
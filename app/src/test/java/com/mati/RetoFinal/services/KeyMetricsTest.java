@@ -0,0 +1,95 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.CreateKeyOutcome;
+import com.mati.RetoFinal.dto.CreateKeyResponse;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private KeyMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new KeyMetrics(meterRegistry);
+        ReflectionTestUtils.setField(metrics, "percentileHistograms", true);
+    }
+
+    @Test
+    void stagesAreTimedWithTheirOutcome() {
+        assertThat(metrics.stage(KeyMetrics.CREATE, "cache.get", () -> "hit")).isEqualTo("hit");
+        assertThatThrownBy(() -> metrics.stage(KeyMetrics.CREATE, "insert", (Runnable) () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(stage("cache.get", "success").count()).isEqualTo(1);
+        assertThat(stage("insert", "error").count()).isEqualTo(1);
+    }
+
+    @Test
+    void createsAreTaggedBySourceAndOutcome() {
+        metrics.recordCreate(metrics.start(), CreateKeyResponse.created(UUID.randomUUID(), "a@example.com", 1.0));
+        metrics.recordCreate(metrics.start(), CreateKeyResponse.exists(UUID.randomUUID(), "b@example.com", 1.0, "cache"));
+        metrics.recordCreate(metrics.start(), CreateKeyResponse.rejected(CreateKeyOutcome.INVALID, "Invalid key format", 1.0));
+
+        assertThat(request(KeyMetrics.CREATE, "created", "created").count()).isEqualTo(1);
+        assertThat(request(KeyMetrics.CREATE, "cache", "exists_cache").count()).isEqualTo(1);
+        assertThat(request(KeyMetrics.CREATE, "rejected", "invalid").count()).isEqualTo(1);
+    }
+
+    @Test
+    void findsAreTaggedBySource() {
+        metrics.recordFind(metrics.start(), "negative");
+        metrics.recordFind(metrics.start(), "error");
+
+        assertThat(request(KeyMetrics.FIND, "negative", "success").count()).isEqualTo(1);
+        assertThat(request(KeyMetrics.FIND, "error", "error").count()).isEqualTo(1);
+    }
+
+    @Test
+    void timersPublishPercentileHistograms() {
+        PrometheusMeterRegistry prometheusRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        KeyMetrics prometheusMetrics = new KeyMetrics(prometheusRegistry);
+        ReflectionTestUtils.setField(prometheusMetrics, "percentileHistograms", true);
+
+        prometheusMetrics.recordFind(prometheusMetrics.start(), "cache");
+
+        assertThat(prometheusRegistry.scrape()).contains("keys_requests_seconds_bucket{");
+    }
+
+    @Test
+    void lockProvidersAreCounted() {
+        metrics.recordLockProvider(DistributedLockService.PROVIDER_ADVISORY);
+        metrics.recordLockProvider(DistributedLockService.PROVIDER_ADVISORY);
+
+        assertThat(meterRegistry.get("keys.lock.provider.uses").tag("provider", "advisory").counter().count())
+                .isEqualTo(2);
+    }
+
+    private Timer stage(String stage, String outcome) {
+        return meterRegistry.get("keys.stage.duration")
+                .tag("operation", KeyMetrics.CREATE)
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .timer();
+    }
+
+    private Timer request(String operation, String source, String outcome) {
+        return meterRegistry.get("keys.requests")
+                .tag("operation", operation)
+                .tag("source", source)
+                .tag("outcome", outcome)
+                .timer();
+    }
+}
@@ -0,0 +1,130 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.dto.KeyEvent;
+import com.mati.RetoFinal.models.KeyOutboxEntry;
+import com.mati.RetoFinal.models.KeyStatus;
+import com.mati.RetoFinal.repositories.KeyOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class KeyOutboxServiceTest {
+
+    private final KeyOutboxRepository outboxRepository = mock(KeyOutboxRepository.class);
+    private final KeyCacheService keyCacheService = mock(KeyCacheService.class);
+    private final KeyEventLog keyEventLog = mock(KeyEventLog.class);
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private KeyOutboxService outboxService;
+
+    @AfterEach
+    void shutdown() {
+        if (outboxService != null) {
+            ReflectionTestUtils.invokeMethod(outboxService, "shutdown");
+        }
+    }
+
+    @Test
+    void recordSavesAnEntryInsteadOfTouchingTheCache() throws Exception {
+        outboxService = outboxService(true);
+        KeyEvent event = event(KeyEvent.KEY_UPDATED);
+
+        outboxService.record(event);
+
+        ArgumentCaptor<KeyOutboxEntry> entry = ArgumentCaptor.forClass(KeyOutboxEntry.class);
+        verify(outboxRepository).save(entry.capture());
+        assertThat(entry.getValue().getKeyValue()).isEqualTo(event.getKeyValue());
+        assertThat(entry.getValue().getEventType()).isEqualTo(KeyEvent.KEY_UPDATED);
+        assertThat(objectMapper.readValue(entry.getValue().getPayload(), KeyEvent.class)).isEqualTo(event);
+        verifyNoInteractions(keyCacheService, keyEventLog);
+    }
+
+    @Test
+    void disabledOutboxEvictsAndAppendsRightAway() {
+        outboxService = outboxService(false);
+        KeyEvent event = event(KeyEvent.KEY_DELETED);
+
+        outboxService.record(event);
+
+        verify(keyCacheService).evict(event.getKeyValue());
+        verify(keyEventLog).append(event);
+        verify(outboxRepository, never()).save(any());
+    }
+
+    @Test
+    void relayEvictsKeysAndAppendsEventsOfTakenEntries() throws Exception {
+        outboxService = outboxService(true);
+        KeyEvent first = event(KeyEvent.KEY_UPDATED);
+        KeyEvent second = event(KeyEvent.KEY_DELETED);
+        when(outboxRepository.takeOldest(anyInt())).thenReturn(List.of(
+                entry(first, outboxService.toPayload(first)),
+                entry(second, outboxService.toPayload(second)),
+                entry(second, "{not json")));
+
+        Integer relayed = ReflectionTestUtils.invokeMethod(outboxService, "relayBatch");
+
+        assertThat(relayed).isEqualTo(3);
+        verify(keyCacheService).evictAll(Set.of(first.getKeyValue(), second.getKeyValue()));
+        verify(keyEventLog).appendNow(List.of(first, second));
+    }
+
+    @Test
+    void relayWithNothingPendingDoesNothing() {
+        outboxService = outboxService(true);
+        when(outboxRepository.takeOldest(anyInt())).thenReturn(List.of());
+
+        Integer relayed = ReflectionTestUtils.invokeMethod(outboxService, "relayBatch");
+
+        assertThat(relayed).isZero();
+        verifyNoInteractions(keyCacheService, keyEventLog);
+    }
+
+    private KeyOutboxService outboxService(boolean enabled) {
+        KeyOutboxService service = new KeyOutboxService(outboxRepository, keyCacheService, keyEventLog,
+                objectMapper, mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", enabled);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        ReflectionTestUtils.setField(service, "pollInterval", Duration.ofMillis(200));
+        service.init();
+        return service;
+    }
+
+    private static KeyEvent event(String eventType) {
+        return KeyEvent.of(eventType, KeyCacheDto.builder()
+                .keyId(UUID.randomUUID())
+                .keyValue(UUID.randomUUID() + "@example.com")
+                .status(KeyStatus.ACTIVE)
+                .entityCode("BANK01")
+                .build());
+    }
+
+    private static KeyOutboxEntry entry(KeyEvent event, String payload) {
+        return KeyOutboxEntry.builder()
+                .keyValue(event.getKeyValue())
+                .eventType(event.getEventType())
+                .payload(payload)
+                .build();
+    }
+}
@@ -0,0 +1,314 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.BatchCreateKeyResponse;
+import com.mati.RetoFinal.dto.CreateKeyOutcome;
+import com.mati.RetoFinal.dto.CreateKeyRequest;
+import com.mati.RetoFinal.dto.CreateKeyResponse;
+import com.mati.RetoFinal.models.FinancialEntity;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.models.KeyStatus;
+import com.mati.RetoFinal.repositories.KeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeyServiceTest {
+
+    private final KeyRepository keyRepository = mock(KeyRepository.class);
+    private final FinancialEntityRegistry entityRegistry = mock(FinancialEntityRegistry.class);
+    private final KeyCacheService keyCacheService = mock(KeyCacheService.class);
+    private final DistributedLockService lockService = mock(DistributedLockService.class);
+    private final RequestCoalescer requestCoalescer = mock(RequestCoalescer.class);
+    private final WriteBehindService writeBehindService = mock(WriteBehindService.class);
+    private final RedisCircuitBreaker redisCircuitBreaker = mock(RedisCircuitBreaker.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FinancialEntity entity = FinancialEntity.builder()
+            .entityId(UUID.randomUUID())
+            .entityCode("E1")
+            .build();
+    private KeyService keyService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(keyCacheService.getKeyDto(anyString())).thenReturn(Optional.empty());
+        when(keyCacheService.getKeyDtos(anyCollection())).thenReturn(Map.of());
+        when(keyRepository.findWithEntityByKeyValueIn(anyCollection())).thenReturn(List.of());
+        when(entityRegistry.findActive("E1")).thenReturn(Optional.of(entity));
+        when(entityRegistry.entityCodeOf(any())).thenReturn("E1");
+        when(redisCircuitBreaker.limitDatabaseFallback(any()))
+                .thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(0)).get());
+        when(requestCoalescer.execute(anyString(), anyString(), any(), any()))
+                .thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(2)).get());
+        when(writeBehindService.acceptsWrites()).thenReturn(true);
+
+        keyService = new KeyService(
+                keyRepository,
+                entityRegistry,
+                keyCacheService,
+                lockService,
+                new KeyValidator(keyRepository),
+                mock(NegativeLookupService.class),
+                mock(ReadYourWritesTracker.class),
+                mock(PlatformTransactionManager.class),
+                requestCoalescer,
+                writeBehindService,
+                mock(KeyEventPublisher.class),
+                mock(KeyOutboxService.class),
+                new KeyMetrics(meterRegistry),
+                redisCircuitBreaker);
+        ReflectionTestUtils.setField(keyService, "createStrategy", "lock");
+        ReflectionTestUtils.setField(keyService, "maxBatchSize", 500);
+        ReflectionTestUtils.setField(keyService, "lockTimeoutRetryAfter", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(keyService, "unavailableRetryAfter", Duration.ofSeconds(5));
+        keyService.init();
+    }
+
+    @Test
+    void batchInsertsMissingKeysInOneStatementBatch() {
+        when(keyRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BatchCreateKeyResponse response = keyService.createKeys(List.of(request("a@example.com"), request("b@example.com")));
+
+        assertThat(response.getResults()).extracting(CreateKeyResponse::getOutcome)
+                .containsExactly(CreateKeyOutcome.CREATED, CreateKeyOutcome.CREATED);
+        verify(keyRepository).saveAll(any());
+        verify(writeBehindService, never()).claim(anyString(), any());
+    }
+
+    @Test
+    void writeBehindBatchClaimsEachKeyLikeASingleCreate() {
+        when(writeBehindService.isEnabled()).thenReturn(true);
+        when(writeBehindService.claim(anyString(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+
+        BatchCreateKeyResponse response = keyService.createKeys(List.of(request("a@example.com"), request("b@example.com")));
+
+        assertThat(response.getResults()).extracting(CreateKeyResponse::getOutcome)
+                .containsExactly(CreateKeyOutcome.CREATED, CreateKeyOutcome.CREATED);
+        verify(writeBehindService).claim(eq("a@example.com"), any());
+        verify(writeBehindService).claim(eq("b@example.com"), any());
+        verify(keyRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void writeBehindBatchAnswersWithThePendingOwner() {
+        UUID owner = UUID.randomUUID();
+        when(writeBehindService.isEnabled()).thenReturn(true);
+        when(writeBehindService.claim(anyString(), any())).thenReturn(owner);
+
+        BatchCreateKeyResponse response = keyService.createKeys(List.of(request("a@example.com")));
+
+        assertThat(response.getResults()).singleElement().satisfies(result -> {
+            assertThat(result.getOutcome()).isEqualTo(CreateKeyOutcome.EXISTS_PENDING);
+            assertThat(result.getKeyId()).isEqualTo(owner);
+            assertThat(result.getSource()).isEqualTo("write-behind");
+        });
+    }
+
+    @Test
+    void saturatedDatabaseFallbackRejectsPendingKeysAsBackendDown() {
+        doThrow(new DataAccessResourceFailureException("Redis circuit is OPEN and the database fallback is saturated"))
+                .when(redisCircuitBreaker).limitDatabaseFallback(any());
+
+        BatchCreateKeyResponse response = keyService.createKeys(List.of(request("a@example.com"), request("")));
+
+        assertThat(response.getResults()).extracting(CreateKeyResponse::getOutcome)
+                .containsExactly(CreateKeyOutcome.BACKEND_DOWN, CreateKeyOutcome.INVALID);
+        assertThat(response.getResults().get(0).getRetryAfter()).isEqualTo(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void eachKeyOfABatchIsRecordedAsACreateRequest() {
+        Key existing = Key.builder().keyId(UUID.randomUUID()).keyValue("a@example.com").financialEntity(entity).build();
+        when(keyRepository.findWithEntityByKeyValueIn(anyCollection())).thenReturn(List.of(existing));
+
+        keyService.createKeys(List.of(request("a@example.com"), request("")));
+
+        assertThat(requests("database")).isEqualTo(1);
+        assertThat(requests("rejected")).isEqualTo(1);
+    }
+
+    @Test
+    void insertStrategyCreatesWithoutTakingALock() {
+        ReflectionTestUtils.setField(keyService, "createStrategy", "insert");
+        when(keyRepository.insertIfAbsent(any(), anyString(), any(), any(), any(), any())).thenReturn(1);
+
+        CreateKeyResponse response = keyService.createKey(request("a@example.com"));
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.CREATED);
+        verify(keyRepository).insertIfAbsent(eq(response.getKeyId()), eq("a@example.com"), any(), any(),
+                eq(entity.getEntityId()), any());
+        verify(keyCacheService).putKeyDto(eq("a@example.com"), any());
+        verify(lockService, never()).acquireLock(anyString());
+        verify(keyRepository, never()).save(any());
+    }
+
+    @Test
+    void insertConflictAnswersWithTheRegisteredKey() {
+        ReflectionTestUtils.setField(keyService, "createStrategy", "insert");
+        Key existing = key("a@example.com", KeyStatus.ACTIVE);
+        when(keyRepository.insertIfAbsent(any(), anyString(), any(), any(), any(), any())).thenReturn(0);
+        when(keyRepository.findWithEntityByKeyValue("a@example.com")).thenReturn(Optional.of(existing));
+
+        CreateKeyResponse response = keyService.createKey(request("a@example.com"));
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.EXISTS_DATABASE);
+        assertThat(response.getKeyId()).isEqualTo(existing.getKeyId());
+        verify(keyCacheService).putKeyDto(eq("a@example.com"), any());
+    }
+
+    @Test
+    void insertConflictWithAnInactiveKeyIsAConflict() {
+        ReflectionTestUtils.setField(keyService, "createStrategy", "insert");
+        when(keyRepository.insertIfAbsent(any(), anyString(), any(), any(), any(), any())).thenReturn(0);
+        when(keyRepository.findWithEntityByKeyValue("a@example.com"))
+                .thenReturn(Optional.of(key("a@example.com", KeyStatus.SUSPENDED)));
+
+        CreateKeyResponse response = keyService.createKey(request("a@example.com"));
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.CONFLICT);
+        verify(keyCacheService, never()).putKeyDto(anyString(), any());
+    }
+
+    @Test
+    void invalidKeysAreRejectedBeforeTheCache() {
+        CreateKeyResponse response = keyService.createKey(request(""));
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.INVALID);
+        verify(keyCacheService, never()).getKeyDto(anyString());
+        verify(lockService, never()).acquireLock(anyString());
+    }
+
+    @Test
+    void lockTimeoutAsksTheCallerToRetry() {
+        when(lockService.acquireLock("a@example.com")).thenReturn(DistributedLockService.Acquisition.TIMED_OUT);
+
+        CreateKeyResponse response = keyService.createKey(request("a@example.com"));
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.LOCK_TIMEOUT);
+        assertThat(response.getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+        verify(keyRepository, never()).save(any());
+    }
+
+    @Test
+    void unknownEntityIsRejectedWithoutAnInsert() {
+        when(lockService.acquireLock("a@example.com")).thenReturn(DistributedLockService.Acquisition.ACQUIRED);
+        CreateKeyRequest request = CreateKeyRequest.builder()
+                .keyValue("a@example.com")
+                .entityCode("E9")
+                .build();
+
+        CreateKeyResponse response = keyService.createKey(request);
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.ENTITY_MISSING);
+        verify(keyRepository, never()).save(any());
+        verify(lockService).releaseLock("a@example.com");
+    }
+
+    @Test
+    void unavailableLockFallsBackToAnAdvisoryLock() {
+        when(lockService.acquireLock("a@example.com")).thenReturn(DistributedLockService.Acquisition.UNAVAILABLE);
+        when(lockService.fallbackProvider()).thenReturn(DistributedLockService.PROVIDER_ADVISORY);
+        when(keyRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        CreateKeyResponse response = keyService.createKey(request("a@example.com"));
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.CREATED);
+        InOrder order = inOrder(keyRepository);
+        order.verify(keyRepository).lockKeyValue("a@example.com");
+        order.verify(keyRepository).findWithEntityByKeyValue("a@example.com");
+        order.verify(keyRepository).save(any());
+        verify(lockService, never()).releaseLock(anyString());
+        assertThat(lockProviderUses(DistributedLockService.PROVIDER_ADVISORY)).isEqualTo(1);
+    }
+
+    @Test
+    void unavailableLockFallsBackToTheInsertPath() {
+        when(lockService.acquireLock("a@example.com")).thenReturn(DistributedLockService.Acquisition.UNAVAILABLE);
+        when(lockService.fallbackProvider()).thenReturn(DistributedLockService.PROVIDER_INSERT);
+        when(keyRepository.insertIfAbsent(any(), anyString(), any(), any(), any(), any())).thenReturn(1);
+
+        CreateKeyResponse response = keyService.createKey(request("a@example.com"));
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.CREATED);
+        verify(keyRepository, never()).lockKeyValue(anyString());
+        assertThat(lockProviderUses(DistributedLockService.PROVIDER_INSERT)).isEqualTo(1);
+    }
+
+    @Test
+    void insertThatLosesTheUniqueIndexAnswersWithTheWinner() {
+        Key winner = key("a@example.com", KeyStatus.ACTIVE);
+        when(lockService.acquireLock("a@example.com")).thenReturn(DistributedLockService.Acquisition.ACQUIRED);
+        when(keyRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key value"));
+        when(keyRepository.findWithEntityByKeyValue("a@example.com")).thenReturn(Optional.empty(), Optional.of(winner));
+
+        CreateKeyResponse response = keyService.createKey(request("a@example.com"));
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.EXISTS_DATABASE);
+        assertThat(response.getKeyId()).isEqualTo(winner.getKeyId());
+        InOrder order = inOrder(keyCacheService, lockService);
+        order.verify(keyCacheService).evict("a@example.com");
+        order.verify(keyCacheService).putKeyDto(eq("a@example.com"), any());
+        order.verify(lockService).releaseLock("a@example.com");
+    }
+
+    @Test
+    void conflictWithoutAWinnerIsAnError() {
+        when(lockService.acquireLock("a@example.com")).thenReturn(DistributedLockService.Acquisition.ACQUIRED);
+        when(keyRepository.save(any())).thenThrow(new DataIntegrityViolationException("check constraint"));
+
+        CreateKeyResponse response = keyService.createKey(request("a@example.com"));
+
+        assertThat(response.getOutcome()).isEqualTo(CreateKeyOutcome.ERROR);
+        verify(lockService).releaseLock("a@example.com");
+    }
+
+    private double lockProviderUses(String provider) {
+        return meterRegistry.get("keys.lock.provider.uses").tag("provider", provider).counter().count();
+    }
+
+    private Key key(String keyValue, KeyStatus status) {
+        return Key.builder()
+                .keyId(UUID.randomUUID())
+                .keyValue(keyValue)
+                .status(status)
+                .financialEntity(entity)
+                .build();
+    }
+
+    private long requests(String source) {
+        return meterRegistry.find("keys.requests").tag("operation", KeyMetrics.CREATE).tag("source", source)
+                .timers().stream().mapToLong(timer -> timer.count()).sum();
+    }
+
+    private static CreateKeyRequest request(String keyValue) {
+        return CreateKeyRequest.builder()
+                .keyValue(keyValue)
+                .entityCode("E1")
+                .build();
+    }
+}
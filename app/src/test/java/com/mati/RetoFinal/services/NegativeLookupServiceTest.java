@@ -0,0 +1,155 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.repositories.KeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NegativeLookupServiceTest {
+
+    private final RedissonClient redissonClient = mock(RedissonClient.class);
+    private final KeyCacheService keyCacheService = mock(KeyCacheService.class);
+    private final RedisCircuitBreaker circuitBreaker = mock(RedisCircuitBreaker.class);
+    private final Map<String, RBloomFilter<String>> filters = new HashMap<>();
+    private NegativeLookupService negativeLookupService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redissonClient.getBloomFilter(anyString(), any(Codec.class)))
+                .thenAnswer(invocation -> filters.computeIfAbsent(invocation.getArgument(0), name -> mock(RBloomFilter.class)));
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(true);
+        when(circuitBreaker.call(any())).thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(0)).get());
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(circuitBreaker).run(any());
+
+        negativeLookupService = new NegativeLookupService(
+                redissonClient,
+                mock(RedisTemplate.class),
+                mock(RedisMessageListenerContainer.class),
+                mock(KeyRepository.class),
+                keyCacheService,
+                circuitBreaker,
+                mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(negativeLookupService, "enabled", true);
+        ReflectionTestUtils.setField(negativeLookupService, "expectedInsertions", 1_000L);
+        ReflectionTestUtils.setField(negativeLookupService, "falseProbability", 0.01);
+        ReflectionTestUtils.setField(negativeLookupService, "checkInterval", Duration.ofSeconds(1));
+        negativeLookupService.init();
+    }
+
+    @Test
+    void failsOpenWithoutAFilter() {
+        assertThat(negativeLookupService.isKnownAbsent("user@example.com")).isFalse();
+        verify(keyCacheService).hasTombstone("user@example.com");
+    }
+
+    @Test
+    void untrustedFilterIsNotConsulted() {
+        publish("current:10");
+
+        assertThat(negativeLookupService.isKnownAbsent("user@example.com")).isFalse();
+        verify(filter(10), never()).contains(anyString());
+    }
+
+    @Test
+    void trustedFilterRejectsUnknownKeys() {
+        publish("current:10");
+        trust();
+
+        assertThat(negativeLookupService.isKnownAbsent("user@example.com")).isTrue();
+        verify(keyCacheService, never()).hasTombstone(anyString());
+        assertThat(negativeLookupService.getStats()).containsEntry("bloomRejected", 1L);
+    }
+
+    @Test
+    void createdKeysAreAddedToTheCurrentAndNextGenerations() {
+        publish("current:10");
+        publish("next:20");
+
+        negativeLookupService.recordCreated("user@example.com");
+
+        verify(filter(10)).add("user@example.com");
+        verify(filter(20)).add("user@example.com");
+        verify(keyCacheService).evictTombstone("user@example.com");
+    }
+
+    @Test
+    void lateEventsNeverStepBackAGeneration() {
+        publish("current:20");
+        publish("current:10");
+        publish("next:15");
+
+        negativeLookupService.recordCreated("user@example.com");
+
+        assertThat(negativeLookupService.getStats()).containsEntry("generation", 20L);
+        assertThat(filters).doesNotContainKeys("bloom:keys:10", "bloom:keys:15");
+        verify(filter(20)).add("user@example.com");
+    }
+
+    @Test
+    void nextGenerationIsDroppedOnceItBecomesCurrent() {
+        publish("current:10");
+        publish("next:20");
+        publish("current:20");
+
+        negativeLookupService.recordCreated("user@example.com");
+
+        verify(filter(10), never()).add(anyString());
+        verify(filter(20)).add("user@example.com");
+    }
+
+    @Test
+    void missedAddStopsTrustingTheFilter() {
+        publish("current:10");
+        trust();
+        when(circuitBreaker.tryAcquirePermission()).thenReturn(false, true);
+
+        negativeLookupService.recordCreated("user@example.com");
+
+        assertThat(negativeLookupService.isKnownAbsent("other@example.com")).isFalse();
+        assertThat(negativeLookupService.getStats())
+                .containsEntry("trusted", false)
+                .containsEntry("unreportedMissedAdds", 1L);
+    }
+
+    private void publish(String body) {
+        negativeLookupService.onMessage(new DefaultMessage(
+                "bloom:keys:events".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    private void trust() {
+        ReflectionTestUtils.setField(negativeLookupService, "missedAdds", 0L);
+    }
+
+    private RBloomFilter<String> filter(long generation) {
+        return filters.get("bloom:keys:" + generation);
+    }
+}
@@ -0,0 +1,233 @@
+package com.mati.RetoFinal.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisCircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(50);
+    private static final int THREADS = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RedisCircuitBreaker breaker = breaker(true);
+
+    @Test
+    void staysClosedUntilMinimumCalls() {
+        failures(4);
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        successes(5);
+        failures(5);
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void staysClosedBelowFailureThreshold() {
+        successes(6);
+        failures(4);
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensWhenSlowCallRateReachesThreshold() {
+        successes(2);
+        for (int i = 0; i < 8; i++) {
+            breaker.onSuccess(System.nanoTime() - Duration.ofSeconds(1).toNanos());
+        }
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void opensOnceFailuresDisplaceSuccessesFromTheWindow() {
+        successes(6);
+        failures(4);
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+
+        failures(1);
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void callRecordsFailuresAndRethrows() {
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> breaker.call(() -> {
+                throw new IllegalStateException("down");
+            })).isInstanceOf(IllegalStateException.class);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void halfOpenLetsALimitedNumberOfProbesThrough() throws InterruptedException {
+        failures(5);
+        Thread.sleep(OPEN_DURATION.toMillis() * 2);
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void successfulProbesCloseTheCircuit() throws InterruptedException {
+        failures(5);
+        Thread.sleep(OPEN_DURATION.toMillis() * 2);
+
+        breaker.tryAcquirePermission();
+        breaker.tryAcquirePermission();
+        successes(2);
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void failedProbeReopensTheCircuit() throws InterruptedException {
+        failures(5);
+        Thread.sleep(OPEN_DURATION.toMillis() * 2);
+
+        breaker.tryAcquirePermission();
+        breaker.tryAcquirePermission();
+        successes(1);
+        failures(1);
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void limitsDatabaseFallbackOnlyWhileNotClosed() {
+        assertThat(breaker.limitDatabaseFallback(() -> breaker.limitDatabaseFallback(() -> "closed")))
+                .isEqualTo("closed");
+
+        failures(5);
+
+        assertThatThrownBy(() -> breaker.limitDatabaseFallback(() -> breaker.limitDatabaseFallback(() -> "open")))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(breaker.limitDatabaseFallback(() -> "open")).isEqualTo("open");
+    }
+
+    @Test
+    void disabledBreakerNeverOpens() {
+        RedisCircuitBreaker disabled = breaker(false);
+        for (int i = 0; i < 10; i++) {
+            disabled.onError(System.nanoTime());
+        }
+
+        assertThat(disabled.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+        assertThat(disabled.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void concurrentCallsKeepTheWindowExact() throws Exception {
+        concurrently(() -> successes(1000));
+
+        assertThat(breaker.getStats())
+                .containsEntry("windowCalls", 10)
+                .containsEntry("failureRate", 0.0f);
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void concurrentFailuresOpenTheCircuitOnce() throws Exception {
+        concurrently(() -> failures(1000));
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        assertThat(meterRegistry.get("keys.redis.breaker.transitions").tag("to", "open").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void concurrentCallersShareTheHalfOpenProbes() throws Exception {
+        successes(5);
+        failures(5);
+        Thread.sleep(OPEN_DURATION.toMillis() + 10);
+
+        AtomicInteger permitted = new AtomicInteger();
+        concurrently(() -> {
+            for (int i = 0; i < 100; i++) {
+                if (breaker.tryAcquirePermission()) {
+                    permitted.incrementAndGet();
+                }
+            }
+        });
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.HALF_OPEN);
+        assertThat(permitted).hasValue(2);
+    }
+
+    private static void concurrently(Runnable work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    work.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void successes(int count) {
+        for (int i = 0; i < count; i++) {
+            breaker.onSuccess(System.nanoTime());
+        }
+    }
+
+    private void failures(int count) {
+        for (int i = 0; i < count; i++) {
+            breaker.onError(System.nanoTime());
+        }
+    }
+
+    private RedisCircuitBreaker breaker(boolean enabled) {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(meterRegistry);
+        ReflectionTestUtils.setField(breaker, "enabled", enabled);
+        ReflectionTestUtils.setField(breaker, "windowSize", 10);
+        ReflectionTestUtils.setField(breaker, "minimumCalls", 5);
+        ReflectionTestUtils.setField(breaker, "failureRateThreshold", 50);
+        ReflectionTestUtils.setField(breaker, "slowCallDuration", Duration.ofMillis(250));
+        ReflectionTestUtils.setField(breaker, "slowCallRateThreshold", 80);
+        ReflectionTestUtils.setField(breaker, "openDuration", OPEN_DURATION);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 2);
+        ReflectionTestUtils.setField(breaker, "dbMaxConcurrency", 1);
+        ReflectionTestUtils.setField(breaker, "dbMaxWait", Duration.ofMillis(10));
+        breaker.init();
+        return breaker;
+    }
+}
@@ -0,0 +1,39 @@
+package com.mati.RetoFinal.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisKeyNamesTest {
+
+    private final RedisKeyNames plain = new RedisKeyNames(false);
+    private final RedisKeyNames hashTagged = new RedisKeyNames(true);
+
+    @Test
+    void usesPlainNamesUntilHashTagsAreSwitchedOn() {
+        assertThat(plain.cacheKey("user@example.com")).isEqualTo("key:user@example.com");
+        assertThat(plain.tombstoneKey("user@example.com")).isEqualTo("neg:key:user@example.com");
+        assertThat(plain.claimKey("user@example.com")).isEqualTo("claim:key:user@example.com");
+    }
+
+    @Test
+    void usesHashTaggedNamesOnceSwitchedOn() {
+        assertThat(hashTagged.cacheKey("user@example.com")).isEqualTo("key:{user@example.com}");
+        assertThat(hashTagged.tombstoneKey("user@example.com")).isEqualTo("neg:key:{user@example.com}");
+        assertThat(hashTagged.claimKey("user@example.com")).isEqualTo("claim:key:{user@example.com}");
+    }
+
+    @Test
+    void evictsUnderBothNamesInEitherMode() {
+        assertThat(plain.cacheKeys("v")).containsExactly("key:v", "key:{v}");
+        assertThat(hashTagged.cacheKeys("v")).containsExactly("key:{v}", "key:v");
+        assertThat(plain.tombstoneKeys("v")).containsExactly("neg:key:v", "neg:key:{v}");
+        assertThat(hashTagged.tombstoneKeys("v")).containsExactly("neg:key:{v}", "neg:key:v");
+    }
+
+    @Test
+    void locksBothNamesInTheSameOrderInEitherMode() {
+        assertThat(plain.lockNames("v")).containsExactly("lock:key:v", "lock:key:{v}");
+        assertThat(hashTagged.lockNames("v")).isEqualTo(plain.lockNames("v"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.mati.RetoFinal.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestCoalescerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestCoalescer coalescer = coalescer(true);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void waiterSharesTheLeaderResult() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> coalescer.execute("lookup", "k1", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "value";
+        }, value -> value + "-copy"));
+        awaitLeader("lookup");
+        Future<String> waiter = executor.submit(() -> coalescer.execute("lookup", "k1", () -> {
+            loads.incrementAndGet();
+            return "own";
+        }, value -> value + "-copy"));
+        awaitWaiters("lookup", 1);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo("value-copy");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void waiterRethrowsTheLeaderFailure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("database down");
+
+        Future<String> leader = executor.submit(() -> coalescer.execute("lookup", "k1", () -> {
+            await(release);
+            throw failure;
+        }));
+        awaitLeader("lookup");
+        Future<String> waiter = executor.submit(() -> coalescer.execute("lookup", "k1", () -> "own"));
+        awaitWaiters("lookup", 1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS)).hasCause(failure);
+    }
+
+    @Test
+    void nextCallAfterAFailedLeaderLoadsAgain() {
+        assertThatThrownBy(() -> coalescer.execute("lookup", "k1", () -> {
+            throw new IllegalStateException("database down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(coalescer.execute("lookup", "k1", () -> "value")).isEqualTo("value");
+    }
+
+    @Test
+    void differentKeysAreNotCoalesced() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> first = executor.submit(() -> coalescer.execute("lookup", "k1", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "v1";
+        }));
+        awaitLeader("lookup");
+
+        assertThat(coalescer.execute("lookup", "k2", () -> {
+            loads.incrementAndGet();
+            return "v2";
+        })).isEqualTo("v2");
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("v1");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void disabledCoalescerRunsEveryLoader() {
+        RequestCoalescer disabled = coalescer(false);
+        AtomicInteger loads = new AtomicInteger();
+
+        disabled.execute("lookup", "k1", loads::incrementAndGet);
+        disabled.execute("lookup", "k1", loads::incrementAndGet);
+
+        assertThat(loads).hasValue(2);
+        assertThat(meterRegistry.find("keys.coalescing.calls").counters()).isEmpty();
+    }
+
+    private RequestCoalescer coalescer(boolean enabled) {
+        RequestCoalescer coalescer = new RequestCoalescer(meterRegistry);
+        ReflectionTestUtils.setField(coalescer, "enabled", enabled);
+        ReflectionTestUtils.setField(coalescer, "maxWait", Duration.ofSeconds(5));
+        return coalescer;
+    }
+
+    private void awaitLeader(String group) throws InterruptedException {
+        awaitCount(group, "leader", 1);
+    }
+
+    private void awaitWaiters(String group, int waiters) throws InterruptedException {
+        awaitCount(group, "waiter", waiters);
+    }
+
+    private void awaitCount(String group, String role, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count(group, role) < expected) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting for " + expected + " " + role + " call(s)");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private double count(String group, String role) {
+        var counter = meterRegistry.find("keys.coalescing.calls").tag("group", group).tag("role", role).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.mati.RetoFinal.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mati.RetoFinal.dto.KeyEvent;
+import com.mati.RetoFinal.models.FinancialEntity;
+import com.mati.RetoFinal.models.WebhookDelivery;
+import com.mati.RetoFinal.models.WebhookDeliveryStatus;
+import com.mati.RetoFinal.repositories.WebhookDeliveryRepository;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookDispatcherTest {
+
+    private final WebhookDeliveryRepository deliveryRepository = mock(WebhookDeliveryRepository.class);
+    private final KeyEventLog keyEventLog = mock(KeyEventLog.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final StreamOperations<String, Object, Object> streamOperations = mock(StreamOperations.class);
+    private final FinancialEntityRegistry entityRegistry = mock(FinancialEntityRegistry.class);
+    private final BlockingQueue<String> receivedBodies = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> receivedAuthorizations = new LinkedBlockingQueue<>();
+    private final CountDownLatch releaseResponses = new CountDownLatch(1);
+    private volatile int responseStatus = 200;
+    private volatile boolean holdResponses;
+    private HttpServer server;
+    private FinancialEntity entity;
+    private WebhookDispatcher webhookDispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/hooks", exchange -> {
+            receivedBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            receivedAuthorizations.add(String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")));
+            try {
+                if (holdResponses) {
+                    releaseResponses.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(responseStatus, -1);
+            exchange.close();
+        });
+        server.start();
+
+        entity = FinancialEntity.builder()
+                .entityId(UUID.randomUUID())
+                .entityCode("E1")
+                .webhookUrl("http://localhost:" + server.getAddress().getPort() + "/hooks")
+                .webhookAuthConfig("{\"Authorization\": \"Bearer secret\"}")
+                .maxRetries(2)
+                .build();
+        when(entityRegistry.findActive("E1")).thenReturn(Optional.of(entity));
+        when(entityRegistry.findById(entity.getEntityId())).thenReturn(Optional.of(entity));
+        when(redisTemplate.<Object, Object>opsForStream()).thenReturn(streamOperations);
+
+        webhookDispatcher = new WebhookDispatcher(
+                deliveryRepository,
+                keyEventLog,
+                redisTemplate,
+                entityRegistry,
+                new ObjectMapper().findAndRegisterModules(),
+                mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(webhookDispatcher, "enabled", true);
+        ReflectionTestUtils.setField(webhookDispatcher, "batchSize", 2);
+        ReflectionTestUtils.setField(webhookDispatcher, "pollInterval", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(webhookDispatcher, "maxConcurrentPerEntity", 1);
+        ReflectionTestUtils.setField(webhookDispatcher, "initialBackoff", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(webhookDispatcher, "maxBackoff", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(webhookDispatcher, "lease", Duration.ofMinutes(2));
+        ReflectionTestUtils.setField(webhookDispatcher, "hostname", "pod-1");
+        webhookDispatcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseResponses.countDown();
+        webhookDispatcher.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void eventsArePersistedBeforeTheyAreAcknowledged() throws Exception {
+        MapRecord<String, Object, Object> registered = record("1-0");
+        MapRecord<String, Object, Object> otherEntity = record("2-0");
+        when(keyEventLog.toEvent(registered)).thenReturn(event("E1"));
+        when(keyEventLog.toEvent(otherEntity)).thenReturn(event("E2"));
+        when(entityRegistry.findActive("E2")).thenReturn(Optional.empty());
+
+        ReflectionTestUtils.invokeMethod(webhookDispatcher, "persist", List.of(registered, otherEntity));
+
+        ArgumentCaptor<List<WebhookDelivery>> saved = ArgumentCaptor.forClass(List.class);
+        verify(deliveryRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).singleElement().satisfies(delivery -> {
+            assertThat(delivery.getEntityId()).isEqualTo(entity.getEntityId());
+            assertThat(delivery.getEventType()).isEqualTo(KeyEvent.KEY_REGISTERED);
+            assertThat(delivery.getPayload()).contains("\"keyValue\":\"user@example.com\"");
+        });
+        verify(streamOperations).acknowledge(KeyEventLog.STREAM, "webhooks", registered.getId(), otherEntity.getId());
+    }
+
+    @Test
+    void deliveredBatchIsPostedAsOneArrayAndDeleted() throws InterruptedException {
+        List<WebhookDelivery> batch = List.of(delivery("{\"n\":1}", 0), delivery("{\"n\":2}", 0));
+
+        deliver(batch);
+
+        assertThat(receivedBodies.poll(5, TimeUnit.SECONDS)).isEqualTo("[{\"n\":1},{\"n\":2}]");
+        assertThat(receivedAuthorizations.poll()).isEqualTo("Bearer secret");
+        verify(deliveryRepository).deleteAllByIdInBatch(ids(batch));
+        assertThat(webhookDispatcher.getStats()).containsEntry("delivered", 2L);
+    }
+
+    @Test
+    void failedBatchIsRetriedUntilTheRetryBudgetIsSpent() {
+        responseStatus = 503;
+        WebhookDelivery firstAttempt = delivery("{\"n\":1}", 0);
+        WebhookDelivery lastAttempt = delivery("{\"n\":2}", 2);
+
+        deliver(List.of(firstAttempt, lastAttempt));
+
+        verify(deliveryRepository).retryLater(eq(List.of(firstAttempt.getDeliveryId())), any(), eq("HTTP 503"));
+        verify(deliveryRepository).markFailed(List.of(lastAttempt.getDeliveryId()), WebhookDeliveryStatus.FAILED, "HTTP 503");
+        verify(deliveryRepository, never()).deleteAllByIdInBatch(anyCollection());
+    }
+
+    @Test
+    void retriesBackOffExponentially() {
+        LocalDateTime before = LocalDateTime.now();
+        responseStatus = 500;
+        WebhookDelivery secondAttempt = delivery("{\"n\":1}", 1);
+
+        deliver(List.of(secondAttempt));
+
+        ArgumentCaptor<LocalDateTime> nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(deliveryRepository).retryLater(any(), nextAttemptAt.capture(), any());
+        assertThat(nextAttemptAt.getValue()).isBetween(before.plusSeconds(2), LocalDateTime.now().plus(Duration.ofMillis(2_200)));
+    }
+
+    @Test
+    void inactiveEntityFailsWithoutARequest() {
+        entity.setIsActive(false);
+        List<WebhookDelivery> batch = List.of(delivery("{\"n\":1}", 0));
+
+        deliver(batch);
+
+        verify(deliveryRepository).markFailed(ids(batch), WebhookDeliveryStatus.FAILED,
+                "Financial entity inactive or without webhook");
+        assertThat(receivedBodies).isEmpty();
+    }
+
+    @Test
+    void saturatedEntityHandsItsClaimBack() throws InterruptedException {
+        holdResponses = true;
+        List<WebhookDelivery> due = List.of(delivery("{\"n\":1}", 0), delivery("{\"n\":2}", 0), delivery("{\"n\":3}", 0));
+        when(deliveryRepository.claimDue(any(), any(), anyInt())).thenReturn(due);
+
+        ReflectionTestUtils.invokeMethod(webhookDispatcher, "dispatchDue");
+
+        // One batch of batchSize holds the only permit, the rest is rescheduled
+        assertThat(receivedBodies.poll(5, TimeUnit.SECONDS)).isEqualTo("[{\"n\":1},{\"n\":2}]");
+        verify(deliveryRepository).reschedule(eq(List.of(due.get(2).getDeliveryId())), any());
+        assertThat(webhookDispatcher.getStats()).containsEntry("saturatedEntities", 1L).containsEntry("rejected", 1L);
+
+        releaseResponses.countDown();
+        verify(deliveryRepository, timeout(5_000)).deleteAllByIdInBatch(ids(due.subList(0, 2)));
+    }
+
+    private void deliver(List<WebhookDelivery> batch) {
+        ReflectionTestUtils.invokeMethod(webhookDispatcher, "deliver", entity.getEntityId(), batch);
+    }
+
+    private WebhookDelivery delivery(String payload, int attempts) {
+        return WebhookDelivery.builder()
+                .deliveryId(UUID.randomUUID())
+                .entityId(entity.getEntityId())
+                .eventType(KeyEvent.KEY_REGISTERED)
+                .payload(payload)
+                .attempts(attempts)
+                .build();
+    }
+
+    private static List<UUID> ids(List<WebhookDelivery> deliveries) {
+        return deliveries.stream().map(WebhookDelivery::getDeliveryId).toList();
+    }
+
+    private static KeyEvent event(String entityCode) {
+        return KeyEvent.builder()
+                .eventId(UUID.randomUUID())
+                .eventType(KeyEvent.KEY_REGISTERED)
+                .keyId(UUID.randomUUID())
+                .keyValue("user@example.com")
+                .entityCode(entityCode)
+                .timestamp(LocalDateTime.of(2024, 5, 1, 10, 15, 30))
+                .build();
+    }
+
+    private static MapRecord<String, Object, Object> record(String id) {
+        return StreamRecords.<String, Object, Object>mapBacked(Map.of("event", "{}"))
+                .withStreamKey(KeyEventLog.STREAM)
+                .withId(RecordId.of(id));
+    }
+}
@@ -0,0 +1,160 @@
+package com.mati.RetoFinal.services;
+
+import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.models.KeyStatus;
+import com.mati.RetoFinal.repositories.KeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WriteBehindServiceTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    @SuppressWarnings("unchecked")
+    private final StreamOperations<String, Object, Object> streamOperations = mock(StreamOperations.class);
+    private final KeyRepository keyRepository = mock(KeyRepository.class);
+    private final KeyCacheService keyCacheService = mock(KeyCacheService.class);
+    private final KeyEventPublisher eventPublisher = mock(KeyEventPublisher.class);
+    private WriteBehindService writeBehindService;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.<Object, Object>opsForStream()).thenReturn(streamOperations);
+
+        writeBehindService = new WriteBehindService(
+                redisTemplate,
+                keyRepository,
+                keyCacheService,
+                eventPublisher,
+                mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(),
+                new RedisKeyNames(false));
+        ReflectionTestUtils.setField(writeBehindService, "createStrategy", WriteBehindService.STRATEGY);
+        ReflectionTestUtils.setField(writeBehindService, "batchSize", 200);
+        ReflectionTestUtils.setField(writeBehindService, "pollTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(writeBehindService, "maxBacklog", 100_000L);
+        ReflectionTestUtils.setField(writeBehindService, "retryAfter", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(writeBehindService, "maxAttempts", 5);
+        ReflectionTestUtils.setField(writeBehindService, "hostname", "pod-1");
+        writeBehindService.init();
+    }
+
+    @Test
+    void claimWonReturnsTheNewKeyId() {
+        UUID keyId = UUID.randomUUID();
+        when(valueOperations.setIfAbsent(eq("claim:key:user@example.com"), eq(keyId.toString()), any(Duration.class)))
+                .thenReturn(true);
+
+        assertThat(writeBehindService.claim("user@example.com", keyId)).isEqualTo(keyId);
+    }
+
+    @Test
+    void claimLostReturnsTheOwner() {
+        UUID owner = UUID.randomUUID();
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get("claim:key:user@example.com")).thenReturn(owner.toString());
+
+        assertThat(writeBehindService.claim("user@example.com", UUID.randomUUID())).isEqualTo(owner);
+    }
+
+    @Test
+    void claimOutlivesEveryRetry() {
+        writeBehindService.claim("user@example.com", UUID.randomUUID());
+
+        ArgumentCaptor<Duration> ttl = ArgumentCaptor.forClass(Duration.class);
+        verify(valueOperations).setIfAbsent(anyString(), anyString(), ttl.capture());
+        assertThat(ttl.getValue()).isGreaterThan(Duration.ofSeconds(30).multipliedBy(5));
+    }
+
+    @Test
+    void persistedKeysAreAcknowledgedAndReleaseTheirClaims() {
+        MapRecord<String, Object, Object> record = record(UUID.randomUUID());
+        when(keyRepository.insertIfAbsent(any(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        persist(record);
+
+        verify(streamOperations).acknowledge("keys:write-behind", "key-writers", record.getId());
+        verify(redisTemplate).delete(List.of("claim:key:user@example.com"));
+        verify(keyCacheService, never()).evict(anyString());
+        verify(eventPublisher, never()).publishKeyDropped(any());
+    }
+
+    @Test
+    void replayOfOurOwnInsertIsNotAConflict() {
+        UUID keyId = UUID.randomUUID();
+        when(keyRepository.insertIfAbsent(any(), any(), any(), any(), any(), any())).thenReturn(0);
+        when(keyRepository.findByKeyValue("user@example.com")).thenReturn(Optional.of(key(keyId)));
+
+        persist(record(keyId));
+
+        verify(keyCacheService, never()).evict(anyString());
+        verify(eventPublisher, never()).publishKeyDropped(any());
+    }
+
+    @Test
+    void valueOwnedByAnotherKeyIsCompensated() {
+        UUID keyId = UUID.randomUUID();
+        when(keyRepository.insertIfAbsent(any(), any(), any(), any(), any(), any())).thenReturn(0);
+        when(keyRepository.findByKeyValue("user@example.com")).thenReturn(Optional.of(key(UUID.randomUUID())));
+
+        persist(record(keyId));
+
+        verify(keyCacheService).evict("user@example.com");
+        ArgumentCaptor<KeyCacheDto> dropped = ArgumentCaptor.forClass(KeyCacheDto.class);
+        verify(eventPublisher).publishKeyDropped(dropped.capture());
+        assertThat(dropped.getValue().getKeyId()).isEqualTo(keyId);
+        assertThat(dropped.getValue().getStatus()).isEqualTo(KeyStatus.DELETED);
+    }
+
+    private void persist(MapRecord<String, Object, Object> record) {
+        ReflectionTestUtils.invokeMethod(writeBehindService, "persist", List.of(record));
+    }
+
+    private static MapRecord<String, Object, Object> record(UUID keyId) {
+        Map<Object, Object> fields = Map.of(
+                "keyId", keyId.toString(),
+                "keyValue", "user@example.com",
+                "entityId", UUID.randomUUID().toString(),
+                "entityCode", "E1",
+                "createdAt", LocalDateTime.of(2024, 5, 1, 10, 15, 30).toString());
+        return StreamRecords.mapBacked(fields).withStreamKey("keys:write-behind").withId(RecordId.of("1-0"));
+    }
+
+    private static Key key(UUID keyId) {
+        return Key.builder()
+                .keyId(keyId)
+                .keyValue("user@example.com")
+                .status(KeyStatus.ACTIVE)
+                .build();
+    }
+}
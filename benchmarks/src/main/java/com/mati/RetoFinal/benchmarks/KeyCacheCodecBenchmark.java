@@ -0,0 +1,79 @@
+package com.mati.RetoFinal.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mati.RetoFinal.benchmarks.support.InMemoryRepositories;
+import com.mati.RetoFinal.dto.EntityKeyResponse;
+import com.mati.RetoFinal.dto.KeyCacheDto;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.services.BinaryKeyCacheCodec;
+import com.mati.RetoFinal.services.JsonKeyCacheCodec;
+import com.mati.RetoFinal.services.KeyCacheCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost of a cached key entry and the DTO mappings around it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyCacheCodecBenchmark {
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private KeyCacheCodec keyCacheCodec;
+    private Key key;
+    private KeyCacheDto dto;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        keyCacheCodec = "binary".equals(codec) ? new BinaryKeyCacheCodec() : new JsonKeyCacheCodec(objectMapper);
+
+        InMemoryRepositories repositories = new InMemoryRepositories();
+        key = repositories.addKey("user@example.com", repositories.addEntity("BANK001"));
+        dto = KeyCacheDto.fromEntity(key);
+        encoded = keyCacheCodec.encode(dto);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return keyCacheCodec.encode(dto);
+    }
+
+    @Benchmark
+    public KeyCacheDto decode() {
+        return keyCacheCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public KeyCacheDto cacheDtoFromEntity() {
+        return KeyCacheDto.fromEntity(key);
+    }
+
+    @Benchmark
+    public EntityKeyResponse responseFromCache() {
+        return EntityKeyResponse.fromCache(dto);
+    }
+}
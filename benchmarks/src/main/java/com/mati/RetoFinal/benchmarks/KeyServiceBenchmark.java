@@ -0,0 +1,115 @@
+package com.mati.RetoFinal.benchmarks;
+
+import com.mati.RetoFinal.benchmarks.support.BenchmarkContext;
+import com.mati.RetoFinal.dto.CreateKeyRequest;
+import com.mati.RetoFinal.dto.CreateKeyResponse;
+import com.mati.RetoFinal.dto.EntityKeyResponse;
+import com.mati.RetoFinal.models.FinancialEntity;
+import com.mati.RetoFinal.services.KeyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lookup and creation hot paths of KeyService, wired to the real cache,
+ * coalescing and validation services over in-memory Redis and repositories.
+ * Measures CPU and allocation cost in-process, not network or database latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class KeyServiceBenchmark {
+
+    private static final int KEY_COUNT = 10_000;
+    private static final String ENTITY_CODE = "BANK001";
+
+    @Param({"true", "false"})
+    public boolean nearCache;
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    @Param({"lock", "insert"})
+    public String createStrategy;
+
+    private BenchmarkContext context;
+    private KeyService keyService;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new BenchmarkContext(Map.of(
+                "cache.near.enabled", nearCache,
+                "cache.codec", codec,
+                "keys.create.strategy", createStrategy
+        ));
+        keyService = context.getBean(KeyService.class);
+
+        FinancialEntity entity = context.repositories().addEntity(ENTITY_CODE);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            context.repositories().addKey(existingKey(i), entity);
+        }
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keyService.findByValue(existingKey(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<EntityKeyResponse> findByValueHit() {
+        return keyService.findByValue(existingKey(ThreadLocalRandom.current().nextInt(KEY_COUNT)));
+    }
+
+    @Benchmark
+    public Optional<EntityKeyResponse> findByValueMiss() {
+        return keyService.findByValue("missing-" + ThreadLocalRandom.current().nextInt(KEY_COUNT) + "@example.com");
+    }
+
+    @Benchmark
+    public CreateKeyResponse createKeyExisting() {
+        return keyService.createKey(request(existingKey(ThreadLocalRandom.current().nextInt(KEY_COUNT))));
+    }
+
+    @Benchmark
+    public CreateKeyResponse createKeyNew() {
+        return keyService.createKey(request("new-" + sequence.incrementAndGet() + "@example.com"));
+    }
+
+    private static String existingKey(int i) {
+        return "user-" + i + "@example.com";
+    }
+
+    private static CreateKeyRequest request(String keyValue) {
+        return CreateKeyRequest.builder()
+                .keyValue(keyValue)
+                .accountNumber("123456789")
+                .ownerDocument("123456789")
+                .entityCode(ENTITY_CODE)
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.mati.RetoFinal.benchmarks;
+
+import com.mati.RetoFinal.benchmarks.support.InMemoryRepositories;
+import com.mati.RetoFinal.services.KeyValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Format validation run first by every create. Only accepted values are measured:
+ * rejected ones log a warning per call, which would dominate the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyValidatorBenchmark {
+
+    @Param({"email", "phone", "max-length"})
+    public String keyKind;
+
+    private KeyValidator keyValidator;
+    private String keyValue;
+
+    @Setup
+    public void setUp() {
+        keyValidator = new KeyValidator(new InMemoryRepositories().keyRepository());
+        keyValue = switch (keyKind) {
+            case "phone" -> "+5491123456789";
+            case "max-length" -> "k".repeat(255);
+            default -> "user@example.com";
+        };
+    }
+
+    @Benchmark
+    public boolean validateKeyFormat() {
+        return keyValidator.validateKeyFormat(keyValue);
+    }
+}
@@ -0,0 +1,113 @@
+package com.mati.RetoFinal.benchmarks.load;
+
+import com.mati.RetoFinal.RetoFinalApplication;
+import com.mati.RetoFinal.benchmarks.support.InMemoryRedisConnectionFactory;
+import com.mati.RetoFinal.benchmarks.support.StandInRedisson;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Boots the full application in-process with an H2 database in PostgreSQL mode
+ * and the in-memory Redis/Redisson stand-ins, so the HTTP stack, controllers,
+ * services and JPA all run as deployed without external infrastructure.
+ *
+ * The Bloom filter, Pub/Sub and the key event log need a real Redis and are
+ * disabled, and so are webhook delivery and the key outbox, whose claim queries
+ * are PostgreSQL-specific.
+ */
+public final class EmbeddedApplication implements AutoCloseable {
+
+    private static final String H2_URL = "jdbc:h2:mem:key_management;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+            + "DEFAULT_NULL_ORDERING=HIGH;NON_KEYWORDS=KEY,KEYS,VALUE;DB_CLOSE_DELAY=-1";
+
+    private final ConfigurableApplicationContext context;
+
+    public EmbeddedApplication(List<String> overrides) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=" + H2_URL,
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.reader.url=" + H2_URL,
+                "--spring.datasource.reader.username=sa",
+                "--spring.datasource.reader.password=",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.show-sql=false",
+                "--cache.negative.enabled=false",
+                "--webhooks.enabled=false",
+                "--events.log.enabled=false",
+                "--keys.outbox.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.mati.RetoFinal=WARN"
+        ));
+        args.addAll(overrides);
+
+        context = new SpringApplicationBuilder(RetoFinalApplication.class)
+                .initializers(ctx -> ctx.addBeanFactoryPostProcessor(new StandInRegistrar()))
+                .run(args.toArray(String[]::new));
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    /**
+     * Replaces the Lettuce, Redisson and listener container beans once all
+     * configuration classes have been parsed.
+     */
+    private static final class StandInRegistrar implements BeanDefinitionRegistryPostProcessor {
+
+        @Override
+        public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+        }
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            BeanDefinitionRegistry registry = (BeanDefinitionRegistry) beanFactory;
+            replace(registry, "redisConnectionFactory", RedisConnectionFactory.class, InMemoryRedisConnectionFactory::new);
+            // Cache reads share the in-memory store instead of reading from replicas
+            if (registry.containsBeanDefinition("cacheReadConnectionFactory")) {
+                registry.removeBeanDefinition("cacheReadConnectionFactory");
+                registry.registerAlias("redisConnectionFactory", "cacheReadConnectionFactory");
+            }
+            replace(registry, "redissonClient", RedissonClient.class, StandInRedisson::create);
+            replace(registry, "redisMessageListenerContainer", RedisMessageListenerContainer.class,
+                    () -> new RedisMessageListenerContainer() {
+                        @Override
+                        public boolean isAutoStartup() {
+                            return false;
+                        }
+
+                        @Override
+                        public void afterPropertiesSet() {
+                        }
+                    });
+        }
+
+        private static <T> void replace(BeanDefinitionRegistry registry, String name, Class<T> type, Supplier<T> supplier) {
+            if (registry.containsBeanDefinition(name)) {
+                registry.removeBeanDefinition(name);
+            }
+            registry.registerBeanDefinition(name, new RootBeanDefinition(type, supplier));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.mati.RetoFinal.benchmarks.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the key value of each lookup.
+ */
+public interface KeyDistribution {
+
+    String next();
+
+    static KeyDistribution of(String name, int keys, double zipfExponent) {
+        return switch (name.toLowerCase()) {
+            case "uniform" -> () -> seededKey(ThreadLocalRandom.current().nextInt(keys));
+            case "zipfian" -> new Zipfian(keys, zipfExponent);
+            case "miss" -> new AllMiss();
+            default -> throw new IllegalArgumentException("Unknown key distribution: " + name);
+        };
+    }
+
+    static String seededKey(int index) {
+        return "load-" + index;
+    }
+
+    /**
+     * Zipf over the seeded keys: rank 0 is the hottest key.
+     */
+    final class Zipfian implements KeyDistribution {
+
+        private final double[] cumulative;
+
+        Zipfian(int keys, double exponent) {
+            cumulative = new double[keys];
+            double sum = 0;
+            for (int i = 0; i < keys; i++) {
+                sum += 1.0 / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < keys; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        @Override
+        public String next() {
+            int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+            return seededKey(index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1));
+        }
+    }
+
+    /**
+     * Key values that are never registered, exercising the negative lookup path.
+     */
+    final class AllMiss implements KeyDistribution {
+
+        private final String prefix = "load-miss-" + System.currentTimeMillis() + "-";
+        private final AtomicLong sequence = new AtomicLong();
+
+        @Override
+        public String next() {
+            return prefix + sequence.incrementAndGet();
+        }
+    }
+}
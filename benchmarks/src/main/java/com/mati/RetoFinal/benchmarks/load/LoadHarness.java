@@ -0,0 +1,182 @@
+package com.mati.RetoFinal.benchmarks.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the key registry API.
+ *
+ * Requests are issued at a constant arrival rate on a fixed schedule, each on its
+ * own virtual thread, so a slow response never delays the next request. Response
+ * time is measured from the request's scheduled start (correcting for coordinated
+ * omission); service time from when it was actually sent.
+ *
+ * Usage: java -cp target/benchmarks.jar com.mati.RetoFinal.benchmarks.load.LoadHarness
+ *   [--target=embedded|http://host:port] [--rate=500] [--warmup=30] [--duration=60]
+ *   [--distribution=zipfian|uniform|miss] [--keys=100000] [--zipf-exponent=0.99]
+ *   [--create-ratio=0.1] [--entity=LOADTEST] [--seed=true] [--output=../results/harness.txt]
+ *   [--app.<property>=<value> ...]
+ */
+public final class LoadHarness {
+
+    private static final int SEED_BATCH_SIZE = 500;
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadOptions options;
+    private final String baseUrl;
+    private final HttpClient client;
+    private final KeyDistribution distribution;
+    private final String createPrefix = "load-new-" + System.currentTimeMillis() + "-";
+    private final AtomicLong createSequence = new AtomicLong();
+
+    private final Histogram responseTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    LoadHarness(LoadOptions options, String baseUrl) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        this.distribution = KeyDistribution.of(options.distribution(), options.keys(), options.zipfExponent());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+
+        if (options.isEmbedded()) {
+            try (EmbeddedApplication application = new EmbeddedApplication(options.appArgs())) {
+                new LoadHarness(options, application.baseUrl()).run();
+            }
+        } else {
+            new LoadHarness(options, options.target()).run();
+        }
+    }
+
+    void run() throws IOException, InterruptedException {
+        if (options.seed()) {
+            seed();
+        }
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long warmupRequests = options.warmup().toSeconds() * options.rate();
+        long totalRequests = warmupRequests + options.duration().toSeconds() * options.rate();
+
+        System.out.printf("Running %d req/s against %s: %ds warmup, %ds measured%n",
+                options.rate(), baseUrl, options.warmup().toSeconds(), options.duration().toSeconds());
+
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measuredStart = start + warmupRequests * interval;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < totalRequests; i++) {
+                long intendedStart = start + i * interval;
+                long wait;
+                while ((wait = intendedStart - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                boolean measured = i >= warmupRequests;
+                executor.execute(() -> fire(intendedStart, measured));
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - measuredStart) / 1e9;
+
+        long total = succeeded.sum() + failed.sum();
+        LoadReport report = new LoadReport(options, responseTime, serviceTime,
+                total, succeeded.sum(), failed.sum(), total / elapsedSeconds);
+        System.out.print(report.format());
+        report.write();
+        System.out.println("Results appended to " + options.output().toAbsolutePath());
+    }
+
+    private void fire(long intendedStart, boolean measured) {
+        HttpRequest request = ThreadLocalRandom.current().nextDouble() < options.createRatio()
+                ? createRequest(createPrefix + createSequence.incrementAndGet())
+                : HttpRequest.newBuilder(URI.create(baseUrl + "/api/keys/" + distribution.next()))
+                        .timeout(REQUEST_TIMEOUT)
+                        .GET()
+                        .build();
+
+        long sent = System.nanoTime();
+        boolean ok;
+        try {
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            ok = status < 300 || status == 404;
+        } catch (IOException e) {
+            ok = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long done = System.nanoTime();
+
+        if (!measured) {
+            return;
+        }
+        responseTime.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(done - intendedStart), HIGHEST_TRACKABLE_MICROS));
+        serviceTime.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(done - sent), HIGHEST_TRACKABLE_MICROS));
+        (ok ? succeeded : failed).increment();
+    }
+
+    /**
+     * Register the entity and every key of the lookup distribution through the API
+     */
+    private void seed() throws IOException, InterruptedException {
+        String entity = String.format("{\"entityCode\":\"%s\",\"entityName\":\"Load test entity\",\"isActive\":true}",
+                options.entityCode());
+        send(post("/api/financial-entities", entity));
+
+        System.out.printf("Seeding %d keys%n", options.keys());
+        for (int from = 0; from < options.keys(); from += SEED_BATCH_SIZE) {
+            List<String> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = from; i < Math.min(from + SEED_BATCH_SIZE, options.keys()); i++) {
+                batch.add(keyJson(KeyDistribution.seededKey(i)));
+            }
+            int status = send(post("/api/keys/check-or-create/batch", "{\"keys\":[" + String.join(",", batch) + "]}"));
+            if (status >= 300) {
+                throw new IllegalStateException("Seeding failed with HTTP " + status);
+            }
+        }
+    }
+
+    private HttpRequest createRequest(String keyValue) {
+        return post("/api/keys/check-or-create", keyJson(keyValue));
+    }
+
+    private String keyJson(String keyValue) {
+        return String.format("{\"keyValue\":\"%s\",\"accountNumber\":\"123456789\",\"ownerDocument\":\"123456789\",\"entityCode\":\"%s\"}",
+                keyValue, options.entityCode());
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,75 @@
+package com.mati.RetoFinal.benchmarks.load;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line options of the load harness, given as --name=value.
+ * Unknown --app.* options are passed to the embedded application without the prefix.
+ */
+public record LoadOptions(
+        String target,
+        int rate,
+        Duration warmup,
+        Duration duration,
+        String distribution,
+        int keys,
+        double zipfExponent,
+        double createRatio,
+        String entityCode,
+        boolean seed,
+        Path output,
+        List<String> appArgs
+) {
+
+    public static final String EMBEDDED = "embedded";
+
+    public static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        List<String> appArgs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (name.startsWith("app.")) {
+                appArgs.add("--" + name.substring(4) + "=" + value);
+            } else {
+                values.put(name, value);
+            }
+        }
+
+        LoadOptions options = new LoadOptions(
+                values.getOrDefault("target", EMBEDDED),
+                Integer.parseInt(values.getOrDefault("rate", "500")),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "30"))),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "60"))),
+                values.getOrDefault("distribution", "zipfian"),
+                Integer.parseInt(values.getOrDefault("keys", "100000")),
+                Double.parseDouble(values.getOrDefault("zipf-exponent", "0.99")),
+                Double.parseDouble(values.getOrDefault("create-ratio", "0.1")),
+                values.getOrDefault("entity", "LOADTEST"),
+                Boolean.parseBoolean(values.getOrDefault("seed", "true")),
+                Path.of(values.getOrDefault("output", "../results/harness.txt")),
+                List.copyOf(appArgs)
+        );
+
+        if (options.rate() <= 0 || options.keys() <= 0) {
+            throw new IllegalArgumentException("rate and keys must be positive");
+        }
+        if (options.createRatio() < 0 || options.createRatio() > 1) {
+            throw new IllegalArgumentException("create-ratio must be between 0 and 1");
+        }
+        return options;
+    }
+
+    public boolean isEmbedded() {
+        return EMBEDDED.equalsIgnoreCase(target);
+    }
+}
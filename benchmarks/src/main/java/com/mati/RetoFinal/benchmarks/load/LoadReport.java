@@ -0,0 +1,78 @@
+package com.mati.RetoFinal.benchmarks.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Formats a finished run in the results.txt block format read by results/results.py,
+ * and writes the full corrected percentile distribution next to it as .hgrm.
+ */
+public record LoadReport(
+        LoadOptions options,
+        Histogram responseTime,
+        Histogram serviceTime,
+        long total,
+        long succeeded,
+        long failed,
+        double achievedRate
+) {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        out.append(options.rate()).append(" ->\n");
+        out.append(String.format(Locale.ROOT, "Scenario: target=%s, distribution=%s, keys=%d, create-ratio=%.2f, duration=%ds%n",
+                options.target(), options.distribution(), options.keys(), options.createRatio(),
+                options.duration().toSeconds()));
+        out.append("Request Summary:\n");
+        line(out, "Total Requests:", Long.toString(total));
+        line(out, "Successful:", Long.toString(succeeded));
+        line(out, "Failed:", Long.toString(failed));
+        line(out, "Achieved Rate:", String.format(Locale.ROOT, "%.1f req/s", achievedRate));
+        out.append("Latency Stats (ms):\n");
+        stats(out, responseTime);
+        out.append("Service Time Stats (ms, not corrected for coordinated omission):\n");
+        stats(out, serviceTime);
+        out.append('\n');
+        return out.toString();
+    }
+
+    public void write() throws IOException {
+        Path output = options.output().toAbsolutePath();
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, format(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        Path distribution = output.resolveSibling(options.distribution() + "-" + options.rate() + ".hgrm");
+        try (PrintStream stream = new PrintStream(Files.newOutputStream(distribution), true, StandardCharsets.UTF_8)) {
+            responseTime.outputPercentileDistribution(stream, MICROS_PER_MILLI);
+        }
+    }
+
+    private static void stats(StringBuilder out, Histogram histogram) {
+        line(out, "Min:", millis(histogram.getMinValue()));
+        line(out, "Average:", millis(histogram.getMean()));
+        line(out, "Median:", millis(histogram.getValueAtPercentile(50)));
+        line(out, "P90:", millis(histogram.getValueAtPercentile(90)));
+        line(out, "P95:", millis(histogram.getValueAtPercentile(95)));
+        line(out, "P99:", millis(histogram.getValueAtPercentile(99)));
+        line(out, "P99.9:", millis(histogram.getValueAtPercentile(99.9)));
+        line(out, "Max:", millis(histogram.getMaxValue()));
+    }
+
+    private static void line(StringBuilder out, String label, String value) {
+        out.append(String.format(Locale.ROOT, "   %-21s%s%n", label, value));
+    }
+
+    private static String millis(double micros) {
+        return String.format(Locale.ROOT, "%.2f", micros / MICROS_PER_MILLI);
+    }
+}
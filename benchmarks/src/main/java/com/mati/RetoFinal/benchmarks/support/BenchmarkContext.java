@@ -0,0 +1,151 @@
+package com.mati.RetoFinal.benchmarks.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mati.RetoFinal.repositories.FinancialEntityRepository;
+import com.mati.RetoFinal.repositories.KeyOutboxRepository;
+import com.mati.RetoFinal.repositories.KeyRepository;
+import com.mati.RetoFinal.services.DistributedLockService;
+import com.mati.RetoFinal.services.FinancialEntityRegistry;
+import com.mati.RetoFinal.services.KeyCacheService;
+import com.mati.RetoFinal.services.KeyEventLog;
+import com.mati.RetoFinal.services.KeyEventPublisher;
+import com.mati.RetoFinal.services.KeyMetrics;
+import com.mati.RetoFinal.services.KeyOutboxService;
+import com.mati.RetoFinal.services.KeyService;
+import com.mati.RetoFinal.services.KeyValidator;
+import com.mati.RetoFinal.services.NearCacheService;
+import com.mati.RetoFinal.services.NegativeLookupService;
+import com.mati.RetoFinal.services.ReadYourWritesTracker;
+import com.mati.RetoFinal.services.RedisCircuitBreaker;
+import com.mati.RetoFinal.services.RequestCoalescer;
+import com.mati.RetoFinal.services.WriteBehindService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Map;
+
+/**
+ * Spring context wiring the real key registry services to in-memory stand-ins
+ * for PostgreSQL, Redis and Redisson.
+ */
+public final class BenchmarkContext implements AutoCloseable {
+
+    private final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    private final InMemoryRepositories repositories = new InMemoryRepositories();
+
+    public BenchmarkContext(Map<String, Object> properties) {
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        // The in-memory Redis has no streams, the event log is opted into explicitly
+        context.getEnvironment().getPropertySources().addLast(
+                new MapPropertySource("benchmark-defaults", Map.of(
+                        "events.log.enabled", false,
+                        "keys.outbox.enabled", false)));
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+
+        context.registerBean(InMemoryRedisConnectionFactory.class, InMemoryRedisConnectionFactory::new);
+        context.registerBean(KeyRepository.class, repositories::keyRepository);
+        context.registerBean(FinancialEntityRepository.class, repositories::financialEntityRepository);
+        context.registerBean(KeyOutboxRepository.class, repositories::keyOutboxRepository);
+        context.registerBean(RedissonClient.class, StandInRedisson::create);
+        context.registerBean(PlatformTransactionManager.class, NoOpTransactionManager::new);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(
+                Infrastructure.class,
+                KeyService.class,
+                FinancialEntityRegistry.class,
+                KeyEventPublisher.class,
+                KeyEventLog.class,
+                KeyOutboxService.class,
+                KeyMetrics.class,
+                RedisCircuitBreaker.class,
+                KeyCacheService.class,
+                NearCacheService.class,
+                NegativeLookupService.class,
+                ReadYourWritesTracker.class,
+                RequestCoalescer.class,
+                WriteBehindService.class,
+                DistributedLockService.class,
+                KeyValidator.class
+        );
+        context.refresh();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public InMemoryRepositories repositories() {
+        return repositories;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    /**
+     * Registered explicitly rather than annotated, so the application's component
+     * scan of com.mati.RetoFinal does not pick it up in the load harness.
+     */
+    static class Infrastructure {
+
+        @Bean
+        public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory connectionFactory) {
+            return stringTemplate(connectionFactory);
+        }
+
+        // No replicas in memory: cache reads use the same store
+        @Bean
+        public RedisTemplate<String, String> cacheReadRedisTemplate(RedisConnectionFactory connectionFactory) {
+            return stringTemplate(connectionFactory);
+        }
+
+        private static RedisTemplate<String, String> stringTemplate(RedisConnectionFactory connectionFactory) {
+            RedisTemplate<String, String> template = new RedisTemplate<>();
+            template.setConnectionFactory(connectionFactory);
+
+            StringRedisSerializer stringSerializer = new StringRedisSerializer();
+            template.setKeySerializer(stringSerializer);
+            template.setValueSerializer(stringSerializer);
+            template.setHashKeySerializer(stringSerializer);
+            template.setHashValueSerializer(stringSerializer);
+
+            template.afterPropertiesSet();
+            return template;
+        }
+
+        @Bean
+        public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+            // Never started: the in-memory connection does not support SUBSCRIBE
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+                @Override
+                public boolean isAutoStartup() {
+                    return false;
+                }
+            };
+            container.setConnectionFactory(connectionFactory);
+            return container;
+        }
+
+        @Bean
+        public ObjectMapper objectMapper() {
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.registerModule(new JavaTimeModule());
+            mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+            return mapper;
+        }
+    }
+}
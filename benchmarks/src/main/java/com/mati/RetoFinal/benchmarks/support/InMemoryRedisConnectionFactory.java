@@ -0,0 +1,222 @@
+package com.mati.RetoFinal.benchmarks.support;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-process stand-in for Redis covering the commands the key registry uses
+ * (GET/SET/MGET/DEL/EXPIRE/HGETALL/HMSET/PUBLISH and pipelining), also through the
+ * native Lettuce async API used by the per-node pipelines, where EVAL is answered as the
+ * cache warm-up script. TTLs and SET options are ignored.
+ */
+public class InMemoryRedisConnectionFactory implements RedisConnectionFactory {
+
+    private final Map<ByteBuffer, byte[]> strings = new ConcurrentHashMap<>();
+    private final Map<ByteBuffer, Map<ByteBuffer, byte[]>> hashes = new ConcurrentHashMap<>();
+
+    @Override
+    public RedisConnection getConnection() {
+        return (RedisConnection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] {RedisConnection.class},
+                new ConnectionHandler());
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new UnsupportedOperationException("Cluster connections are not supported in memory");
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return true;
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new UnsupportedOperationException("Sentinel connections are not supported in memory");
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return null;
+    }
+
+    public void clear() {
+        strings.clear();
+        hashes.clear();
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private List<Object> pipelineResults;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "stringCommands", "keyCommands", "hashCommands" -> {
+                    return Proxy.newProxyInstance(getClass().getClassLoader(),
+                            new Class<?>[] {method.getReturnType()}, this);
+                }
+                case "openPipeline" -> {
+                    pipelineResults = new ArrayList<>();
+                    return null;
+                }
+                case "isPipelined" -> {
+                    return pipelineResults != null;
+                }
+                case "closePipeline" -> {
+                    List<Object> results = pipelineResults != null ? pipelineResults : List.of();
+                    pipelineResults = null;
+                    return results;
+                }
+                case "getNativeConnection" -> {
+                    return Proxy.newProxyInstance(getClass().getClassLoader(),
+                            new Class<?>[] {RedisClusterAsyncCommands.class}, this::invokeAsync);
+                }
+                case "close" -> {
+                    return null;
+                }
+                case "isClosed", "isQueueing", "isSubscribed" -> {
+                    return false;
+                }
+                default -> {
+                    if (method.isDefault()) {
+                        return InvocationHandler.invokeDefault(proxy, method, args);
+                    }
+                    Object result = execute(method.getName(), args);
+                    if (pipelineResults != null) {
+                        pipelineResults.add(result);
+                        return null;
+                    }
+                    return result;
+                }
+            }
+        }
+
+        /**
+         * Lettuce async commands, answered with already completed futures
+         */
+        private Object invokeAsync(Object proxy, Method method, Object[] args) {
+            Object result = switch (method.getName()) {
+                case "hgetall" -> execute("hGetAll", args);
+                case "hset" -> {
+                    execute("hMSet", args);
+                    yield (long) ((Map<?, ?>) args[1]).size();
+                }
+                case "set" -> {
+                    execute("set", args);
+                    yield "OK";
+                }
+                case "eval" -> evalHash((String) args[0], ((byte[][]) args[2])[0], (byte[][]) args[3]);
+                default -> execute(method.getName(), args);
+            };
+            return new CompletedFuture<>(result);
+        }
+
+        /**
+         * The hash scripts: write the fields (after the TTL argument), replacing the entry,
+         * or for the warm-up script only if the key is absent
+         */
+        private long evalHash(String script, byte[] rawKey, byte[][] args) {
+            if (script.contains("EXISTS") && (strings.containsKey(key(rawKey)) || hashes.containsKey(key(rawKey)))) {
+                return 0L;
+            }
+            strings.remove(key(rawKey));
+            hashes.remove(key(rawKey));
+            Map<byte[], byte[]> fields = new HashMap<>();
+            for (int i = 1; i + 1 < args.length; i += 2) {
+                fields.put(args[i], args[i + 1]);
+            }
+            execute("hMSet", new Object[] {rawKey, fields});
+            return 1L;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object execute(String command, Object[] args) {
+            switch (command) {
+                case "get" -> {
+                    return strings.get(key(args[0]));
+                }
+                case "set" -> {
+                    strings.put(key(args[0]), (byte[]) args[1]);
+                    return true;
+                }
+                case "mGet" -> {
+                    List<byte[]> values = new ArrayList<>();
+                    for (byte[] rawKey : (byte[][]) args[0]) {
+                        values.add(strings.get(key(rawKey)));
+                    }
+                    return values;
+                }
+                case "del" -> {
+                    long deleted = 0;
+                    for (byte[] rawKey : (byte[][]) args[0]) {
+                        boolean removed = strings.remove(key(rawKey)) != null;
+                        removed |= hashes.remove(key(rawKey)) != null;
+                        deleted += removed ? 1 : 0;
+                    }
+                    return deleted;
+                }
+                case "expire", "pExpire" -> {
+                    return true;
+                }
+                case "hMSet" -> {
+                    Map<ByteBuffer, byte[]> hash = hashes.computeIfAbsent(key(args[0]), k -> new ConcurrentHashMap<>());
+                    ((Map<byte[], byte[]>) args[1]).forEach((field, value) -> hash.put(ByteBuffer.wrap(field), value));
+                    return null;
+                }
+                case "hGetAll" -> {
+                    Map<byte[], byte[]> result = new HashMap<>();
+                    Map<ByteBuffer, byte[]> hash = hashes.get(key(args[0]));
+                    if (hash != null) {
+                        hash.forEach((field, value) -> result.put(field.array(), value));
+                    }
+                    return result;
+                }
+                case "publish" -> {
+                    return 0L;
+                }
+                default -> throw new UnsupportedOperationException("Command not supported in memory: " + command);
+            }
+        }
+
+        private ByteBuffer key(Object rawKey) {
+            return ByteBuffer.wrap((byte[]) rawKey);
+        }
+    }
+
+    private static final class CompletedFuture<T> extends CompletableFuture<T> implements RedisFuture<T> {
+
+        CompletedFuture(T value) {
+            complete(value);
+        }
+
+        @Override
+        public String getError() {
+            return null;
+        }
+
+        @Override
+        public boolean await(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
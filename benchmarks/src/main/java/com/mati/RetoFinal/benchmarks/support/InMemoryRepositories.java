@@ -0,0 +1,139 @@
+package com.mati.RetoFinal.benchmarks.support;
+
+import com.mati.RetoFinal.models.FinancialEntity;
+import com.mati.RetoFinal.models.Key;
+import com.mati.RetoFinal.models.KeyStatus;
+import com.mati.RetoFinal.repositories.FinancialEntityRepository;
+import com.mati.RetoFinal.repositories.KeyOutboxRepository;
+import com.mati.RetoFinal.repositories.KeyRepository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map-backed stand-ins for the JPA repositories, implementing only the
+ * methods used on the key lookup and creation paths.
+ */
+public final class InMemoryRepositories {
+
+    private final Map<String, Key> keysByValue = new ConcurrentHashMap<>();
+    private final Map<String, FinancialEntity> entitiesByCode = new ConcurrentHashMap<>();
+
+    public FinancialEntity addEntity(String entityCode) {
+        FinancialEntity entity = FinancialEntity.builder()
+                .entityId(UUID.randomUUID())
+                .entityCode(entityCode)
+                .entityName("Entity " + entityCode)
+                .timeoutMs(5000)
+                .maxRetries(3)
+                .isActive(true)
+                .createdAt(LocalDateTime.now())
+                .build();
+        entitiesByCode.put(entityCode, entity);
+        return entity;
+    }
+
+    public Key addKey(String keyValue, FinancialEntity entity) {
+        Key key = Key.builder()
+                .keyId(UUID.randomUUID())
+                .keyValue(keyValue)
+                .accountNumber("123456789")
+                .ownerDocument("123456789")
+                .status(KeyStatus.ACTIVE)
+                .financialEntity(entity)
+                .createdAt(LocalDateTime.now())
+                .build();
+        keysByValue.put(keyValue, key);
+        return key;
+    }
+
+    public KeyRepository keyRepository() {
+        return proxy(KeyRepository.class, (proxy, method, args) -> switch (method.getName()) {
+            case "findByKeyValue", "findWithEntityByKeyValue" -> Optional.ofNullable(keysByValue.get((String) args[0]));
+            case "findByKeyValueAndStatus" -> Optional.ofNullable(keysByValue.get((String) args[0]))
+                    .filter(key -> key.getStatus() == args[1]);
+            case "existsByKeyValue" -> keysByValue.containsKey((String) args[0]);
+            case "findWithEntityByKeyValueIn" -> {
+                List<Key> found = new ArrayList<>();
+                for (Object keyValue : (Collection<?>) args[0]) {
+                    Key key = keysByValue.get((String) keyValue);
+                    if (key != null) {
+                        found.add(key);
+                    }
+                }
+                yield found;
+            }
+            case "save" -> save((Key) args[0]);
+            case "saveAll" -> {
+                List<Key> saved = new ArrayList<>();
+                for (Object key : (Iterable<?>) args[0]) {
+                    saved.add(save((Key) key));
+                }
+                yield saved;
+            }
+            case "insertIfAbsent" -> {
+                Key key = Key.builder()
+                        .keyId((UUID) args[0])
+                        .keyValue((String) args[1])
+                        .accountNumber((String) args[2])
+                        .ownerDocument((String) args[3])
+                        .status(KeyStatus.ACTIVE)
+                        .createdAt((LocalDateTime) args[5])
+                        .build();
+                yield keysByValue.putIfAbsent(key.getKeyValue(), key) == null ? 1 : 0;
+            }
+            case "flush" -> null;
+            default -> objectMethod(proxy, method.getName(), args, "KeyRepository");
+        });
+    }
+
+    public FinancialEntityRepository financialEntityRepository() {
+        return proxy(FinancialEntityRepository.class, (proxy, method, args) -> switch (method.getName()) {
+            case "findByEntityCode" -> Optional.ofNullable(entitiesByCode.get((String) args[0]));
+            case "findByEntityCodeAndActive" -> Optional.ofNullable(entitiesByCode.get((String) args[0]))
+                    .filter(FinancialEntity::getIsActive);
+            default -> objectMethod(proxy, method.getName(), args, "FinancialEntityRepository");
+        });
+    }
+
+    /**
+     * Only needed to wire KeyOutboxService, the benchmarks run with the outbox disabled
+     */
+    public KeyOutboxRepository keyOutboxRepository() {
+        return proxy(KeyOutboxRepository.class, (proxy, method, args) ->
+                objectMethod(proxy, method.getName(), args, "KeyOutboxRepository"));
+    }
+
+    private Key save(Key key) {
+        if (key.getKeyId() == null) {
+            key.setKeyId(UUID.randomUUID());
+        }
+        if (key.getCreatedAt() == null) {
+            key.setCreatedAt(LocalDateTime.now());
+        }
+        keysByValue.put(key.getKeyValue(), key);
+        return key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InMemoryRepositories.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private static Object objectMethod(Object proxy, String name, Object[] args, String type) {
+        return switch (name) {
+            case "toString" -> "InMemory" + type;
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(type + "." + name);
+        };
+    }
+}
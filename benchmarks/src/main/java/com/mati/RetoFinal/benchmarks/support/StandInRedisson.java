@@ -0,0 +1,48 @@
+package com.mati.RetoFinal.benchmarks.support;
+
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.misc.CompletableFutureWrapper;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * RedissonClient stand-in whose locks are always granted to the caller.
+ * Anything else (Bloom filters, buckets) is unsupported, which keeps the
+ * negative-lookup layer in its fail-open state.
+ */
+public final class StandInRedisson {
+
+    private StandInRedisson() {
+    }
+
+    public static RedissonClient create() {
+        return (RedissonClient) Proxy.newProxyInstance(
+                StandInRedisson.class.getClassLoader(),
+                new Class<?>[] {RedissonClient.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getLock" -> lock();
+                    case "toString" -> "StandInRedisson";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException("RedissonClient." + method.getName());
+                });
+    }
+
+    private static RLock lock() {
+        return (RLock) Proxy.newProxyInstance(
+                StandInRedisson.class.getClassLoader(),
+                new Class<?>[] {RLock.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "tryLock", "isHeldByCurrentThread", "isHeldByThread", "forceUnlock" -> true;
+                    case "tryLockAsync" -> new CompletableFutureWrapper<>(true);
+                    case "unlockAsync" -> new CompletableFutureWrapper<>((Void) null);
+                    case "isLocked" -> false;
+                    case "lock", "unlock" -> null;
+                    case "toString" -> "StandInLock";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException("RLock." + method.getName());
+                });
+    }
+}
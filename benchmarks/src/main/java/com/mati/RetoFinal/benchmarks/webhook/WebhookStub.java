@@ -0,0 +1,105 @@
+package com.mati.RetoFinal.benchmarks.webhook;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for a bank's webhook endpoint: accepts the JSON arrays posted by
+ * WebhookDispatcher on any path, optionally slowly or failing, and prints a summary
+ * of requests and events received every few seconds.
+ *
+ * Options, as --name=value: port (8089), delay-ms (0), fail-rate (0.0, share of
+ * requests answered with 503) and report-every (5 seconds).
+ */
+public final class WebhookStub {
+
+    private static final Pattern EVENT_ID = Pattern.compile("\"eventId\"");
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private final long delayMs;
+    private final double failRate;
+
+    private WebhookStub(long delayMs, double failRate) {
+        this.delayMs = delayMs;
+        this.failRate = failRate;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        int port = Integer.parseInt(options.getOrDefault("port", "8089"));
+        long reportEvery = Long.parseLong(options.getOrDefault("report-every", "5"));
+        WebhookStub stub = new WebhookStub(
+                Long.parseLong(options.getOrDefault("delay-ms", "0")),
+                Double.parseDouble(options.getOrDefault("fail-rate", "0")));
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", stub::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        System.out.printf("Webhook stub listening on http://localhost:%d/ (delay %dms, fail rate %.2f)%n",
+                port, stub.delayMs, stub.failRate);
+
+        while (true) {
+            try {
+                Thread.sleep(reportEvery * 1000);
+            } catch (InterruptedException e) {
+                server.stop(0);
+                return;
+            }
+            System.out.printf("requests=%d events=%d failed=%d maxInFlight=%d%n",
+                    stub.requests.get(), stub.events.get(), stub.failed.get(), stub.maxInFlight.get());
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int concurrent = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(concurrent, Math::max);
+        try (exchange) {
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            requests.incrementAndGet();
+
+            if (delayMs > 0) {
+                Thread.sleep(delayMs);
+            }
+            if (ThreadLocalRandom.current().nextDouble() < failRate) {
+                failed.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            events.addAndGet(EVENT_ID.matcher(body).results().count());
+            exchange.sendResponseHeaders(204, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+}
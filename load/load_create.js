@@ -2,13 +2,15 @@ import http from "k6/http";
 import { Counter } from "k6/metrics";
 import exec from "k6/execution";
 
+const BASE_URL = __ENV.BASE_URL || "http://localhost:8080";
+
 export const options = {
     scenarios: {
         create_keys: {
             executor: "constant-arrival-rate",
-            rate: 2000,
+            rate: Number(__ENV.RATE || 2000),
             timeUnit: "1s",
-            duration: "5s",
+            duration: __ENV.DURATION || "60s",
             preAllocatedVUs: 50,
             maxVUs: 200,
         }
@@ -20,7 +22,7 @@ const errorCounter = new Counter("error_count");
 const totalCounter = new Counter("total_requests");
 
 export default function () {
-    const url = "http://public-elb-120166699.us-east-1.elb.amazonaws.com/api/keys/check-or-create";
+    const url = `${BASE_URL}/api/keys/check-or-create`;
     const randomKey = Math.floor(Math.random() * 1_000_000_000).toString();
 
     const payload = JSON.stringify({
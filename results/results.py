@@ -1,4 +1,5 @@
 import re
+import sys
 import matplotlib.pyplot as plt
 
 def parse_results(filename):
@@ -10,6 +11,7 @@ def parse_results(filename):
         'median': [],
         'p90': [],
         'p95': [],
+        'p99': [],
         'max': []
     }
 
@@ -29,6 +31,8 @@ def parse_results(filename):
         median_val = float(re.search(r'Median:\s+([\d.]+)', stats_block).group(1))
         p90_val = float(re.search(r'P90:\s+([\d.]+)', stats_block).group(1))
         p95_val = float(re.search(r'P95:\s+([\d.]+)', stats_block).group(1))
+        p99_match = re.search(r'P99:\s+([\d.]+)', stats_block)
+        p99_val = float(p99_match.group(1)) if p99_match else 0.0
         max_val = float(re.search(r'Max:\s+([\d.]+)', stats_block).group(1))
 
         data['users'].append(users)
@@ -37,6 +41,7 @@ def parse_results(filename):
         data['median'].append(median_val)
         data['p90'].append(p90_val)
         data['p95'].append(p95_val)
+        data['p99'].append(p99_val)
         data['max'].append(max_val)
 
     return data
@@ -48,7 +53,7 @@ def plot_results(data):
 
     # Plot 1: Average Latency
     axes[0, 0].plot(data['users'], data['average'], marker='o', linewidth=2, color='#2E86AB')
-    axes[0, 0].set_xlabel('Number of Users')
+    axes[0, 0].set_xlabel('Number of Users / Arrival Rate (req/s)')
     axes[0, 0].set_ylabel('Latency (ms)')
     axes[0, 0].set_title('Average Latency')
     axes[0, 0].grid(True, alpha=0.3)
@@ -57,16 +62,17 @@ def plot_results(data):
     axes[0, 1].plot(data['users'], data['min'], marker='o', label='Minimum', linewidth=2)
     axes[0, 1].plot(data['users'], data['median'], marker='s', label='Median', linewidth=2)
     axes[0, 1].plot(data['users'], data['max'], marker='^', label='Maximum', linewidth=2)
-    axes[0, 1].set_xlabel('Number of Users')
+    axes[0, 1].set_xlabel('Number of Users / Arrival Rate (req/s)')
     axes[0, 1].set_ylabel('Latency (ms)')
     axes[0, 1].set_title('Latency: Min, Median, Max')
     axes[0, 1].legend()
     axes[0, 1].grid(True, alpha=0.3)
 
-    # Plot 3: Percentiles (P90, P95)
+    # Plot 3: Percentiles (P90, P95, P99)
     axes[1, 0].plot(data['users'], data['p90'], marker='o', label='P90', linewidth=2, color='#A23B72')
     axes[1, 0].plot(data['users'], data['p95'], marker='s', label='P95', linewidth=2, color='#F18F01')
-    axes[1, 0].set_xlabel('Number of Users')
+    axes[1, 0].plot(data['users'], data['p99'], marker='^', label='P99', linewidth=2, color='#C73E1D')
+    axes[1, 0].set_xlabel('Number of Users / Arrival Rate (req/s)')
     axes[1, 0].set_ylabel('Latency (ms)')
     axes[1, 0].set_title('Latency Percentiles')
     axes[1, 0].legend()
@@ -78,8 +84,9 @@ def plot_results(data):
     axes[1, 1].plot(data['users'], data['median'], marker='^', label='Median', linewidth=1.5, alpha=0.7)
     axes[1, 1].plot(data['users'], data['p90'], marker='d', label='P90', linewidth=1.5, alpha=0.7)
     axes[1, 1].plot(data['users'], data['p95'], marker='*', label='P95', linewidth=1.5, alpha=0.7)
+    axes[1, 1].plot(data['users'], data['p99'], marker='v', label='P99', linewidth=1.5, alpha=0.7)
     axes[1, 1].plot(data['users'], data['max'], marker='x', label='Maximum', linewidth=1.5, alpha=0.7)
-    axes[1, 1].set_xlabel('Number of Users')
+    axes[1, 1].set_xlabel('Number of Users / Arrival Rate (req/s)')
     axes[1, 1].set_ylabel('Latency (ms)')
     axes[1, 1].set_title('All Metrics')
     axes[1, 1].legend(loc='upper left')
@@ -100,12 +107,15 @@ def print_summary(data):
     print(f"Maximum average latency: {max(data['average']):.2f} ms (at {data['users'][data['average'].index(max(data['average']))]} users)")
     print(f"Minimum P95: {min(data['p95']):.2f} ms")
     print(f"Maximum P95: {max(data['p95']):.2f} ms")
+    print(f"Maximum P99: {max(data['p99']):.2f} ms")
     print("="*60 + "\n")
 
 if __name__ == "__main__":
     # Parse results
     print("Reading load test results...")
-    data = parse_results('results.txt')
+    # Results file: k6 summaries or LoadHarness output (benchmarks/)
+    filename = sys.argv[1] if len(sys.argv) > 1 else 'results.txt'
+    data = parse_results(filename)
 
     # Print summary
     print_summary(data)